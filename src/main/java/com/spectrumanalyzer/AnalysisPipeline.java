@@ -0,0 +1,296 @@
+package com.spectrumanalyzer;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// A fixed chain of operators run on a whole file without the GUI: an optional filter, then an optional
+// window, the same order the streaming transcoder uses. Parameter names and defaults follow the
+// control panel. The result holds the statistics and spectra the dashboard would show.
+public class AnalysisPipeline {
+    private static final Set<String> WINDOW_TYPES = Set.of("Rectangular", "Hanning", "Hamming", "Blackman", "Kaiser");
+    private static final Set<String> FILTER_TYPES = Set.of("Low Pass", "High Pass", "Band Pass", "Band Stop",
+            "Butterworth Low Pass", "Butterworth High Pass", "Butterworth Band Pass",
+            "Chebyshev Low Pass", "Chebyshev High Pass", "Chebyshev Band Pass",
+            "Bessel Low Pass", "Bessel High Pass", "Bessel Band Pass");
+    private static final int SPECTRUM_SEGMENTS = 256; // Enough cache for one full-length spectrum per channel
+
+    public final String filterType; // Null applies no filter
+    public final double cutoff;
+    public final double lowCutoff;
+    public final double highCutoff;
+    public final int order;
+    public final double ripple;
+    public final String windowType;
+    public final double kaiserBeta;
+
+    public static class Result {
+        public final int sampleRate;
+        public final double[][] processed;
+        public final SignalStatistics.Summary original;
+        public final SignalStatistics.Summary filtered;
+        public final double[] channelRmsDb;
+        public final double[] channelPeakDb;
+        public final List<SpectrumCalculator.FrequencyPeak> topFrequencies;
+        public final SpectrumCalculator.Spectrum[] spectra; // Processed spectrum of each channel
+        public final Map<String, Long> properties; // The input's, for writing the processed audio
+        public final boolean cached;
+
+        Result(int sampleRate, double[][] processed, SignalStatistics.Summary original, SignalStatistics.Summary filtered,
+               double[] channelRmsDb, double[] channelPeakDb, List<SpectrumCalculator.FrequencyPeak> topFrequencies,
+               SpectrumCalculator.Spectrum[] spectra, Map<String, Long> properties, boolean cached) {
+            this.sampleRate = sampleRate;
+            this.processed = processed;
+            this.original = original;
+            this.filtered = filtered;
+            this.channelRmsDb = channelRmsDb;
+            this.channelPeakDb = channelPeakDb;
+            this.topFrequencies = topFrequencies;
+            this.spectra = spectra;
+            this.properties = properties;
+            this.cached = cached;
+        }
+
+        // Processed audio only, as the control panel caches a filter run
+        static Result audioOnly(int sampleRate, double[][] processed, Map<String, Long> properties) {
+            return new Result(sampleRate, processed, null, null, null, null, null, null, properties, false);
+        }
+
+        // The unprocessed file's result from statistics computed elsewhere, as the dashboard computes them
+        static Result unprocessed(double[][] original, int sampleRate, Map<String, Long> properties, SignalStatistics.Summary summary,
+                                  List<SpectrumCalculator.FrequencyPeak> topFrequencies, SpectrumCalculator.Spectrum[] spectra) {
+            return new Result(sampleRate, null, summary, summary, channelRmsDb(original), channelPeakDb(original),
+                    topFrequencies, spectra, properties, false);
+        }
+
+        // False for result cache entries holding audio alone
+        public boolean hasStatistics() {
+            return filtered != null;
+        }
+
+        // Statistics and, if asked for, the spectra as a JSON object
+        public String toJson(boolean includeSpectra) {
+            StringBuilder json = new StringBuilder("{");
+            json.append("\"sampleRate\":").append(sampleRate);
+            json.append(",\"channels\":").append(filtered.channels);
+            json.append(",\"duration\":").append(number(filtered.duration));
+            json.append(",\"original\":{\"rmsDb\":").append(number(original.rmsDb))
+                    .append(",\"peakDb\":").append(number(original.peakDb)).append('}');
+            json.append(",\"processed\":{\"rmsDb\":").append(number(filtered.rmsDb))
+                    .append(",\"peakDb\":").append(number(filtered.peakDb))
+                    .append(",\"channelRmsDb\":").append(array(channelRmsDb))
+                    .append(",\"channelPeakDb\":").append(array(channelPeakDb)).append('}');
+            json.append(",\"topFrequencies\":[");
+            for (int i = 0; i < topFrequencies.size(); i++) {
+                SpectrumCalculator.FrequencyPeak peak = topFrequencies.get(i);
+                if (i > 0) json.append(',');
+                json.append("{\"frequency\":").append(number(peak.frequency))
+                        .append(",\"magnitudeDb\":").append(number(peak.magnitude)).append('}');
+            }
+            json.append(']');
+            if (includeSpectra) {
+                json.append(",\"spectra\":[");
+                for (int ch = 0; ch < spectra.length; ch++) {
+                    if (ch > 0) json.append(',');
+                    json.append("{\"channel\":").append(ch + 1)
+                            .append(",\"frequencies\":").append(array(spectra[ch].frequencies))
+                            .append(",\"magnitudesDb\":").append(array(spectra[ch].magnitudesDb)).append('}');
+                }
+                json.append(']');
+            }
+            return json.append('}').toString();
+        }
+    }
+
+    // Leaves the signal as it is; its results are the loaded file's own statistics and spectra
+    public static final AnalysisPipeline NONE = fromParameters(Map.of());
+
+    public AnalysisPipeline(String filterType, double cutoff, double lowCutoff, double highCutoff, int order, double ripple,
+                            String windowType, double kaiserBeta) {
+        this.filterType = filterType;
+        this.cutoff = cutoff;
+        this.lowCutoff = lowCutoff;
+        this.highCutoff = highCutoff;
+        this.order = order;
+        this.ripple = ripple;
+        this.windowType = windowType;
+        this.kaiserBeta = kaiserBeta;
+    }
+
+    // Parameters: filter, cutoff, lowCutoff, highCutoff (Hz), order, ripple, window, kaiserBeta.
+    // Throws IllegalArgumentException for unknown operators or unusable values.
+    public static AnalysisPipeline fromParameters(Map<String, String> parameters) {
+        String filterType = parameters.get("filter");
+        String windowType = parameters.getOrDefault("window", "Rectangular");
+        AnalysisPipeline pipeline = new AnalysisPipeline(
+                filterType == null || filterType.isBlank() ? null : filterType,
+                number(parameters, "cutoff", 1000),
+                number(parameters, "lowCutoff", 500),
+                number(parameters, "highCutoff", 2000),
+                (int) number(parameters, "order", 7),
+                number(parameters, "ripple", 1.0),
+                windowType,
+                number(parameters, "kaiserBeta", 8.6));
+
+        if (!WINDOW_TYPES.contains(windowType)) throw new IllegalArgumentException("Unknown window type: " + windowType);
+        if (pipeline.order < 1) throw new IllegalArgumentException("Filter order must be at least 1");
+        // Only what holds at any sample rate; the cutoffs are checked against the file's rate when it runs
+        if (pipeline.filterType != null) {
+            if (!FILTER_TYPES.contains(pipeline.filterType)) {
+                throw new IllegalArgumentException("Unknown filter type: " + pipeline.filterType);
+            }
+            if (pipeline.isBandFilter() && pipeline.lowCutoff >= pipeline.highCutoff) {
+                throw new IllegalArgumentException("Lower Cutoff Frequency cannot be more than the Higher Cutoff Frequency");
+            }
+        }
+        return pipeline;
+    }
+
+    private boolean isBandFilter() {
+        return filterType.endsWith("Band Pass") || filterType.endsWith("Band Stop");
+    }
+
+    // The filter's edges must lie between 0 Hz and the Nyquist frequency of the signal it runs on
+    private void checkCutoffs(int sampleRate) {
+        double lowest = isBandFilter() ? lowCutoff : cutoff;
+        double highest = isBandFilter() ? highCutoff : cutoff;
+        if (lowest <= 0 || highest >= sampleRate / 2.0) {
+            throw new IllegalArgumentException(String.format(Locale.ROOT,
+                    "Filter cutoffs must lie between 0 and %s Hz for a %d Hz file", sampleRate / 2.0, sampleRate));
+        }
+    }
+
+    private static double number(Map<String, String> parameters, String name, double defaultValue) {
+        String value = parameters.get(name);
+        if (value == null || value.isBlank()) return defaultValue;
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+
+    // Canonical form, equal for pipelines that produce the same output
+    public String describe() {
+        StringBuilder description = new StringBuilder();
+        if (filterType != null) {
+            description.append(String.format(Locale.ROOT, "filter=%s;cutoff=%s;lowCutoff=%s;highCutoff=%s;order=%d;ripple=%s;",
+                    filterType, cutoff, lowCutoff, highCutoff, order, ripple));
+        }
+        description.append("window=").append(windowType);
+        if (windowType.equals("Kaiser")) description.append(";kaiserBeta=").append(kaiserBeta);
+        return description.toString();
+    }
+
+    public boolean changesSignal() {
+        return filterType != null || !windowType.equals("Rectangular");
+    }
+
+    // Runs the pipeline on a file unless the cache has its result for the same samples. needAudio asks
+    // for the processed signal as well, which is cached only for pipelines that change it.
+    public Result run(Path input, ResultCache cache, boolean needAudio, PerformanceMonitor monitor) throws Exception {
+        ResultCache.Key key;
+        try (PerformanceMonitor.Timer timer = monitor.time("Fingerprint")) {
+            key = cache.key(input, describe());
+        }
+        try (PerformanceMonitor.Timer timer = monitor.time("Cache read")) {
+            Result cached = cache.get(key, needAudio);
+            if (cached != null && cached.hasStatistics() && (!needAudio || cached.processed != null)) return cached;
+        }
+
+        AudioFile audio;
+        try (PerformanceMonitor.Timer timer = monitor.time("Decode")) {
+            audio = AudioFile.read(input.toString(), monitor);
+        }
+        Result result = run(audio, monitor);
+        try (PerformanceMonitor.Timer timer = monitor.time("Cache write")) {
+            cache.put(key, result, changesSignal());
+        }
+        return result;
+    }
+
+    public Result run(AudioFile audio, PerformanceMonitor monitor) {
+        double[][] original = audio.samples;
+        int sampleRate = audio.sampleRate;
+        if (audio.getSampleCount() == 0) throw new IllegalArgumentException("File holds no samples");
+
+        double[][] processed = original;
+        if (filterType != null) {
+            checkCutoffs(sampleRate);
+            try (PerformanceMonitor.Timer timer = monitor.time("Filter")) {
+                processed = FilterOperator.filter(processed, sampleRate, filterType, cutoff, lowCutoff, highCutoff, order, ripple);
+            }
+        }
+        if (!windowType.equals("Rectangular")) {
+            try (PerformanceMonitor.Timer timer = monitor.time("Window")) {
+                processed = WindowOperator.applyWindowFunction(processed, windowType, kaiserBeta);
+            }
+        }
+
+        try (PerformanceMonitor.Timer timer = monitor.time("Statistics")) {
+            double[] originalMix = SignalStatistics.getMixedDownSignal(original);
+            SignalStatistics.Summary originalSummary = SignalStatistics.summarize(original, originalMix, sampleRate);
+            double[] processedMix = processed == original ? originalMix : SignalStatistics.getMixedDownSignal(processed);
+            SignalStatistics.Summary processedSummary = processed == original
+                    ? originalSummary : SignalStatistics.summarize(processed, processedMix, sampleRate);
+
+            double[] channelRmsDb = channelRmsDb(processed);
+            double[] channelPeakDb = channelPeakDb(processed);
+            List<SpectrumCalculator.FrequencyPeak> topFrequencies = SpectrumCalculator.findTopFrequencies(processedMix, sampleRate, 5);
+
+            // The dashboard's averaged spectrum, so numbers match what the GUI shows for the same file
+            SegmentSpectrumCache cache = new SegmentSpectrumCache(SPECTRUM_SEGMENTS);
+            SpectrumCalculator.Spectrum[] spectra = new SpectrumCalculator.Spectrum[processed.length];
+            for (int ch = 0; ch < processed.length; ch++) {
+                spectra[ch] = cache.computeSpectrum(0, ch, processed[ch], sampleRate, 0, processed[ch].length);
+            }
+
+            return new Result(sampleRate, processed, originalSummary, processedSummary, channelRmsDb, channelPeakDb,
+                    topFrequencies, spectra, audio.properties, false);
+        }
+    }
+
+    private static double[] channelRmsDb(double[][] signal) {
+        double[] levels = new double[signal.length];
+        for (int ch = 0; ch < signal.length; ch++) levels[ch] = SignalStatistics.toDb(SignalStatistics.calculateRMS(signal[ch]));
+        return levels;
+    }
+
+    private static double[] channelPeakDb(double[][] signal) {
+        double[] levels = new double[signal.length];
+        for (int ch = 0; ch < signal.length; ch++) levels[ch] = SignalStatistics.toDb(SignalStatistics.calculatePeak(signal[ch]));
+        return levels;
+    }
+
+    // JSON string literal
+    public static String quote(String text) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : text.toCharArray()) {
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\n' -> quoted.append("\\n");
+                default -> {
+                    if (c < 0x20) quoted.append(String.format("\\u%04x", (int) c));
+                    else quoted.append(c);
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static String number(double value) {
+        return Double.isFinite(value) ? String.valueOf(value) : "null";
+    }
+
+    private static String array(double[] values) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) json.append(',');
+            json.append(number(values[i]));
+        }
+        return json.append(']').toString();
+    }
+}
@@ -0,0 +1,407 @@
+package com.spectrumanalyzer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Analysis over HTTP for other tools on the same machine, started with --serve. Binds to the loopback
+// address only, since jobs may name local files.
+//
+//   POST /jobs?filter=Low%20Pass&cutoff=1000[&window=Hanning][&path=/local/file.wav][&wait=true][&audio=true]
+//        body: the WAV file, or empty together with path
+//   GET  /jobs/{id}        status, timings and the result
+//   GET  /jobs/{id}/audio  the processed file, for jobs submitted with audio=true
+//   GET  /metrics          queue depth, job counts and latency percentiles
+//
+// At most workers + queueCapacity jobs are admitted; beyond that submissions get 503 before their upload
+// is read. Only the workers hold decoded signals, queued jobs are a path or a spooled upload.
+public class AnalysisService {
+    public static final int DEFAULT_PORT = 8089;
+    private static final int MAX_FINISHED_JOBS = 256;
+
+    private final HttpServer server;
+    private final ExecutorService workers;
+    private final Semaphore admission;
+    private final int workerCount;
+    private final int queueCapacity;
+    private final long maxUploadBytes;
+    private final Path spoolDirectory;
+    private final PerformanceMonitor monitor = new PerformanceMonitor();
+    private final ResultCache resultCache = ResultCache.openDefault();
+
+    private final AtomicLong nextJobId = new AtomicLong(1);
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram jobLatency = new LatencyHistogram(); // Submission to completion
+
+    // Insertion ordered; the oldest finished jobs are dropped together with their output files
+    private final Map<Long, Job> jobs = new LinkedHashMap<>();
+
+    private static class Job {
+        final long id;
+        final AnalysisPipeline pipeline;
+        final Path input;
+        final boolean spooled; // Upload owned by the job, deleted once analyzed
+        final boolean keepAudio;
+        final long submittedNanos = System.nanoTime();
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        volatile String status = "queued";
+        volatile long queueNanos;
+        volatile long runNanos;
+        volatile String resultJson;
+        volatile boolean cached;
+        volatile Path audioOutput;
+        volatile String error;
+
+        Job(long id, AnalysisPipeline pipeline, Path input, boolean spooled, boolean keepAudio) {
+            this.id = id;
+            this.pipeline = pipeline;
+            this.input = input;
+            this.spooled = spooled;
+            this.keepAudio = keepAudio;
+        }
+
+        boolean isFinished() {
+            return done.isDone();
+        }
+    }
+
+    public AnalysisService(int port, int workerCount, int queueCapacity, long maxUploadBytes) throws IOException {
+        this.workerCount = workerCount;
+        this.queueCapacity = queueCapacity;
+        this.maxUploadBytes = maxUploadBytes;
+        this.admission = new Semaphore(workerCount + queueCapacity);
+        this.spoolDirectory = Files.createTempDirectory("spectrum-analysis");
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "AnalysisService-Worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        // Handlers block on uploads and on wait=true, which costs nothing on virtual threads
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/jobs", this::handleJobs);
+        server.createContext("/metrics", this::handleMetrics);
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("Analysis service on http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort()
+                + " with " + workerCount + " workers, " + queueCapacity + " queued jobs");
+    }
+
+    public void stop() {
+        server.stop(0);
+        workers.shutdownNow();
+    }
+
+    // --serve [--port N] [--workers N] [--queue N] [--max-upload-mb N]
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        int workerCount = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        int queueCapacity = 16;
+        long maxUploadMb = 1024;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--port" -> port = Integer.parseInt(args[i + 1]);
+                case "--workers" -> workerCount = Integer.parseInt(args[i + 1]);
+                case "--queue" -> queueCapacity = Integer.parseInt(args[i + 1]);
+                case "--max-upload-mb" -> maxUploadMb = Long.parseLong(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        new AnalysisService(port, workerCount, queueCapacity, maxUploadMb * 1024 * 1024).start();
+    }
+
+    private void handleJobs(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String[] parts = exchange.getRequestURI().getPath().split("/");
+            String method = exchange.getRequestMethod();
+            if (parts.length == 2 && method.equals("POST")) {
+                submit(exchange);
+            } else if (parts.length >= 3 && method.equals("GET")) {
+                Job job = findJob(parts[2]);
+                if (job == null) {
+                    sendText(exchange, 404, "No such job");
+                } else if (parts.length == 3) {
+                    sendJson(exchange, 200, jobJson(job));
+                } else if (parts.length == 4 && parts[3].equals("audio")) {
+                    sendAudio(exchange, job);
+                } else {
+                    sendText(exchange, 404, "Not found");
+                }
+            } else {
+                sendText(exchange, 405, "Use POST /jobs or GET /jobs/{id}");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void submit(HttpExchange exchange) throws IOException, InterruptedException {
+        Map<String, String> parameters = queryParameters(exchange);
+        AnalysisPipeline pipeline;
+        try {
+            pipeline = AnalysisPipeline.fromParameters(parameters);
+        } catch (IllegalArgumentException e) {
+            sendText(exchange, 400, e.getMessage());
+            return;
+        }
+
+        // Refused before the body is read, so a full queue costs the client nothing but the request
+        if (!admission.tryAcquire()) {
+            rejected.incrementAndGet();
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            sendText(exchange, 503, "Queue full, retry later");
+            return;
+        }
+
+        Job job;
+        try {
+            String path = parameters.get("path");
+            Path input;
+            boolean spooled = path == null;
+            if (spooled) {
+                input = spoolUpload(exchange);
+                if (input == null) {
+                    admission.release();
+                    sendText(exchange, 413, "Upload exceeds " + maxUploadBytes / (1024 * 1024) + " MB");
+                    return;
+                }
+            } else {
+                input = Path.of(path);
+                if (!Files.isRegularFile(input)) {
+                    admission.release();
+                    sendText(exchange, 400, "No such file: " + path);
+                    return;
+                }
+            }
+            job = new Job(nextJobId.getAndIncrement(), pipeline, input, spooled, Boolean.parseBoolean(parameters.get("audio")));
+        } catch (IOException e) {
+            admission.release();
+            throw e;
+        }
+
+        synchronized (jobs) {
+            jobs.put(job.id, job);
+            dropFinishedJobs();
+        }
+        queued.incrementAndGet();
+        workers.execute(() -> runJob(job));
+
+        if (Boolean.parseBoolean(parameters.get("wait"))) {
+            job.done.join();
+            sendJson(exchange, 200, jobJson(job));
+        } else {
+            exchange.getResponseHeaders().set("Location", "/jobs/" + job.id);
+            sendJson(exchange, 202, jobJson(job));
+        }
+    }
+
+    // Copies the request body to the spool directory, or returns null once it grows past the limit
+    private Path spoolUpload(HttpExchange exchange) throws IOException {
+        Path file = Files.createTempFile(spoolDirectory, "upload", ".wav");
+        try (InputStream in = exchange.getRequestBody(); OutputStream out = Files.newOutputStream(file)) {
+            byte[] buffer = new byte[1 << 16];
+            long total = 0;
+            for (int read; (read = in.read(buffer)) > 0; ) {
+                total += read;
+                if (total > maxUploadBytes) break;
+                out.write(buffer, 0, read);
+            }
+            if (total <= maxUploadBytes) return file;
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        // Deleted once the stream is closed
+        Files.deleteIfExists(file);
+        return null;
+    }
+
+    private void runJob(Job job) {
+        long start = System.nanoTime();
+        job.queueNanos = start - job.submittedNanos;
+        queueWait.record(job.queueNanos);
+        queued.decrementAndGet();
+        running.incrementAndGet();
+        job.status = "running";
+        try (PerformanceMonitor.Timer timer = monitor.time("Job")) {
+            AnalysisPipeline.Result result = job.pipeline.run(job.input, resultCache, job.keepAudio, monitor);
+            if (job.keepAudio) {
+                Path output = Files.createTempFile(spoolDirectory, "job" + job.id + "-", ".wav");
+                try (PerformanceMonitor.Timer encode = monitor.time("Encode")) {
+                    AudioFile.write(output.toFile(), result.processed, result.sampleRate, result.properties);
+                }
+                job.audioOutput = output;
+            }
+            job.cached = result.cached;
+            job.resultJson = result.toJson(true);
+            job.status = "done";
+            completed.incrementAndGet();
+        } catch (Throwable e) {
+            e.printStackTrace();
+            job.error = e.getMessage() != null ? e.getMessage() : e.toString();
+            job.status = "failed";
+            failed.incrementAndGet();
+        } finally {
+            if (job.spooled) deleteQuietly(job.input);
+            job.runNanos = System.nanoTime() - start;
+            jobLatency.record(System.nanoTime() - job.submittedNanos);
+            running.decrementAndGet();
+            admission.release();
+            job.done.complete(null);
+        }
+    }
+
+    private Job findJob(String id) {
+        try {
+            synchronized (jobs) {
+                return jobs.get(Long.parseLong(id));
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Caller holds the jobs lock
+    private void dropFinishedJobs() {
+        var iterator = jobs.values().iterator();
+        int excess = jobs.size() - MAX_FINISHED_JOBS;
+        while (excess > 0 && iterator.hasNext()) {
+            Job job = iterator.next();
+            if (!job.isFinished()) continue;
+            iterator.remove();
+            if (job.audioOutput != null) deleteQuietly(job.audioOutput);
+            excess--;
+        }
+    }
+
+    private String jobJson(Job job) {
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"id\":").append(job.id);
+        json.append(",\"status\":\"").append(job.status).append('"');
+        json.append(",\"pipeline\":").append(AnalysisPipeline.quote(job.pipeline.describe()));
+        if (job.isFinished()) {
+            json.append(String.format(Locale.ROOT, ",\"queueMs\":%.3f,\"runMs\":%.3f", job.queueNanos / 1e6, job.runNanos / 1e6));
+        }
+        if (job.cached) json.append(",\"cached\":true");
+        if (job.error != null) json.append(",\"error\":").append(AnalysisPipeline.quote(job.error));
+        if (job.audioOutput != null) json.append(",\"audio\":\"/jobs/").append(job.id).append("/audio\"");
+        if (job.resultJson != null) json.append(",\"result\":").append(job.resultJson);
+        return json.append('}').toString();
+    }
+
+    private void sendAudio(HttpExchange exchange, Job job) throws IOException {
+        if (!job.isFinished()) {
+            sendText(exchange, 409, "Job is " + job.status);
+            return;
+        }
+        Path output = job.audioOutput;
+        if (output == null || !Files.exists(output)) {
+            sendText(exchange, 404, "Job has no audio output, submit it with audio=true");
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "audio/wav");
+        exchange.sendResponseHeaders(200, Files.size(output));
+        try (OutputStream out = exchange.getResponseBody()) {
+            Files.copy(output, out);
+        }
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            StringBuilder text = new StringBuilder();
+            text.append("queue_depth ").append(queued.get()).append('\n');
+            text.append("queue_capacity ").append(queueCapacity).append('\n');
+            text.append("running_jobs ").append(running.get()).append('\n');
+            text.append("workers ").append(workerCount).append('\n');
+            text.append("completed_jobs ").append(completed.get()).append('\n');
+            text.append("failed_jobs ").append(failed.get()).append('\n');
+            text.append("rejected_jobs ").append(rejected.get()).append('\n');
+            text.append("result_cache_hits ").append(resultCache.getHits()).append('\n');
+            text.append("result_cache_misses ").append(resultCache.getMisses()).append('\n');
+            text.append("result_cache_bytes ").append(resultCache.getSizeBytes()).append('\n');
+            appendLatency(text, "job_latency_ms", "", jobLatency);
+            appendLatency(text, "queue_wait_ms", "", queueWait);
+            monitor.getStages().forEach((stage, histogram) ->
+                    appendLatency(text, "stage_ms", "stage=\"" + stage + "\"", histogram));
+            sendText(exchange, 200, text.toString());
+        }
+    }
+
+    // Prometheus style text, label is empty or a single name="value" pair
+    private static void appendLatency(StringBuilder text, String name, String label, LatencyHistogram histogram) {
+        String labels = label.isEmpty() ? "" : "{" + label + "}";
+        String quantile = label.isEmpty() ? "{quantile=" : "{" + label + ",quantile=";
+        text.append(String.format(Locale.ROOT, "%s_count%s %d%n", name, labels, histogram.getCount()));
+        text.append(String.format(Locale.ROOT, "%s%s\"0.5\"} %.3f%n", name, quantile, histogram.getPercentileMillis(50)));
+        text.append(String.format(Locale.ROOT, "%s%s\"0.99\"} %.3f%n", name, quantile, histogram.getPercentileMillis(99)));
+        text.append(String.format(Locale.ROOT, "%s_max%s %.3f%n", name, labels, histogram.getMaxMillis()));
+    }
+
+    private static Map<String, String> queryParameters(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) return parameters;
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals <= 0) continue;
+            parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+        send(exchange, status, "application/json", json + "\n");
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        send(exchange, status, "text/plain; charset=utf-8", text.endsWith("\n") ? text : text + "\n");
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Could not delete " + file + ": " + e.getMessage());
+        }
+    }
+}
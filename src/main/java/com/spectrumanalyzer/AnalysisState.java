@@ -0,0 +1,71 @@
+package com.spectrumanalyzer;
+
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Immutable view of the loaded signal. Channel arrays are shared between states and must never be
+// written to; operators build new arrays and publish a new state instead.
+public final class AnalysisState {
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    public static final AnalysisState EMPTY = new AnalysisState(0, 0, null, null, 0, 0, Collections.emptyMap());
+
+    public final long originalVersion;  // Changes when a file is loaded or resampled
+    public final long processedVersion; // Equals originalVersion while nothing has been applied
+    public final double[][] originalSignal;
+    public final double[][] processedSignal;
+    public final int sampleRate;
+    public final int channels;
+    public final Map<String, Long> audioProperties;
+
+    private AnalysisState(long originalVersion, long processedVersion, double[][] originalSignal, double[][] processedSignal,
+                          int sampleRate, int channels, Map<String, Long> audioProperties) {
+        this.originalVersion = originalVersion;
+        this.processedVersion = processedVersion;
+        this.originalSignal = originalSignal;
+        this.processedSignal = processedSignal;
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.audioProperties = audioProperties;
+    }
+
+    public static AnalysisState loaded(double[][] samples, int sampleRate, Hashtable<String, Long> properties) {
+        long version = VERSIONS.incrementAndGet();
+        return new AnalysisState(version, version, samples, samples.clone(), sampleRate, samples.length,
+                Collections.unmodifiableMap(new Hashtable<>(properties)));
+    }
+
+    public AnalysisState withProcessed(double[][] processed) {
+        return new AnalysisState(originalVersion, versionFor(originalSignal, processed, originalVersion),
+                originalSignal, processed, sampleRate, channels, audioProperties);
+    }
+
+    public AnalysisState withSignals(double[][] original, double[][] processed, int newSampleRate) {
+        long version = VERSIONS.incrementAndGet();
+        return new AnalysisState(version, versionFor(original, processed, version),
+                original, processed, newSampleRate, original.length, audioProperties);
+    }
+
+    // Version numbers for other signal sources, drawn from the same sequence so cache keys never collide
+    public static long nextVersion() {
+        return VERSIONS.incrementAndGet();
+    }
+
+    public boolean hasSignal() {
+        return originalSignal != null && originalSignal.length > 0;
+    }
+
+    public boolean isFiltered() {
+        return processedVersion != originalVersion;
+    }
+
+    public int getSampleCount() {
+        return hasSignal() ? originalSignal[0].length : 0;
+    }
+
+    private static long versionFor(double[][] original, double[][] processed, long originalVersion) {
+        return DerivedDataCache.sharesAllChannels(original, processed) ? originalVersion : VERSIONS.incrementAndGet();
+    }
+}
@@ -0,0 +1,117 @@
+package com.spectrumanalyzer;
+
+import com.github.psambit9791.jdsp.io.WAV;
+import com.github.psambit9791.wavfile.WavFile;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Hashtable;
+import java.util.Map;
+
+public class AudioFile {
+    public final double[][] samples; // [channels][samples]
+    public final Hashtable<String, Long> properties;
+    public final int sampleRate;
+    public final int channels;
+
+    AudioFile(double[][] samples, Hashtable<String, Long> properties, int sampleRate, int channels) {
+        this.samples = samples;
+        this.properties = properties;
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+    }
+
+    public static AudioFile read(String filename) throws Exception {
+        return read(filename, null);
+    }
+
+    // RIFF, RF64/BW64 and Wave64 go through the native decoder; anything it does not handle falls
+    // back to jdsp, timed as its own stage so the monitor shows how often that happens
+    public static AudioFile read(String filename, PerformanceMonitor monitor) throws Exception {
+        try {
+            return WavDecoder.decode(Path.of(filename));
+        } catch (WavDecoder.UnsupportedFormatException e) {
+            if (monitor == null) return readWithJdsp(filename);
+            try (PerformanceMonitor.Timer timer = monitor.time("Decode (jdsp)")) {
+                return readWithJdsp(filename);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static AudioFile readWithJdsp(String filename) throws Exception {
+        WAV objRead = new WAV();
+        objRead.readWAV(filename);
+        Hashtable<String, Long> properties = objRead.getProperties();
+        double[][] rawData = objRead.getData("int");
+
+        if (rawData == null || rawData.length == 0) {
+            throw new RuntimeException("No audio data found in file");
+        }
+
+        int sampleRate = getProperty(properties, "SampleRate", 44100);
+        int channels = getProperty(properties, "Channels", 1);
+
+        // rawData is [samples][channels], transpose to [channels][samples]
+        double[][] samples = new double[channels][rawData.length];
+        for (int sample = 0; sample < rawData.length; sample++) {
+            for (int ch = 0; ch < channels; ch++) {
+                samples[ch][sample] = rawData[sample][ch];
+            }
+        }
+
+        return new AudioFile(samples, properties, sampleRate, channels);
+    }
+
+    // Writes samples on the scale read() returns as integer PCM. Integer sources keep their bit depth
+    // and are written unscaled; float sources, already in -1 .. 1, are written as 32-bit PCM. Values
+    // beyond full scale are clipped, the writer would wrap them around.
+    public static void write(File file, double[][] samples, int sampleRate, Map<String, Long> properties) throws Exception {
+        int validBits = properties.getOrDefault("ValidBits", 16L).intValue();
+        boolean floatSamples = properties.getOrDefault("FormatTag", 1L) == 3;
+
+        int channels = samples.length;
+        int frames = channels == 0 ? 0 : samples[0].length;
+        WavFile writer = WavFile.newWavFile(file, channels, frames, floatSamples ? 32 : validBits, sampleRate);
+        try {
+            int blockFrames = StreamingTranscoder.DEFAULT_BLOCK_FRAMES;
+            double[][] scaled = new double[channels][blockFrames];
+            long[][] integers = new long[channels][blockFrames];
+            long max = (1L << (validBits - 1)) - 1;
+            long offset = validBits <= 8 ? 128 : 0; // 8-bit WAV is unsigned
+            for (int start = 0; start < frames; start += blockFrames) {
+                int count = Math.min(blockFrames, frames - start);
+                for (int ch = 0; ch < channels; ch++) {
+                    for (int i = 0; i < count; i++) {
+                        double value = samples[ch][start + i];
+                        if (floatSamples) {
+                            scaled[ch][i] = Math.max(-1.0, Math.min(1.0, value));
+                        } else {
+                            integers[ch][i] = Math.max(-max - 1, Math.min(max, Math.round(value))) + offset;
+                        }
+                    }
+                }
+                if (floatSamples) {
+                    writer.writeFrames(scaled, count);
+                } else {
+                    writer.writeFrames(integers, count);
+                }
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    public int getSampleCount() {
+        return samples.length == 0 ? 0 : samples[0].length;
+    }
+
+    public double getDuration() {
+        return (double) getSampleCount() / sampleRate;
+    }
+
+    private static int getProperty(Hashtable<String, Long> properties, String key, int defaultValue) {
+        Long value = properties.get(key);
+        return value != null ? value.intValue() : defaultValue;
+    }
+}
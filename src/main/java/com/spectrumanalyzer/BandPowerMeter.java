@@ -0,0 +1,75 @@
+package com.spectrumanalyzer;
+
+import java.util.Arrays;
+
+// Cumulative power spectrum: the power between any two frequencies is a difference of two interpolated
+// lookups, and occupied bandwidth is a binary search. Powers are mean-square sample values, so
+// 10 log10 of a band power is on the same dB scale as the RMS level.
+public class BandPowerMeter {
+    private final double firstFrequency; // Centre of bin 0
+    private final double binWidth;
+    private final double[] cumulative; // cumulative[k] = power of bins 0 .. k-1
+
+    // binPower[k] is the mean-square power that falls in bin k
+    public BandPowerMeter(double[] binPower, double firstFrequency, double binWidth) {
+        this.firstFrequency = firstFrequency;
+        this.binWidth = binWidth;
+        this.cumulative = new double[binPower.length + 1];
+        for (int k = 0; k < binPower.length; k++) {
+            cumulative[k + 1] = cumulative[k] + binPower[k];
+        }
+    }
+
+    public double getLowestFrequency() {
+        return firstFrequency - binWidth / 2;
+    }
+
+    public double getHighestFrequency() {
+        return firstFrequency + (cumulative.length - 1.5) * binWidth;
+    }
+
+    public double totalPower() {
+        return cumulative[cumulative.length - 1];
+    }
+
+    // Bins are split in proportion where a band edge falls inside them
+    public double bandPower(double lowFrequency, double highFrequency) {
+        return Math.max(0, cumulativeAt(highFrequency) - cumulativeAt(lowFrequency));
+    }
+
+    // Frequencies holding (1 - fraction) / 2 of the power below and above, e.g. 0.99 for 99 % OBW
+    public double[] occupiedBandwidth(double fraction) {
+        return new double[]{frequencyAtFraction((1 - fraction) / 2), frequencyAtFraction((1 + fraction) / 2)};
+    }
+
+    // Power in the equally wide bands directly below and above the channel, relative to the channel, in dB
+    public double[] adjacentChannelRatio(double lowFrequency, double highFrequency) {
+        double width = highFrequency - lowFrequency;
+        double channel = bandPower(lowFrequency, highFrequency);
+        return new double[]{
+                toDb(bandPower(lowFrequency - width, lowFrequency)) - toDb(channel),
+                toDb(bandPower(highFrequency, highFrequency + width)) - toDb(channel)
+        };
+    }
+
+    public static double toDb(double power) {
+        return 10 * Math.log10(power + 1e-20);
+    }
+
+    private double cumulativeAt(double frequency) {
+        int bins = cumulative.length - 1;
+        double position = Math.max(0, Math.min(bins, (frequency - firstFrequency) / binWidth + 0.5));
+        int bin = Math.min(bins - 1, (int) position);
+        return cumulative[bin] + (position - bin) * (cumulative[bin + 1] - cumulative[bin]);
+    }
+
+    private double frequencyAtFraction(double fraction) {
+        double target = fraction * totalPower();
+        int index = Arrays.binarySearch(cumulative, target);
+        int bin = index >= 0 ? index : -index - 2; // Last edge at or below the target
+        bin = Math.max(0, Math.min(cumulative.length - 2, bin));
+        double power = cumulative[bin + 1] - cumulative[bin];
+        double within = power > 0 ? Math.max(0, Math.min(1, (target - cumulative[bin]) / power)) : 0;
+        return firstFrequency + (bin + within - 0.5) * binWidth;
+    }
+}
@@ -0,0 +1,107 @@
+package com.spectrumanalyzer;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+public class ComparisonLoader {
+    // The native decoder fills double[channels][samples] directly, 4x a 16-bit file, plus the mixdown.
+    // Files it can't read fall back to jdsp's double[samples][channels] and a transposed copy, roughly
+    // 16x the file size, which is what each load reserves.
+    private static final int DECODE_MEMORY_FACTOR = 16;
+    private static final int SPECTRUM_SEGMENTS = 256; // As AnalysisPipeline, one full-length spectrum
+    private static final long MEGABYTE = 1024 * 1024;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore memoryBudget;
+    private final int budgetMegabytes;
+    private final AtomicInteger generation = new AtomicInteger();
+
+    public static class ComparisonResult {
+        public final String name;
+        public final int sampleRate;
+        public final int channels;
+        public final double duration;
+        public final double rmsDb;
+        public final double peakDb;
+        public final SpectrumCalculator.Spectrum spectrum;
+
+        public ComparisonResult(String name, int sampleRate, int channels, double duration,
+                                double rmsDb, double peakDb, SpectrumCalculator.Spectrum spectrum) {
+            this.name = name;
+            this.sampleRate = sampleRate;
+            this.channels = channels;
+            this.duration = duration;
+            this.rmsDb = rmsDb;
+            this.peakDb = peakDb;
+            this.spectrum = spectrum;
+        }
+    }
+
+    public ComparisonLoader(long budgetBytes) {
+        this.budgetMegabytes = (int) Math.max(1, Math.min(Integer.MAX_VALUE, budgetBytes / MEGABYTE));
+        this.memoryBudget = new Semaphore(budgetMegabytes, true);
+    }
+
+    // Callbacks run on the worker threads, one virtual thread per file
+    public void load(List<File> files, Consumer<ComparisonResult> onResult, BiConsumer<File, Exception> onError) {
+        int loadGeneration = generation.get();
+
+        for (File file : files) {
+            executor.submit(() -> {
+                int permits = estimateMegabytes(file);
+                try {
+                    memoryBudget.acquire(permits);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                try {
+                    if (generation.get() != loadGeneration) return;
+
+                    ComparisonResult result = analyze(file);
+                    if (generation.get() == loadGeneration) {
+                        onResult.accept(result);
+                    }
+                } catch (Exception e) {
+                    if (generation.get() == loadGeneration) {
+                        onError.accept(file, e);
+                    }
+                } finally {
+                    memoryBudget.release(permits);
+                }
+            });
+        }
+    }
+
+    // Results of loads started before this call are dropped
+    public void cancelPending() {
+        generation.incrementAndGet();
+    }
+
+    private ComparisonResult analyze(File file) throws Exception {
+        AudioFile audioFile = AudioFile.read(file.getAbsolutePath());
+
+        double[] mixedSignal = SignalStatistics.getMixedDownSignal(audioFile.samples);
+        double rmsDb = SignalStatistics.toDb(SignalStatistics.calculateRMS(mixedSignal));
+        double peakDb = SignalStatistics.toDb(SignalStatistics.calculatePeak(mixedSignal));
+        // The dashboard's averaged spectrum over the whole file, of the mixdown so every take is one trace
+        SpectrumCalculator.Spectrum spectrum = new SegmentSpectrumCache(SPECTRUM_SEGMENTS)
+                .computeSpectrum(0, 0, mixedSignal, audioFile.sampleRate, 0, mixedSignal.length);
+
+        return new ComparisonResult(file.getName(), audioFile.sampleRate, audioFile.channels,
+                audioFile.getDuration(), rmsDb, peakDb, spectrum);
+    }
+
+    private int estimateMegabytes(File file) {
+        long estimate = file.length() * DECODE_MEMORY_FACTOR / MEGABYTE + 1;
+        // A single file larger than the budget still gets to run, just on its own
+        return (int) Math.min(estimate, budgetMegabytes);
+    }
+}
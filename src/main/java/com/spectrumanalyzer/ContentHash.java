@@ -0,0 +1,90 @@
+package com.spectrumanalyzer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+// XXH64, a fast non-cryptographic 64-bit hash. Good for telling files apart, not for anything an
+// attacker could choose.
+public final class ContentHash {
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    private ContentHash() {
+    }
+
+    // Hashes the buffer's remaining bytes without moving its position
+    public static long xxHash64(ByteBuffer buffer, long seed) {
+        ByteBuffer data = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int p = data.position();
+        int end = data.limit();
+        long hash;
+
+        if (end - p >= 32) {
+            long v1 = seed + PRIME1 + PRIME2;
+            long v2 = seed + PRIME2;
+            long v3 = seed;
+            long v4 = seed - PRIME1;
+            int limit = end - 32;
+            do {
+                v1 = round(v1, data.getLong(p));
+                v2 = round(v2, data.getLong(p + 8));
+                v3 = round(v3, data.getLong(p + 16));
+                v4 = round(v4, data.getLong(p + 24));
+                p += 32;
+            } while (p <= limit);
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = merge(hash, v1);
+            hash = merge(hash, v2);
+            hash = merge(hash, v3);
+            hash = merge(hash, v4);
+        } else {
+            hash = seed + PRIME5;
+        }
+        hash += end - data.position();
+
+        for (; p + 8 <= end; p += 8) {
+            hash ^= round(0, data.getLong(p));
+            hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+        }
+        if (p + 4 <= end) {
+            hash ^= (data.getInt(p) & 0xFFFFFFFFL) * PRIME1;
+            hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+            p += 4;
+        }
+        for (; p < end; p++) {
+            hash ^= (data.get(p) & 0xFF) * PRIME5;
+            hash = Long.rotateLeft(hash, 11) * PRIME1;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= PRIME2;
+        hash ^= hash >>> 29;
+        hash *= PRIME3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    public static long xxHash64(long[] values, long seed) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 8).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asLongBuffer().put(values);
+        return xxHash64(buffer, seed);
+    }
+
+    public static long xxHash64(String text) {
+        return xxHash64(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)), 0);
+    }
+
+    private static long round(long accumulator, long input) {
+        accumulator += input * PRIME2;
+        return Long.rotateLeft(accumulator, 31) * PRIME1;
+    }
+
+    private static long merge(long hash, long accumulator) {
+        hash ^= round(0, accumulator);
+        return hash * PRIME1 + PRIME4;
+    }
+}
@@ -0,0 +1,77 @@
+package com.spectrumanalyzer;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+// Keeps values derived from one signal version until a different version is passed in
+public class DerivedDataCache {
+    private long version = -1;
+    // A value is a future so that it can be computed outside the map's locks; its key is claimed first,
+    // so callers asking for the same key meanwhile wait for that one computation
+    private Map<String, CompletableFuture<Object>> values = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    public <T> T getOrCompute(long signalVersion, String key, Supplier<T> supplier) {
+        Map<String, CompletableFuture<Object>> forVersion = valuesFor(signalVersion);
+        CompletableFuture<Object> claimed = new CompletableFuture<>();
+        CompletableFuture<Object> existing = forVersion.putIfAbsent(key, claimed);
+        if (existing != null) {
+            try {
+                return (T) existing.join();
+            } catch (CompletionException e) {
+                // The computing caller got the failure; this one tries again
+                return getOrCompute(signalVersion, key, supplier);
+            }
+        }
+
+        T value;
+        try {
+            value = supplier.get();
+        } catch (RuntimeException | Error e) {
+            forVersion.remove(key, claimed);
+            claimed.completeExceptionally(e);
+            throw e;
+        }
+        // Null is not kept, the next caller computes again
+        if (value == null) forVersion.remove(key, claimed);
+        claimed.complete(value);
+        return value;
+    }
+
+    // Null unless the value was computed or put for this version
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T get(long signalVersion, String key) {
+        if (signalVersion != version) return null;
+        CompletableFuture<Object> value = values.get(key);
+        return value != null && value.isDone() && !value.isCompletedExceptionally() ? (T) value.join() : null;
+    }
+
+    // Seeds a value found elsewhere, such as in the result cache
+    public void put(long signalVersion, String key, Object value) {
+        valuesFor(signalVersion).put(key, CompletableFuture.completedFuture(value));
+    }
+
+    private synchronized Map<String, CompletableFuture<Object>> valuesFor(long signalVersion) {
+        if (signalVersion != version) {
+            version = signalVersion;
+            values = new ConcurrentHashMap<>();
+        }
+        return values;
+    }
+
+    public synchronized void clear() {
+        version = -1;
+        values = new ConcurrentHashMap<>();
+    }
+
+    public static boolean sharesAllChannels(double[][] a, double[][] b) {
+        if (a == null || b == null || a.length != b.length) return false;
+        for (int ch = 0; ch < a.length; ch++) {
+            if (a[ch] != b[ch]) return false;
+        }
+        return true;
+    }
+}
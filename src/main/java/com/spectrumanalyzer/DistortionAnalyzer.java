@@ -0,0 +1,199 @@
+package com.spectrumanalyzer;
+
+import org.apache.commons.math3.transform.DftNormalization;
+import org.apache.commons.math3.transform.FastFourierTransformer;
+import org.apache.commons.math3.transform.TransformType;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+// THD, THD+N, SNR, SINAD and SFDR of every frame of a recording. Each frame is windowed and
+// transformed on its own, so frames run in parallel. Figures are in dB relative to the fundamental.
+// A Hann window leaks about -50 dBc outside its main lobe, which would cap SNR there, so a wide
+// Kaiser window is used whose sidelobes sit below double precision noise.
+public class DistortionAnalyzer {
+    public static final int DEFAULT_FRAME_SIZE = 8192;
+    private static final int MAX_HARMONIC = 10;
+    private static final double KAISER_BETA = 20;
+    private static final int LOBE_BINS = 8; // Main lobe is +-sqrt(1 + (beta / pi)^2) = +-6.4 bins
+    private static final double SILENCE_POWER = 1e-20;
+
+    private final int frameSize;
+    private final int sampleRate;
+    private final double[] window;
+    private final double windowPower; // Sum of the squared window
+
+    public static class Result {
+        public final long signalVersion;
+        public final double frameSeconds;
+        public final double[] times; // Frame centres in seconds
+        public final double[] fundamentalHz;
+        public final double[] fundamentalDb;
+        public final double[] thdDb;
+        public final double[] thdPlusNoiseDb;
+        public final double[] snrDb;
+        public final double[] sinadDb;
+        public final double[] sfdrDb;
+
+        Result(long signalVersion, double frameSeconds, int frames) {
+            this.signalVersion = signalVersion;
+            this.frameSeconds = frameSeconds;
+            this.times = new double[frames];
+            this.fundamentalHz = new double[frames];
+            this.fundamentalDb = new double[frames];
+            this.thdDb = new double[frames];
+            this.thdPlusNoiseDb = new double[frames];
+            this.snrDb = new double[frames];
+            this.sinadDb = new double[frames];
+            this.sfdrDb = new double[frames];
+        }
+
+        // Mean over the frames that had a fundamental, NaN if none did
+        public static double mean(double[] values) {
+            return Arrays.stream(values).filter(value -> !Double.isNaN(value)).average().orElse(Double.NaN);
+        }
+    }
+
+    public DistortionAnalyzer(int frameSize, int sampleRate) {
+        if (Integer.bitCount(frameSize) != 1) throw new IllegalArgumentException("Frame size must be a power of two");
+        this.frameSize = frameSize;
+        this.sampleRate = sampleRate;
+
+        this.window = new double[frameSize];
+        double sum = 0;
+        for (int n = 0; n < frameSize; n++) {
+            window[n] = WindowOperator.windowValue("Kaiser", n, frameSize, KAISER_BETA);
+            sum += window[n] * window[n];
+        }
+        this.windowPower = sum;
+    }
+
+    public Result analyze(double[] signal, long signalVersion) {
+        int frames = signal.length / frameSize;
+        Result result = new Result(signalVersion, (double) frameSize / sampleRate, frames);
+        IntStream.range(0, frames).parallel().forEach(frame -> analyzeFrame(signal, frame, result));
+        return result;
+    }
+
+    private void analyzeFrame(double[] signal, int frame, Result result) {
+        double[][] buffer = new double[2][frameSize];
+        int start = frame * frameSize;
+        for (int n = 0; n < frameSize; n++) {
+            buffer[0][n] = signal[start + n] * window[n];
+        }
+        FastFourierTransformer.transformInPlace(buffer, DftNormalization.STANDARD, TransformType.FORWARD);
+
+        double[] power = new double[frameSize / 2];
+        for (int bin = 0; bin < power.length; bin++) {
+            power[bin] = buffer[0][bin] * buffer[0][bin] + buffer[1][bin] * buffer[1][bin];
+        }
+
+        result.times[frame] = (frame + 0.5) * result.frameSeconds;
+        double binWidth = (double) sampleRate / frameSize;
+
+        // DC and its window skirt are not part of the signal
+        int firstBin = LOBE_BINS + 1;
+        int fundamentalBin = peakBin(power, firstBin, power.length - 1);
+        double total = sum(power, firstBin, power.length - 1);
+        double fundamental = lobePower(power, fundamentalBin);
+        if (fundamentalBin < 0 || fundamental <= SILENCE_POWER) {
+            setSilent(result, frame);
+            return;
+        }
+
+        double fundamentalPosition = fundamentalBin + interpolate(power, fundamentalBin);
+        // The DC skirt and the fundamental's lobe are never part of a spur, even where a close spur's lobe
+        // reaches into them
+        boolean[] notSpur = new boolean[power.length];
+        Arrays.fill(notSpur, 0, firstBin, true);
+        markLobe(notSpur, fundamentalBin);
+        boolean[] counted = new boolean[power.length];
+        markLobe(counted, fundamentalBin);
+
+        double harmonics = 0;
+        for (int harmonic = 2; harmonic <= MAX_HARMONIC; harmonic++) {
+            int expected = (int) Math.round(harmonic * fundamentalPosition);
+            if (expected + LOBE_BINS >= power.length) break;
+            // The interpolated fundamental can be off by a fraction of a bin, times the harmonic number
+            int bin = peakBin(power, expected - LOBE_BINS / 2, expected + LOBE_BINS / 2);
+            harmonics += unmarkedLobePower(power, counted, bin);
+            markLobe(counted, bin);
+        }
+
+        // Strongest component outside the fundamental, harmonic or not
+        int spurBin = -1;
+        for (int bin = firstBin; bin < power.length; bin++) {
+            if (notSpur[bin]) continue;
+            if (spurBin < 0 || power[bin] > power[spurBin]) spurBin = bin;
+        }
+        double spur = spurBin < 0 ? 0 : unmarkedLobePower(power, notSpur, spurBin);
+
+        double noiseAndDistortion = Math.max(0, total - fundamental);
+        double noise = Math.max(0, noiseAndDistortion - harmonics);
+        double fundamentalRms = Math.sqrt(2 * fundamental / ((double) frameSize * windowPower));
+
+        result.fundamentalHz[frame] = fundamentalPosition * binWidth;
+        result.fundamentalDb[frame] = SignalStatistics.toDb(fundamentalRms);
+        result.thdDb[frame] = ratioDb(harmonics, fundamental);
+        result.thdPlusNoiseDb[frame] = ratioDb(noiseAndDistortion, fundamental);
+        result.snrDb[frame] = ratioDb(fundamental, noise);
+        result.sinadDb[frame] = ratioDb(fundamental, noiseAndDistortion);
+        result.sfdrDb[frame] = ratioDb(fundamental, spur);
+    }
+
+    private static void setSilent(Result result, int frame) {
+        for (double[] series : new double[][]{result.fundamentalHz, result.fundamentalDb, result.thdDb,
+                result.thdPlusNoiseDb, result.snrDb, result.sinadDb, result.sfdrDb}) {
+            series[frame] = Double.NaN;
+        }
+    }
+
+    // Parabolic fit on the log power of the peak and its neighbours, offset in bins
+    private static double interpolate(double[] power, int bin) {
+        if (bin <= 0 || bin >= power.length - 1) return 0;
+        double left = Math.log(power[bin - 1] + SILENCE_POWER);
+        double centre = Math.log(power[bin] + SILENCE_POWER);
+        double right = Math.log(power[bin + 1] + SILENCE_POWER);
+        double denominator = left - 2 * centre + right;
+        return denominator != 0 ? Math.max(-0.5, Math.min(0.5, 0.5 * (left - right) / denominator)) : 0;
+    }
+
+    private static int peakBin(double[] power, int from, int to) {
+        int best = -1;
+        for (int bin = Math.max(0, from); bin <= Math.min(power.length - 1, to); bin++) {
+            if (best < 0 || power[bin] > power[best]) best = bin;
+        }
+        return best;
+    }
+
+    private static double lobePower(double[] power, int bin) {
+        return bin < 0 ? 0 : sum(power, bin - LOBE_BINS, bin + LOBE_BINS);
+    }
+
+    // Close harmonics of a low fundamental can share bins; each bin is only counted once
+    private static double unmarkedLobePower(double[] power, boolean[] counted, int bin) {
+        double sum = 0;
+        for (int i = Math.max(0, bin - LOBE_BINS); i <= Math.min(power.length - 1, bin + LOBE_BINS); i++) {
+            if (!counted[i]) sum += power[i];
+        }
+        return sum;
+    }
+
+    private static void markLobe(boolean[] counted, int bin) {
+        for (int i = Math.max(0, bin - LOBE_BINS); i <= Math.min(counted.length - 1, bin + LOBE_BINS); i++) {
+            counted[i] = true;
+        }
+    }
+
+    private static double sum(double[] power, int from, int to) {
+        double sum = 0;
+        for (int bin = Math.max(0, from); bin <= Math.min(power.length - 1, to); bin++) {
+            sum += power[bin];
+        }
+        return sum;
+    }
+
+    private static double ratioDb(double numerator, double denominator) {
+        return 10 * Math.log10((numerator + SILENCE_POWER) / (denominator + SILENCE_POWER));
+    }
+}
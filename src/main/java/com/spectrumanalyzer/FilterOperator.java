@@ -3,155 +3,215 @@ package com.spectrumanalyzer;
 import com.github.psambit9791.jdsp.filter.Butterworth;
 import com.github.psambit9791.jdsp.filter.Chebyshev;
 import com.github.psambit9791.jdsp.filter.Bessel;
+import javafx.application.Platform;
+import uk.me.berndporr.iirj.Cascade;
+import uk.me.berndporr.iirj.ChebyshevI;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
 
 public class FilterOperator {
     private SpectrumAnalyzer analyzer;
+    private final AtomicLong runs = new AtomicLong(); // Numbers the filter runs; only the newest is published
 
     public FilterOperator(SpectrumAnalyzer analyzer) {
         this.analyzer = analyzer;
     }
 
-    public void applyFilter(String filterType, double cutoff, double lowCutoff, double highCutoff, int order, double ripple) {
-        if (analyzer.originalSignal == null) return;
-
-        double[] signal = analyzer.processedSignal[0];
-        double[] filtered = null;
-
-        try {
-            switch (filterType) {
-                case "Low Pass":
-                    Butterworth blp = new Butterworth(analyzer.sampleRate);
-                    filtered = blp.lowPassFilter(signal, order, (int)cutoff);
-                    break;
-
-                case "High Pass":
-                    Butterworth bhp = new Butterworth(analyzer.sampleRate);
-                    filtered = bhp.highPassFilter(signal, order, (int)cutoff);
-                    break;
-
-                case "Band Pass":
-                    Butterworth bbp = new Butterworth(analyzer.sampleRate);
-                    filtered = bbp.bandPassFilter(signal, order, (int)lowCutoff, (int)highCutoff);
-                    break;
-
-                case "Band Stop":
-                    Butterworth bbs = new Butterworth(analyzer.sampleRate);
-                    filtered = bbs.bandStopFilter(signal, order, (int)lowCutoff, (int)highCutoff);
-                    break;
-
-                case "Butterworth Low Pass":
-                    Butterworth blp2 = new Butterworth(analyzer.sampleRate);
-                    filtered = blp2.lowPassFilter(signal, order, (int)cutoff);
-                    break;
-
-                case "Butterworth High Pass":
-                    Butterworth bhp2 = new Butterworth(analyzer.sampleRate);
-                    filtered = bhp2.highPassFilter(signal, order, (int)cutoff);
-                    break;
-
-                case "Butterworth Band Pass":
-                    Butterworth bbp2 = new Butterworth(analyzer.sampleRate);
-                    filtered = bbp2.bandPassFilter(signal, order, (int)lowCutoff, (int)highCutoff);
-                    break;
-
-                case "Chebyshev Low Pass":
-                    Chebyshev clp = new Chebyshev(analyzer.sampleRate, ripple, 1);
-                    filtered = clp.lowPassFilter(signal, order, (int)cutoff);
-                    break;
-
-                case "Chebyshev High Pass":
-                    Chebyshev chp = new Chebyshev(analyzer.sampleRate, ripple, 1);
-                    filtered = chp.highPassFilter(signal, order, (int)cutoff);
-                    break;
-
-                case "Chebyshev Band Pass":
-                    Chebyshev cbp = new Chebyshev(analyzer.sampleRate, ripple, 1);
-                    filtered = cbp.bandPassFilter(signal, order, (int)lowCutoff, (int)highCutoff);
-                    break;
-
-                // New Bessel filter cases
-                case "Bessel Low Pass":
-                    Bessel bslp = new Bessel(analyzer.sampleRate);
-                    filtered = bslp.lowPassFilter(signal, order, (int)cutoff);
-                    break;
-
-                case "Bessel High Pass":
-                    Bessel bshp = new Bessel(analyzer.sampleRate);
-                    filtered = bshp.highPassFilter(signal, order, (int)cutoff);
-                    break;
-
-                case "Bessel Band Pass":
-                    Bessel bsbp = new Bessel(analyzer.sampleRate);
-                    filtered = bsbp.bandPassFilter(signal, order, (int)lowCutoff, (int)highCutoff);
-                    break;
+    // Filters the original signal on a worker thread so the dashboard can show the predicted spectrum
+    // meanwhile. On the FX thread the run is then recorded in the history and published, followed by
+    // onApplied, or, if it failed or the state changed in the meantime, dropped with onDropped. A run
+    // superseded by a newer one is dropped silently; the newer one reports instead.
+    public void applyFilter(String filterType, double cutoff, double lowCutoff, double highCutoff, int order, double ripple,
+                            Runnable onApplied, Runnable onDropped) {
+        AnalysisState state = analyzer.getState();
+        if (!state.hasSignal()) return;
+        long run = runs.incrementAndGet();
+
+        // Filter runs are cached like the batch pipeline's, under the same key
+        ResultCache.Key key = analyzer.resultCacheKey(state, pipeline(filterType, cutoff, lowCutoff, highCutoff, order, ripple));
+
+        Thread.ofPlatform().name("Filter").daemon().start(() -> {
+            double[][] processed;
+            try {
+                processed = filterOriginal(state, analyzer.resultCache, key, filterType, cutoff, lowCutoff, highCutoff,
+                        order, ripple, analyzer.performanceMonitor);
+            } catch (Exception e) {
+                e.printStackTrace();
+                Platform.runLater(() -> {
+                    if (run == runs.get()) onDropped.run();
+                    analyzer.showAlert("Filter application failed: " + e.getMessage());
+                });
+                return;
             }
 
-            if (filtered != null) {
-                analyzer.processedSignal[0] = filtered;
-
-                if (analyzer.channels > 1 && analyzer.processedSignal.length > 1) {
-                    for (int i = 1; i < analyzer.channels; i++) {
-                        analyzer.processedSignal[i] = applyFilterToChannel(filterType, analyzer.processedSignal[i], cutoff, lowCutoff, highCutoff, order, ripple);
-                    }
+            double[][] result = processed;
+            Platform.runLater(() -> {
+                if (run != runs.get()) return;
+                // Undone or reloaded while this one ran
+                if (result == null || analyzer.getState() != state) {
+                    onDropped.run();
+                    return;
                 }
+                analyzer.signalHistory.record(state.processedSignal, filterType);
+                analyzer.publishState(state.withProcessed(result));
+                onApplied.run();
+            });
+        });
+    }
+
+    // The batch pipeline equivalent of a filter run from the dashboard, whose describe() keys its cache entry
+    public static AnalysisPipeline pipeline(String filterType, double cutoff, double lowCutoff, double highCutoff, int order, double ripple) {
+        return new AnalysisPipeline(filterType, cutoff, lowCutoff, highCutoff, order, ripple, "Rectangular", 8.6);
+    }
+
+    // The worker side of applyFilter: filters the original signal of a state, or takes the result cached
+    // under key, and caches what it filtered. A null key skips the cache. Returns null for an unknown type.
+    public static double[][] filterOriginal(AnalysisState state, ResultCache resultCache, ResultCache.Key key,
+                                            String filterType, double cutoff, double lowCutoff, double highCutoff,
+                                            int order, double ripple, PerformanceMonitor monitor) {
+        try (PerformanceMonitor.Timer timer = monitor.time("Filter")) {
+            AnalysisPipeline.Result cached = resultCache.get(key, true);
+            if (cached != null && cached.processed != null && cached.processed.length == state.channels) {
+                return cached.processed;
+            }
+            double[][] processed = filter(state.originalSignal, state.sampleRate, filterType, cutoff, lowCutoff, highCutoff, order, ripple);
+            if (processed != null) {
+                resultCache.putInBackground(key,
+                        () -> AnalysisPipeline.Result.audioOnly(state.sampleRate, processed, state.audioProperties), true);
             }
-        } catch (Exception e) {
-            analyzer.showAlert("Filter application failed: " + e.getMessage());
+            return processed;
         }
     }
 
-    private double[] applyFilterToChannel(String filterType, double[] channelSignal, double cutoff, double lowCutoff, double highCutoff, int order, double ripple) {
-        try {
-            switch (filterType) {
-                case "Low Pass":
-                case "Butterworth Low Pass":
-                    Butterworth blp = new Butterworth(analyzer.sampleRate);
-                    return blp.lowPassFilter(channelSignal, order, (int)cutoff);
-
-                case "High Pass":
-                case "Butterworth High Pass":
-                    Butterworth bhp = new Butterworth(analyzer.sampleRate);
-                    return bhp.highPassFilter(channelSignal, order, (int)cutoff);
-
-                case "Band Pass":
-                case "Butterworth Band Pass":
-                    Butterworth bbp = new Butterworth(analyzer.sampleRate);
-                    return bbp.bandPassFilter(channelSignal, order, (int)lowCutoff, (int)highCutoff);
-
-                case "Band Stop":
-                    Butterworth bbs = new Butterworth(analyzer.sampleRate);
-                    return bbs.bandStopFilter(channelSignal, order, (int)lowCutoff, (int)highCutoff);
-
-                case "Chebyshev Low Pass":
-                    Chebyshev clp = new Chebyshev(analyzer.sampleRate, ripple, 1);
-                    return clp.lowPassFilter(channelSignal, order, (int)cutoff);
-
-                case "Chebyshev High Pass":
-                    Chebyshev chp = new Chebyshev(analyzer.sampleRate, ripple, 1);
-                    return chp.highPassFilter(channelSignal, order, (int)cutoff);
-
-                case "Chebyshev Band Pass":
-                    Chebyshev cbp = new Chebyshev(analyzer.sampleRate, ripple, 1);
-                    return cbp.bandPassFilter(channelSignal, order, (int)lowCutoff, (int)highCutoff);
-
-                // New Bessel filter cases for multi-channel processing
-                case "Bessel Low Pass":
-                    Bessel bslp = new Bessel(analyzer.sampleRate);
-                    return bslp.lowPassFilter(channelSignal, order, (int)cutoff);
-
-                case "Bessel High Pass":
-                    Bessel bshp = new Bessel(analyzer.sampleRate);
-                    return bshp.highPassFilter(channelSignal, order, (int)cutoff);
-
-                case "Bessel Band Pass":
-                    Bessel bsbp = new Bessel(analyzer.sampleRate);
-                    return bsbp.bandPassFilter(channelSignal, order, (int)lowCutoff, (int)highCutoff);
-
-                default:
-                    return channelSignal;
+    // Filters every channel of a signal without touching the application state. Returns null for an
+    // unknown filter type.
+    public static double[][] filter(double[][] signal, int sampleRate, String filterType, double cutoff, double lowCutoff, double highCutoff, int order, double ripple) {
+        double[][] processed = new double[signal.length][];
+        // Channels are independent, so they are filtered side by side
+        IntStream.range(0, signal.length).parallel().forEach(ch -> processed[ch] = filterChannel(
+                filterType, sampleRate, signal[ch], cutoff, lowCutoff, highCutoff, order, ripple));
+        return processed.length > 0 && processed[0] != null ? processed : null;
+    }
+
+    // Returns null for an unknown filter type
+    private static double[] filterChannel(String filterType, int sampleRate, double[] channelSignal, double cutoff, double lowCutoff, double highCutoff, int order, double ripple) {
+        switch (filterType) {
+            case "Low Pass":
+            case "Butterworth Low Pass":
+                Butterworth blp = new Butterworth(sampleRate);
+                return blp.lowPassFilter(channelSignal, order, (int)cutoff);
+
+            case "High Pass":
+            case "Butterworth High Pass":
+                Butterworth bhp = new Butterworth(sampleRate);
+                return bhp.highPassFilter(channelSignal, order, (int)cutoff);
+
+            case "Band Pass":
+            case "Butterworth Band Pass":
+                Butterworth bbp = new Butterworth(sampleRate);
+                return bbp.bandPassFilter(channelSignal, order, (int)lowCutoff, (int)highCutoff);
+
+            case "Band Stop":
+                Butterworth bbs = new Butterworth(sampleRate);
+                return bbs.bandStopFilter(channelSignal, order, (int)lowCutoff, (int)highCutoff);
+
+            case "Chebyshev Low Pass":
+                Chebyshev clp = new Chebyshev(sampleRate, ripple, 1);
+                return clp.lowPassFilter(channelSignal, order, (int)cutoff);
+
+            case "Chebyshev High Pass":
+                Chebyshev chp = new Chebyshev(sampleRate, ripple, 1);
+                return chp.highPassFilter(channelSignal, order, (int)cutoff);
+
+            case "Chebyshev Band Pass":
+                Chebyshev cbp = new Chebyshev(sampleRate, ripple, 1);
+                return cbp.bandPassFilter(channelSignal, order, (int)lowCutoff, (int)highCutoff);
+
+            case "Bessel Low Pass":
+                Bessel bslp = new Bessel(sampleRate);
+                return bslp.lowPassFilter(channelSignal, order, (int)cutoff);
+
+            case "Bessel High Pass":
+                Bessel bshp = new Bessel(sampleRate);
+                return bshp.highPassFilter(channelSignal, order, (int)cutoff);
+
+            case "Bessel Band Pass":
+                Bessel bsbp = new Bessel(sampleRate);
+                return bsbp.bandPassFilter(channelSignal, order, (int)lowCutoff, (int)highCutoff);
+
+            default:
+                return null;
+        }
+    }
+
+    // Per-sample filter with the same design as the block filters above; the state carries over
+    // between calls so a signal can be filtered in pieces. Returns null for an unknown type.
+    public static Cascade createFilter(String filterType, int sampleRate, double cutoff, double lowCutoff, double highCutoff, int order, double ripple) {
+        double center = ((int)lowCutoff + (int)highCutoff) / 2.0;
+        double width = Math.abs((int)highCutoff - (int)lowCutoff);
+        if (filterType.endsWith("Band Pass") || filterType.endsWith("Band Stop")) {
+            if (lowCutoff >= highCutoff) {
+                throw new IllegalArgumentException("Lower Cutoff Frequency cannot be more than the Higher Cutoff Frequency");
             }
-        } catch (Exception e) {
-            return channelSignal;
+        }
+
+        switch (filterType) {
+            case "Low Pass":
+            case "Butterworth Low Pass":
+                uk.me.berndporr.iirj.Butterworth blp = new uk.me.berndporr.iirj.Butterworth();
+                blp.lowPass(order, sampleRate, (int)cutoff);
+                return blp;
+
+            case "High Pass":
+            case "Butterworth High Pass":
+                uk.me.berndporr.iirj.Butterworth bhp = new uk.me.berndporr.iirj.Butterworth();
+                bhp.highPass(order, sampleRate, (int)cutoff);
+                return bhp;
+
+            case "Band Pass":
+            case "Butterworth Band Pass":
+                uk.me.berndporr.iirj.Butterworth bbp = new uk.me.berndporr.iirj.Butterworth();
+                bbp.bandPass(order, sampleRate, center, width);
+                return bbp;
+
+            case "Band Stop":
+                uk.me.berndporr.iirj.Butterworth bbs = new uk.me.berndporr.iirj.Butterworth();
+                bbs.bandStop(order, sampleRate, center, width);
+                return bbs;
+
+            case "Chebyshev Low Pass":
+                ChebyshevI clp = new ChebyshevI();
+                clp.lowPass(order, sampleRate, (int)cutoff, ripple);
+                return clp;
+
+            case "Chebyshev High Pass":
+                ChebyshevI chp = new ChebyshevI();
+                chp.highPass(order, sampleRate, (int)cutoff, ripple);
+                return chp;
+
+            case "Chebyshev Band Pass":
+                ChebyshevI cbp = new ChebyshevI();
+                cbp.bandPass(order, sampleRate, center, width, ripple);
+                return cbp;
+
+            case "Bessel Low Pass":
+                uk.me.berndporr.iirj.Bessel bslp = new uk.me.berndporr.iirj.Bessel();
+                bslp.lowPass(order, sampleRate, (int)cutoff);
+                return bslp;
+
+            case "Bessel High Pass":
+                uk.me.berndporr.iirj.Bessel bshp = new uk.me.berndporr.iirj.Bessel();
+                bshp.highPass(order, sampleRate, (int)cutoff);
+                return bshp;
+
+            case "Bessel Band Pass":
+                uk.me.berndporr.iirj.Bessel bsbp = new uk.me.berndporr.iirj.Bessel();
+                bsbp.bandPass(order, sampleRate, center, width);
+                return bsbp;
+
+            default:
+                return null;
         }
     }
-}
\ No newline at end of file
+}
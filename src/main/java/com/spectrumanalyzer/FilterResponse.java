@@ -0,0 +1,126 @@
+package com.spectrumanalyzer;
+
+import uk.me.berndporr.iirj.Biquad;
+import uk.me.berndporr.iirj.Cascade;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// Complex frequency response of a filter design, evaluated from its biquad coefficients rather than by
+// filtering a signal. Multiplying a spectrum by |H|^2 predicts what the filter will do to it.
+public class FilterResponse {
+    private static final int MAX_CACHED = 64;
+    private static final double FLOOR_DB = -300; // Exact zeros of band stops
+
+    public final double[] frequencies;
+    public final double[] magnitudesDb; // 20 log10 |H(f)|
+    public final double[] phaseDegrees; // Wrapped to (-180, 180]
+
+    // Keyed by design and frequency grid, least recently used dropped first
+    private static final Map<String, FilterResponse> CACHE = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, FilterResponse> eldest) {
+            return size() > MAX_CACHED;
+        }
+    };
+
+    private FilterResponse(double[] frequencies, double[] magnitudesDb, double[] phaseDegrees) {
+        this.frequencies = frequencies;
+        this.magnitudesDb = magnitudesDb;
+        this.phaseDegrees = phaseDegrees;
+    }
+
+    // Response of the design FilterOperator.filter applies, at the given frequencies. Null for an
+    // unknown filter type.
+    public static FilterResponse of(String filterType, int sampleRate, double cutoff, double lowCutoff, double highCutoff,
+                                    int order, double ripple, double[] frequencies) {
+        String key = String.format(Locale.ROOT, "%s;%d;%s;%s;%s;%d;%s;%d;%s;%s", filterType, sampleRate, cutoff, lowCutoff,
+                highCutoff, order, ripple, frequencies.length, frequencies[0], frequencies[frequencies.length - 1]);
+        synchronized (CACHE) {
+            FilterResponse cached = CACHE.get(key);
+            if (cached != null) return cached;
+        }
+
+        Cascade cascade = FilterOperator.createFilter(filterType, sampleRate, cutoff, lowCutoff, highCutoff, order, ripple);
+        if (cascade == null) return null;
+        FilterResponse response = evaluate(cascade, sampleRate, frequencies);
+        synchronized (CACHE) {
+            CACHE.put(key, response);
+        }
+        return response;
+    }
+
+    // Evenly spaced from DC to Nyquist, lined up with the spectrum chart
+    public static FilterResponse overRange(String filterType, int sampleRate, double cutoff, double lowCutoff, double highCutoff,
+                                           int order, double ripple, int points) {
+        double[] frequencies = new double[points];
+        for (int i = 0; i < points; i++) frequencies[i] = i * (sampleRate / 2.0) / (points - 1);
+        return of(filterType, sampleRate, cutoff, lowCutoff, highCutoff, order, ripple, frequencies);
+    }
+
+    // The spectrum the filter should give each channel of a state, from its original spectra in the cache.
+    // An entry is null while that channel's original spectrum hasn't been computed.
+    public static SpectrumCalculator.Spectrum[] predict(AnalysisState state, DerivedDataCache originalCache, String filterType,
+                                                        double cutoff, double lowCutoff, double highCutoff, int order, double ripple) {
+        SpectrumCalculator.Spectrum[] predicted = new SpectrumCalculator.Spectrum[state.channels];
+        for (int ch = 0; ch < predicted.length; ch++) {
+            SpectrumCalculator.Spectrum original = originalCache.get(state.originalVersion, "spectrum" + ch);
+            if (original == null) continue;
+            FilterResponse atBins = of(filterType, state.sampleRate, cutoff, lowCutoff, highCutoff, order, ripple,
+                    original.frequencies);
+            if (atBins != null) predicted[ch] = atBins.apply(original);
+        }
+        return predicted;
+    }
+
+    // H(z) is the product of (b0 + b1 z^-1 + b2 z^-2) / (a0 + a1 z^-1 + a2 z^-2) over the sections
+    static FilterResponse evaluate(Cascade cascade, int sampleRate, double[] frequencies) {
+        int sections = cascade.getNumBiquads();
+        double[][] coefficients = new double[sections][];
+        for (int s = 0; s < sections; s++) {
+            Biquad biquad = cascade.getBiquad(s);
+            coefficients[s] = new double[]{biquad.getB0(), biquad.getB1(), biquad.getB2(),
+                    biquad.getA0(), biquad.getA1(), biquad.getA2()};
+        }
+
+        double[] magnitudesDb = new double[frequencies.length];
+        double[] phaseDegrees = new double[frequencies.length];
+        for (int i = 0; i < frequencies.length; i++) {
+            double omega = 2 * Math.PI * frequencies[i] / sampleRate;
+            // z^-1 and z^-2 on the unit circle
+            double cos1 = Math.cos(omega), sin1 = -Math.sin(omega);
+            double cos2 = Math.cos(2 * omega), sin2 = -Math.sin(2 * omega);
+
+            double re = 1, im = 0;
+            for (double[] c : coefficients) {
+                double numRe = c[0] + c[1] * cos1 + c[2] * cos2;
+                double numIm = c[1] * sin1 + c[2] * sin2;
+                double denRe = c[3] + c[4] * cos1 + c[5] * cos2;
+                double denIm = c[4] * sin1 + c[5] * sin2;
+                // Section response = num / den, accumulated into re + j im
+                double denNorm = denRe * denRe + denIm * denIm;
+                double secRe = (numRe * denRe + numIm * denIm) / denNorm;
+                double secIm = (numIm * denRe - numRe * denIm) / denNorm;
+                double nextRe = re * secRe - im * secIm;
+                im = re * secIm + im * secRe;
+                re = nextRe;
+            }
+            double power = re * re + im * im;
+            magnitudesDb[i] = power > 0 ? Math.max(FLOOR_DB, 10 * Math.log10(power)) : FLOOR_DB;
+            phaseDegrees[i] = Math.toDegrees(Math.atan2(im, re));
+        }
+        return new FilterResponse(frequencies, magnitudesDb, phaseDegrees);
+    }
+
+    // The spectrum the filter should produce: adding 20 log10 |H| in dB is multiplying the PSD by |H|^2.
+    // The response must have been evaluated at the spectrum's frequencies.
+    public SpectrumCalculator.Spectrum apply(SpectrumCalculator.Spectrum spectrum) {
+        if (spectrum.frequencies.length != frequencies.length) {
+            throw new IllegalArgumentException("Response and spectrum use different frequency grids");
+        }
+        double[] predicted = new double[frequencies.length];
+        for (int i = 0; i < predicted.length; i++) predicted[i] = spectrum.magnitudesDb[i] + magnitudesDb[i];
+        return new SpectrumCalculator.Spectrum(spectrum.frequencies, predicted);
+    }
+}
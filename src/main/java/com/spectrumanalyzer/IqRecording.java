@@ -0,0 +1,149 @@
+package com.spectrumanalyzer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Raw interleaved I/Q capture (I0 Q0 I1 Q1 ...), little-endian, read straight from a memory-mapped
+// file. Nothing is loaded up front, so recordings can be far larger than the heap.
+public class IqRecording implements AutoCloseable {
+    private static final long WINDOW_BYTES = 1L << 30;
+
+    public enum SampleFormat {
+        INT8("8-bit signed", 1),
+        INT16("16-bit signed", 2),
+        FLOAT32("32-bit float", 4);
+
+        public final String label;
+        public final int bytes;
+
+        SampleFormat(String label, int bytes) {
+            this.label = label;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    public final Path path;
+    public final SampleFormat format;
+    public final double sampleRate;
+    public final double centerFrequency;
+    public final long version; // Identifies the recording in the spectrum caches
+
+    private final FileChannel channel;
+    private final long sampleCount;
+    private final MappedByteBuffer[] windows; // Mapped on first use
+
+    private IqRecording(Path path, SampleFormat format, double sampleRate, double centerFrequency, FileChannel channel) throws IOException {
+        this.path = path;
+        this.format = format;
+        this.sampleRate = sampleRate;
+        this.centerFrequency = centerFrequency;
+        this.version = AnalysisState.nextVersion();
+        this.channel = channel;
+        this.sampleCount = channel.size() / (2L * format.bytes);
+        this.windows = new MappedByteBuffer[(int) ((sampleCount * 2 * format.bytes + WINDOW_BYTES - 1) / WINDOW_BYTES)];
+    }
+
+    public static IqRecording open(Path path, SampleFormat format, double sampleRate, double centerFrequency) throws IOException {
+        if (sampleRate <= 0) throw new IllegalArgumentException("Sample rate must be positive");
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new IqRecording(path, format, sampleRate, centerFrequency, channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    public double getDuration() {
+        return sampleCount / sampleRate;
+    }
+
+    // Reads count complex samples from start, scaled to [-1, 1); anything outside the recording, before
+    // its start or past its end, reads as zero
+    public void read(long start, double[] re, double[] im, int count) throws IOException {
+        int leading = (int) Math.min(count, Math.max(0, -start));
+        int available = (int) Math.max(0, Math.min(count - leading, sampleCount - (start + leading)));
+        int complexBytes = 2 * format.bytes;
+
+        for (int i = 0; i < leading; i++) {
+            re[i] = 0;
+            im[i] = 0;
+        }
+
+        int filled = 0;
+        while (filled < available) {
+            long byteOffset = (start + leading + filled) * complexBytes;
+            int windowIndex = (int) (byteOffset / WINDOW_BYTES);
+            int windowOffset = (int) (byteOffset % WINDOW_BYTES);
+            MappedByteBuffer window = getWindow(windowIndex);
+
+            // WINDOW_BYTES is a multiple of every sample size, so samples never straddle two windows
+            int samples = Math.min(available - filled, (window.capacity() - windowOffset) / complexBytes);
+            ByteBuffer slice = window.slice(windowOffset, samples * complexBytes).order(ByteOrder.LITTLE_ENDIAN);
+            decode(slice, re, im, leading + filled, samples);
+            filled += samples;
+        }
+
+        for (int i = leading + filled; i < count; i++) {
+            re[i] = 0;
+            im[i] = 0;
+        }
+    }
+
+    private void decode(ByteBuffer data, double[] re, double[] im, int offset, int samples) {
+        switch (format) {
+            case INT8 -> {
+                byte[] interleaved = new byte[samples * 2];
+                data.get(interleaved);
+                for (int i = 0; i < samples; i++) {
+                    re[offset + i] = interleaved[2 * i] / 128.0;
+                    im[offset + i] = interleaved[2 * i + 1] / 128.0;
+                }
+            }
+            case INT16 -> {
+                short[] interleaved = new short[samples * 2];
+                data.asShortBuffer().get(interleaved);
+                for (int i = 0; i < samples; i++) {
+                    re[offset + i] = interleaved[2 * i] / 32768.0;
+                    im[offset + i] = interleaved[2 * i + 1] / 32768.0;
+                }
+            }
+            case FLOAT32 -> {
+                float[] interleaved = new float[samples * 2];
+                data.asFloatBuffer().get(interleaved);
+                for (int i = 0; i < samples; i++) {
+                    re[offset + i] = interleaved[2 * i];
+                    im[offset + i] = interleaved[2 * i + 1];
+                }
+            }
+        }
+    }
+
+    private synchronized MappedByteBuffer getWindow(int index) throws IOException {
+        if (windows[index] == null) {
+            long position = index * WINDOW_BYTES;
+            long size = Math.min(WINDOW_BYTES, sampleCount * 2 * format.bytes - position);
+            windows[index] = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        }
+        return windows[index];
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
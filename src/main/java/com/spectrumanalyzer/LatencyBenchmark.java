@@ -0,0 +1,309 @@
+package com.spectrumanalyzer;
+
+import com.github.psambit9791.wavfile.WavFile;
+import com.spectrumanalyzer.panels.DashboardPanel;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.ref.Reference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+// End-to-end latency of what an operator waits for, started with --benchmark: opening a file until its
+// plots are ready, and applying a filter until the redraw is ready. Synthetic WAVs of every duration and
+// channel count are generated once into a work directory and reused while their size matches. Each run
+// calls the same code the GUI runs off the FX thread (OpenedFile, FilterResponse.predict,
+// FilterOperator.filterOriginal and the dashboard's plot preparation) in the same order, with fresh
+// in-memory caches per load and a result cache on disk that lasts across runs, as the GUI's does. The
+// result cache starts empty each invocation and is deleted afterwards, so results don't depend on what
+// earlier invocations left behind. Only
+// attaching the finished series to the charts is left out, which needs a toolkit and is timed live as
+// "Chart update" in the performance overlay.
+public class LatencyBenchmark {
+    private static final String FILTER_TYPE = "Butterworth Low Pass";
+    private static final int FILTER_ORDER = 7;
+    private static final int RESPONSE_POINTS = 1024; // As the dashboard's response chart
+    private static final int BLOCK_FRAMES = 1 << 16;
+
+    private final Path directory;
+    private final int sampleRate;
+    private final int warmupRuns;
+    private final int runs;
+    private final Path cacheDirectory; // Null when caching is off
+    private final ResultCache resultCache;
+
+    // Latencies of one size, one entry per measured run
+    private static class Measurement {
+        final long seconds;
+        final int channels;
+        final long fileBytes;
+        final double[] openMillis;
+        final double[] previewMillis;
+        final double[] applyMillis;
+        final PerformanceMonitor stages = new PerformanceMonitor();
+        double peakHeapMb;
+        double liveHeapMb;
+        String skipped; // Reason the size was not run, null otherwise
+
+        Measurement(long seconds, int channels, long fileBytes, int runs) {
+            this.seconds = seconds;
+            this.channels = channels;
+            this.fileBytes = fileBytes;
+            this.openMillis = new double[runs];
+            this.previewMillis = new double[runs];
+            this.applyMillis = new double[runs];
+        }
+    }
+
+    public LatencyBenchmark(Path directory, int sampleRate, int warmupRuns, int runs, long cacheBytes) throws IOException {
+        this.directory = directory;
+        this.sampleRate = sampleRate;
+        this.warmupRuns = warmupRuns;
+        this.runs = runs;
+        if (cacheBytes > 0) {
+            Files.createDirectories(directory);
+            this.cacheDirectory = Files.createTempDirectory(directory, "cache-");
+        } else {
+            this.cacheDirectory = null;
+        }
+        this.resultCache = new ResultCache(cacheDirectory != null ? cacheDirectory : directory.resolve("cache"), cacheBytes);
+    }
+
+    // Options: --durations 60,600,3600,14400 (seconds), --channels 1,2,8, --rate 48000, --runs 5, --warmup 1,
+    // --dir <work directory>, --cache-mb 2048 (0 opens every file uncached). Larger sizes need a matching
+    // -Xmx; sizes that can't fit, as the 4 h ones on a default heap, are reported as skipped.
+    public static void main(String[] args) throws Exception {
+        long[] durations = {60, 600, 3600, 14400};
+        int[] channelCounts = {1, 2, 8};
+        int sampleRate = 48000;
+        int runs = 5;
+        int warmupRuns = 1;
+        long cacheMb = 2048;
+        Path directory = Path.of(System.getProperty("java.io.tmpdir"), "spectrumanalyzer-benchmark");
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--durations" -> durations = Arrays.stream(value.split(",")).mapToLong(s -> Long.parseLong(s.trim())).toArray();
+                case "--channels" -> channelCounts = Arrays.stream(value.split(",")).mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+                case "--rate" -> sampleRate = Integer.parseInt(value);
+                case "--runs" -> runs = Integer.parseInt(value);
+                case "--warmup" -> warmupRuns = Integer.parseInt(value);
+                case "--dir" -> directory = Path.of(value);
+                case "--cache-mb" -> cacheMb = Long.parseLong(value);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (runs < 1) throw new IllegalArgumentException("At least one run is needed");
+        // Building chart series wakes the renderer; the software one loads without a GPU or display
+        if (System.getProperty("prism.order") == null) System.setProperty("prism.order", "sw");
+
+        LatencyBenchmark benchmark = new LatencyBenchmark(directory, sampleRate, warmupRuns, runs, cacheMb << 20);
+        List<Measurement> measurements = new ArrayList<>();
+        try {
+            for (long seconds : durations) {
+                for (int channels : channelCounts) {
+                    measurements.add(benchmark.measure(seconds, channels));
+                }
+            }
+        } finally {
+            benchmark.deleteCache();
+        }
+        benchmark.printReport(measurements);
+    }
+
+    private Measurement measure(long seconds, int channels) throws Exception {
+        long frames = seconds * sampleRate;
+        Path file = directory.resolve(String.format(Locale.ROOT, "bench-%ds-%dch-%dHz.wav", seconds, channels, sampleRate));
+        Measurement measurement = new Measurement(seconds, channels, 44 + frames * channels * 2, runs);
+
+        // Original and filtered samples, the two prefix sums of a range index over each, and the two mixdowns
+        long neededBytes = frames * channels * Double.BYTES * 6 + frames * Double.BYTES * 2;
+        if (frames > Integer.MAX_VALUE || neededBytes > Runtime.getRuntime().maxMemory() * 0.9) {
+            measurement.skipped = String.format(Locale.ROOT, "needs about %d MB of heap", neededBytes >> 20);
+            System.out.println(label(measurement) + " skipped, " + measurement.skipped);
+            return measurement;
+        }
+
+        generate(file, frames, channels);
+        System.out.println(label(measurement) + ": " + warmupRuns + " warm-up and " + runs + " measured runs");
+
+        // The heap left over by the previous size shouldn't count towards this one
+        System.gc();
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP).toList();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        // The warm-up runs leave the original results in the result cache, so measured opens are reopens.
+        // A different cutoff each run, as an operator would try, keeps the response and result caches from
+        // hiding the filter design and the filter itself; the result cache is this invocation's own, so no
+        // earlier one can have filtered with these cutoffs.
+        for (int run = -warmupRuns; run < runs; run++) {
+            double cutoff = 1000 + (run + warmupRuns) * 10;
+            PerformanceMonitor monitor = run < 0 ? new PerformanceMonitor() : measurement.stages;
+            long[] nanos = runOnce(file, cutoff, monitor);
+            // Writes left over from this run shouldn't slow down the next
+            resultCache.awaitBackgroundWrites();
+            if (run >= 0) {
+                measurement.openMillis[run] = nanos[0] / 1e6;
+                measurement.previewMillis[run] = nanos[1] / 1e6;
+                measurement.applyMillis[run] = nanos[2] / 1e6;
+                measurement.liveHeapMb = Math.max(measurement.liveHeapMb, nanos[3] / (1024.0 * 1024.0));
+            }
+        }
+
+        // Sum of each pool's own peak, an upper bound since the pools need not peak together; it includes
+        // garbage not yet collected, so it follows -Xmx more than the live size does
+        measurement.peakHeapMb = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum() / (1024.0 * 1024.0);
+        return measurement;
+    }
+
+    // {open to plots ready, apply to preview, apply to redraw ready} in nanoseconds, then the bytes still
+    // reachable once the filtered plots are ready
+    private long[] runOnce(Path file, double cutoff, PerformanceMonitor monitor) throws Exception {
+        DerivedDataCache originalCache = new DerivedDataCache();
+        DerivedDataCache processedCache = new DerivedDataCache();
+        SegmentSpectrumCache segmentCache = new SegmentSpectrumCache(1024);
+
+        // SpectrumAnalyzer.loadAudioFile, then DashboardPanel.updatePlots
+        long openStart = System.nanoTime();
+        OpenedFile opened = OpenedFile.open(file, resultCache, monitor);
+        opened.seed(originalCache);
+        AnalysisState loaded = opened.state;
+        prepare(loaded, originalCache, processedCache, segmentCache, monitor);
+        if (opened.fingerprint != null) opened.fingerprint.cacheOriginalResults(loaded, resultCache, originalCache);
+        long openNanos = System.nanoTime() - openStart;
+
+        // ControlPanel.applySelectedFilter: the preview first, then the filter and the redraw
+        long applyStart = System.nanoTime();
+        try (PerformanceMonitor.Timer timer = monitor.time("Filter preview")) {
+            FilterResponse.overRange(FILTER_TYPE, loaded.sampleRate, cutoff, 0, 0, FILTER_ORDER, 1.0, RESPONSE_POINTS);
+            FilterResponse.predict(loaded, originalCache, FILTER_TYPE, cutoff, 0, 0, FILTER_ORDER, 1.0);
+        }
+        long previewNanos = System.nanoTime() - applyStart;
+
+        ResultCache.Key key = opened.fingerprint == null ? null
+                : opened.fingerprint.key(loaded, FilterOperator.pipeline(FILTER_TYPE, cutoff, 0, 0, FILTER_ORDER, 1.0));
+        AnalysisState filtered = loaded.withProcessed(FilterOperator.filterOriginal(loaded, resultCache, key, FILTER_TYPE,
+                cutoff, 0, 0, FILTER_ORDER, 1.0, monitor));
+        prepare(filtered, originalCache, processedCache, segmentCache, monitor);
+        long applyNanos = System.nanoTime() - applyStart;
+
+        // Everything the dashboard would hold on to, measured outside the timed stages
+        System.gc();
+        long liveBytes = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        Reference.reachabilityFence(filtered);
+        Reference.reachabilityFence(originalCache);
+        Reference.reachabilityFence(processedCache);
+        Reference.reachabilityFence(segmentCache);
+        return new long[]{openNanos, previewNanos, applyNanos, liveBytes};
+    }
+
+    private static void prepare(AnalysisState state, DerivedDataCache originalCache, DerivedDataCache processedCache,
+                                SegmentSpectrumCache segmentCache, PerformanceMonitor monitor) {
+        try (PerformanceMonitor.Timer timer = monitor.time("Prepare plots")) {
+            TaskGraph graph = new TaskGraph(ForkJoinPool.commonPool(), monitor);
+            new DashboardPanel.PlotData().prepare(state, originalCache, processedCache, segmentCache, graph);
+        }
+    }
+
+    private void deleteCache() throws Exception {
+        if (cacheDirectory == null) return;
+        resultCache.awaitBackgroundWrites();
+        try (Stream<Path> paths = Files.walk(cacheDirectory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(path);
+        }
+    }
+
+    // 16-bit PCM written block by block, so hours of audio never have to fit in memory. Every channel
+    // carries its own tone over a shared chirp, noise and a click each second.
+    private void generate(Path file, long frames, int channels) throws Exception {
+        long expectedBytes = 44 + frames * channels * 2;
+        if (Files.exists(file) && Files.size(file) == expectedBytes) return;
+
+        Files.createDirectories(directory);
+        System.out.println("Generating " + file);
+        Path partial = file.resolveSibling(file.getFileName() + ".part");
+        WavFile writer = WavFile.newWavFile(partial.toFile(), channels, frames, 16, sampleRate);
+        try {
+            double[][] block = new double[channels][BLOCK_FRAMES];
+            for (long first = 0; first < frames; first += BLOCK_FRAMES) {
+                int count = (int) Math.min(BLOCK_FRAMES, frames - first);
+                for (int ch = 0; ch < channels; ch++) {
+                    double[] samples = block[ch];
+                    Arrays.fill(samples, 0);
+                    SignalGenerator.addTone(samples, first, sampleRate, 220 * (ch + 1), 0.3, 0);
+                    SignalGenerator.addChirp(samples, first, sampleRate, 20, sampleRate / 2.0 * 0.9, 10, 0.1);
+                    SignalGenerator.addNoise(samples, first, 0.05, ch);
+                    SignalGenerator.addImpulses(samples, first, sampleRate, ch * 100L, 0.4);
+                    for (int i = 0; i < count; i++) samples[i] = Math.max(-1.0, Math.min(1.0, samples[i]));
+                }
+                writer.writeFrames(block, count);
+            }
+        } finally {
+            writer.close();
+        }
+        Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void printReport(List<Measurement> measurements) {
+        System.out.println();
+        System.out.println(resultCache.isEnabled()
+                ? String.format(Locale.ROOT, "Result cache on, %d hits and %d misses", resultCache.getHits(), resultCache.getMisses())
+                : "Result cache off, every open decodes and analyzes");
+        System.out.printf(Locale.ROOT, "%-16s %8s | %-26s | %-24s | %-27s | %8s %8s%n", "Size", "File MB",
+                "Open to plots p50/p90/max", "Apply to preview p50/p90", "Apply to redraw p50/p90/max", "Peak MB", "Live MB");
+        for (Measurement m : measurements) {
+            String size = label(m);
+            if (m.skipped != null) {
+                System.out.printf(Locale.ROOT, "%-16s %8.0f | skipped, %s%n", size, m.fileBytes / 1e6, m.skipped);
+                continue;
+            }
+            System.out.printf(Locale.ROOT, "%-16s %8.0f | %-26s | %-24s | %-27s | %8.0f %8.0f%n", size, m.fileBytes / 1e6,
+                    latencies(m.openMillis, true), latencies(m.previewMillis, false), latencies(m.applyMillis, true),
+                    m.peakHeapMb, m.liveHeapMb);
+        }
+
+        // Where the time goes, so a regression can be traced to its stage
+        System.out.println();
+        System.out.println("Stage means in ms:");
+        for (Measurement m : measurements) {
+            if (m.skipped != null) continue;
+            StringBuilder line = new StringBuilder(String.format(Locale.ROOT, "%-16s", label(m)));
+            for (Map.Entry<String, LatencyHistogram> stage : m.stages.getStages().entrySet()) {
+                line.append(String.format(Locale.ROOT, " %s %.1f,", stage.getKey(), stage.getValue().getMeanMillis()));
+            }
+            line.setLength(line.length() - 1);
+            System.out.println(line);
+        }
+    }
+
+    private static String label(Measurement m) {
+        String duration = m.seconds % 3600 == 0 ? m.seconds / 3600 + " h"
+                : m.seconds % 60 == 0 ? m.seconds / 60 + " min" : m.seconds + " s";
+        return duration + ", " + m.channels + " ch";
+    }
+
+    private static String latencies(double[] millis, boolean withMax) {
+        double[] sorted = millis.clone();
+        Arrays.sort(sorted);
+        String text = String.format(Locale.ROOT, "%.1f/%.1f", percentile(sorted, 50), percentile(sorted, 90));
+        return withMax ? text + String.format(Locale.ROOT, "/%.1f", sorted[sorted.length - 1]) : text;
+    }
+
+    // Nearest rank, exact for the handful of runs a benchmark makes
+    private static double percentile(double[] sorted, double percentile) {
+        int rank = (int) Math.ceil(sorted.length * percentile / 100.0);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
@@ -0,0 +1,91 @@
+package com.spectrumanalyzer;
+
+import com.spectrumanalyzer.panels.StatisticPanel;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Everything opening an audio file does before the dashboard draws it: decoding, and looking up the
+// statistics and spectra cached for its samples. SpectrumAnalyzer.loadAudioFile and the latency
+// benchmark both go through here.
+public final class OpenedFile {
+    public final AnalysisState state;
+    public final Fingerprint fingerprint; // Null when caching is off or the file can't be fingerprinted
+    private final AnalysisPipeline.Result cachedOriginal; // Null unless usable statistics and spectra were cached
+
+    // The loaded file's identity in the result cache, tied to the original signal decoded from it
+    public static final class Fingerprint {
+        final long originalVersion;
+        final long value;
+        final AtomicBoolean cached; // Original results are in the result cache
+
+        Fingerprint(long originalVersion, long value, boolean cached) {
+            this.originalVersion = originalVersion;
+            this.value = value;
+            this.cached = new AtomicBoolean(cached);
+        }
+
+        // Cache key for a pipeline run on the file, null once the original signal is no longer the
+        // decoded one, as after a resample
+        public ResultCache.Key key(AnalysisState state, AnalysisPipeline pipeline) {
+            if (originalVersion != state.originalVersion) return null;
+            return new ResultCache.Key(value, pipeline.describe());
+        }
+
+        // Called once the dashboard has computed the original statistics and spectra; stores them the
+        // first time for each loaded file
+        public void cacheOriginalResults(AnalysisState state, ResultCache resultCache, DerivedDataCache originalCache) {
+            if (originalVersion != state.originalVersion || cached.get()) return;
+
+            long version = state.originalVersion;
+            StatisticPanel.StatisticsResult statistics = originalCache.get(version, "statistics");
+            SpectrumCalculator.Spectrum[] spectra = new SpectrumCalculator.Spectrum[state.channels];
+            for (int ch = 0; ch < spectra.length; ch++) spectra[ch] = originalCache.get(version, "spectrum" + ch);
+            if (statistics == null || Arrays.asList(spectra).contains(null)) return;
+            if (!cached.compareAndSet(false, true)) return;
+
+            ResultCache.Key key = new ResultCache.Key(value, AnalysisPipeline.NONE.describe());
+            resultCache.putInBackground(key, () -> AnalysisPipeline.Result.unprocessed(state.originalSignal, state.sampleRate,
+                    state.audioProperties, statistics.original, statistics.topFrequencies, spectra), false);
+        }
+    }
+
+    private OpenedFile(AnalysisState state, Fingerprint fingerprint, AnalysisPipeline.Result cachedOriginal) {
+        this.state = state;
+        this.fingerprint = fingerprint;
+        this.cachedOriginal = cachedOriginal;
+    }
+
+    // The file is decoded even when its results are cached; the plots need the samples
+    public static OpenedFile open(Path path, ResultCache resultCache, PerformanceMonitor monitor) throws Exception {
+        AnalysisState state;
+        try (PerformanceMonitor.Timer timer = monitor.time("Decode")) {
+            AudioFile audioFile = AudioFile.read(path.toString(), monitor);
+            state = AnalysisState.loaded(audioFile.samples, audioFile.sampleRate, audioFile.properties);
+        }
+
+        ResultCache.Key key;
+        try (PerformanceMonitor.Timer timer = monitor.time("Fingerprint")) {
+            key = resultCache.key(path, AnalysisPipeline.NONE.describe());
+        }
+        if (key == null) return new OpenedFile(state, null, null);
+
+        AnalysisPipeline.Result cached;
+        try (PerformanceMonitor.Timer timer = monitor.time("Cache read")) {
+            cached = resultCache.get(key, false);
+        }
+        boolean usable = cached != null && cached.hasStatistics() && cached.spectra.length == state.channels;
+        return new OpenedFile(state, new Fingerprint(state.originalVersion, key.fingerprint, usable), usable ? cached : null);
+    }
+
+    // Seeds the cached statistics and spectra, so the dashboard only has to build its traces
+    public void seed(DerivedDataCache originalCache) {
+        if (cachedOriginal == null) return;
+        originalCache.put(state.originalVersion, "statistics", new StatisticPanel.StatisticsResult(
+                cachedOriginal.original, cachedOriginal.original, cachedOriginal.topFrequencies));
+        for (int ch = 0; ch < state.channels; ch++) {
+            originalCache.put(state.originalVersion, "spectrum" + ch, cachedOriginal.spectra[ch]);
+        }
+    }
+}
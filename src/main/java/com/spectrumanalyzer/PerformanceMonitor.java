@@ -0,0 +1,140 @@
+package com.spectrumanalyzer;
+
+import javafx.scene.Scene;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class PerformanceMonitor implements PerformanceMonitorMXBean {
+    public static final String OBJECT_NAME = "com.spectrumanalyzer:type=PerformanceMonitor";
+
+    private final Map<String, LatencyHistogram> stages = new ConcurrentHashMap<>();
+    private final LatencyHistogram pulseIntervals = new LatencyHistogram();
+    private final LatencyHistogram layoutPasses = new LatencyHistogram();
+
+    private final com.sun.management.ThreadMXBean threadBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private long lastAllocatedBytes = -1;
+    private long lastAllocationSampleNanos;
+    private double allocationRate;
+
+    private long lastPulseNanos;
+    private long layoutStartNanos;
+
+    // Closing the timer records the stage; intended for try-with-resources
+    public class Timer implements AutoCloseable {
+        private final String stage;
+        private final long startNanos = System.nanoTime();
+        private final StageEvent event = new StageEvent();
+
+        private Timer(String stage) {
+            this.stage = stage;
+            event.begin();
+        }
+
+        @Override
+        public void close() {
+            record(stage, System.nanoTime() - startNanos);
+            event.end();
+            if (event.shouldCommit()) {
+                event.stage = stage;
+                event.commit();
+            }
+        }
+    }
+
+    public Timer time(String stage) {
+        return new Timer(stage);
+    }
+
+    public void record(String stage, long nanos) {
+        stages.computeIfAbsent(stage, s -> new LatencyHistogram()).record(nanos);
+    }
+
+    public LatencyHistogram getStage(String stage) {
+        return stages.get(stage);
+    }
+
+    public Map<String, LatencyHistogram> getStages() {
+        return new TreeMap<>(stages);
+    }
+
+    // Listens to the scene's layout pulses without requesting extra ones
+    public void attachToScene(Scene scene) {
+        scene.addPreLayoutPulseListener(() -> {
+            long now = System.nanoTime();
+            if (lastPulseNanos != 0) {
+                pulseIntervals.record(now - lastPulseNanos);
+            }
+            lastPulseNanos = now;
+            layoutStartNanos = now;
+        });
+        scene.addPostLayoutPulseListener(() -> layoutPasses.record(System.nanoTime() - layoutStartNanos));
+    }
+
+    public LatencyHistogram getPulseIntervals() {
+        return pulseIntervals;
+    }
+
+    public LatencyHistogram getLayoutPasses() {
+        return layoutPasses;
+    }
+
+    public void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (Exception e) {
+            System.err.println("Could not register performance MBean: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public Map<String, double[]> getStageTimings() {
+        Map<String, double[]> timings = new TreeMap<>();
+        stages.forEach((stage, histogram) -> timings.put(stage, new double[]{
+                histogram.getCount(),
+                histogram.getLastMillis(),
+                histogram.getMeanMillis(),
+                histogram.getPercentileMillis(50),
+                histogram.getPercentileMillis(99),
+                histogram.getMaxMillis()
+        }));
+        return timings;
+    }
+
+    // Rate since the previous call, so callers should poll at a steady interval
+    @Override
+    public synchronized double getAllocationRateMBPerSecond() {
+        long now = System.nanoTime();
+        long allocated = threadBean.getTotalThreadAllocatedBytes();
+        if (allocated < 0) return 0;
+
+        if (lastAllocatedBytes >= 0 && now > lastAllocationSampleNanos) {
+            double seconds = (now - lastAllocationSampleNanos) / 1e9;
+            allocationRate = (allocated - lastAllocatedBytes) / (1024.0 * 1024.0) / seconds;
+        }
+        lastAllocatedBytes = allocated;
+        lastAllocationSampleNanos = now;
+        return allocationRate;
+    }
+
+    @Override
+    public double getMeanPulseIntervalMillis() {
+        return pulseIntervals.getMeanMillis();
+    }
+
+    @Override
+    public double getMeanLayoutMillis() {
+        return layoutPasses.getMeanMillis();
+    }
+
+    @Override
+    public void reset() {
+        stages.values().forEach(LatencyHistogram::reset);
+        pulseIntervals.reset();
+        layoutPasses.reset();
+    }
+}
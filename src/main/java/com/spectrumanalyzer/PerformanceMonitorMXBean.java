@@ -0,0 +1,16 @@
+package com.spectrumanalyzer;
+
+import java.util.Map;
+
+public interface PerformanceMonitorMXBean {
+    // Stage name -> {count, lastMs, meanMs, p50Ms, p99Ms, maxMs}
+    Map<String, double[]> getStageTimings();
+
+    double getAllocationRateMBPerSecond();
+
+    double getMeanPulseIntervalMillis();
+
+    double getMeanLayoutMillis();
+
+    void reset();
+}
@@ -0,0 +1,152 @@
+package com.spectrumanalyzer;
+
+import org.apache.commons.math3.transform.DftNormalization;
+import org.apache.commons.math3.transform.FastFourierTransformer;
+import org.apache.commons.math3.transform.TransformType;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+// Persistence display: how often each (frequency, level) cell was hit over all FFT frames, with older
+// frames fading out. Intermittent signals that a single or averaged spectrum hides show up as faint traces.
+public class PersistenceHistogram {
+    public static final int DEFAULT_FFT_SIZE = 1024;
+    public static final int DEFAULT_LEVEL_ROWS = 256;
+    private static final int FRAMES_PER_CHUNK = 256; // Decay is applied per chunk, not per frame
+    private static final double NEGLIGIBLE_WEIGHT = 1e-6;
+
+    public final int columns; // One per FFT bin up to Nyquist
+    public final int rows;
+    public final double maxFrequency;
+    public final double minLevelDb;
+    public final double maxLevelDb;
+
+    private final int fftSize;
+    private final int hop;
+    private final double retention; // Weight a frame keeps per newer frame, 1 keeps everything
+    private final double[] window;
+    private final float[] density; // rows * columns, row 0 is the lowest level
+    private long frames;
+
+    public PersistenceHistogram(int fftSize, int rows, double sampleRate, double minLevelDb, double maxLevelDb, double retention) {
+        if (Integer.bitCount(fftSize) != 1) throw new IllegalArgumentException("FFT size must be a power of two");
+        if (maxLevelDb <= minLevelDb) throw new IllegalArgumentException("Empty level range");
+        this.fftSize = fftSize;
+        this.hop = fftSize / 2;
+        this.columns = fftSize / 2;
+        this.rows = rows;
+        this.maxFrequency = sampleRate / 2;
+        this.minLevelDb = minLevelDb;
+        this.maxLevelDb = maxLevelDb;
+        this.retention = Math.max(0, Math.min(1, retention));
+        this.window = new double[fftSize];
+        Arrays.fill(window, 1.0);
+        SpectrumCalculator.applyHanningWindow(window);
+        this.density = new float[rows * columns];
+    }
+
+    public long getFrameCount() {
+        return frames;
+    }
+
+    // Adds the frames of signal[start, end) after everything accumulated so far
+    public void accumulate(double[] signal, int start, int end) {
+        int newFrames = end - start < fftSize ? 0 : (end - start - fftSize) / hop + 1;
+        if (newFrames == 0) return;
+
+        // Each worker takes a contiguous run of frames with its own buffers. A chunk's weight only
+        // depends on how many frames follow it, so the per-worker sums can be added in any order.
+        int workers = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(),
+                (newFrames + FRAMES_PER_CHUNK - 1) / FRAMES_PER_CHUNK));
+        float[][] partials = new float[workers][];
+        IntStream.range(0, workers).parallel().forEach(w -> {
+            int first = (int) ((long) newFrames * w / workers);
+            int last = (int) ((long) newFrames * (w + 1) / workers);
+            partials[w] = accumulateFrames(signal, start, first, last, newFrames);
+        });
+
+        double decay = Math.pow(retention, newFrames);
+        for (int i = 0; i < density.length; i++) {
+            float sum = (float) (density[i] * decay);
+            for (float[] partial : partials) {
+                sum += partial[i];
+            }
+            density[i] = sum;
+        }
+        frames += newFrames;
+    }
+
+    private float[] accumulateFrames(double[] signal, int start, int firstFrame, int lastFrame, int totalFrames) {
+        float[] weighted = new float[density.length];
+        int[] counts = new int[density.length];
+        double[][] buffer = new double[2][fftSize];
+        double levelScale = rows / (maxLevelDb - minLevelDb);
+        double powerToDbOffset = 20 * Math.log10(4.0 / fftSize); // Same normalization as SpectrumCalculator
+
+        for (int chunkStart = firstFrame; chunkStart < lastFrame; chunkStart += FRAMES_PER_CHUNK) {
+            int chunkEnd = Math.min(lastFrame, chunkStart + FRAMES_PER_CHUNK);
+            double weight = Math.pow(retention, totalFrames - chunkEnd);
+            if (weight < NEGLIGIBLE_WEIGHT) continue; // Would fade out before it could be seen
+
+            Arrays.fill(counts, 0);
+            for (int frame = chunkStart; frame < chunkEnd; frame++) {
+                double[] re = buffer[0];
+                double[] im = buffer[1];
+                int offset = start + frame * hop;
+                for (int i = 0; i < fftSize; i++) {
+                    re[i] = signal[offset + i] * window[i];
+                }
+                Arrays.fill(im, 0);
+                FastFourierTransformer.transformInPlace(buffer, DftNormalization.STANDARD, TransformType.FORWARD);
+
+                for (int bin = 0; bin < columns; bin++) {
+                    double power = re[bin] * re[bin] + im[bin] * im[bin];
+                    double levelDb = 10 * Math.log10(power) + powerToDbOffset;
+                    int row = (int) ((levelDb - minLevelDb) * levelScale);
+                    if (row < 0) continue; // Below the display floor, also catches log10(0)
+                    counts[Math.min(rows - 1, row) * columns + bin]++;
+                }
+            }
+
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0) weighted[i] += (float) (counts[i] * weight);
+            }
+        }
+        return weighted;
+    }
+
+    // ARGB heat map, lowest level at the bottom; brightness follows the log of the hit density
+    public void render(int[] argb) {
+        float max = 0;
+        for (float value : density) {
+            max = Math.max(max, value);
+        }
+        double scale = max > 0 ? 255 / Math.log1p(max) : 0;
+
+        for (int row = 0; row < rows; row++) {
+            int line = (rows - 1 - row) * columns;
+            for (int column = 0; column < columns; column++) {
+                float value = density[row * columns + column];
+                argb[line + column] = value > 0 ? PALETTE[(int) (Math.log1p(value) * scale)] : 0xFF000000;
+            }
+        }
+    }
+
+    // Black through blue, red and yellow to white
+    private static final int[] PALETTE = new int[256];
+
+    static {
+        double[][] stops = {{0, 0, 0}, {0, 0, 1}, {1, 0, 0}, {1, 1, 0}, {1, 1, 1}};
+        for (int i = 0; i < PALETTE.length; i++) {
+            double position = i / 255.0 * (stops.length - 1);
+            int stop = Math.min(stops.length - 2, (int) position);
+            double fraction = position - stop;
+            int argb = 0xFF000000;
+            for (int c = 0; c < 3; c++) {
+                double value = stops[stop][c] + (stops[stop + 1][c] - stops[stop][c]) * fraction;
+                argb |= (int) Math.round(value * 255) << (16 - 8 * c);
+            }
+            PALETTE[i] = argb;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.spectrumanalyzer;
+
+import java.util.stream.IntStream;
+
+// Index that answers mean, RMS, min and max of any sample range without scanning it. Sums come from
+// prefix sums of x and x^2; min and max from a sparse table over fixed blocks plus a scan of the two
+// partial end blocks, which keeps the table at n / BLOCK * log(n) entries instead of n * log(n).
+public class RangeStatistics {
+    private static final int BLOCK = 64;
+
+    public final int channels;
+    public final int length;
+
+    private final double[][] signal; // Only read for the partial blocks at the ends of a range
+    private final double[][] prefixSum; // [channel][length + 1]
+    private final double[][] prefixSquares;
+    private final double[][][] maxTable; // [channel][level][block], level k covers 2^k blocks
+    private final double[][][] minTable;
+
+    public static class Range {
+        public final int samples;
+        public final double mean;
+        public final double rms;
+        public final double min;
+        public final double max;
+
+        public Range(int samples, double mean, double rms, double min, double max) {
+            this.samples = samples;
+            this.mean = mean;
+            this.rms = rms;
+            this.min = min;
+            this.max = max;
+        }
+
+        public double peak() {
+            return Math.max(Math.abs(min), Math.abs(max));
+        }
+    }
+
+    private RangeStatistics(double[][] signal) {
+        this.signal = signal;
+        this.channels = signal.length;
+        this.length = signal[0].length;
+        this.prefixSum = new double[channels][];
+        this.prefixSquares = new double[channels][];
+        this.maxTable = new double[channels][][];
+        this.minTable = new double[channels][][];
+    }
+
+    // Channels are indexed in parallel; the signal arrays must not change afterwards
+    public static RangeStatistics build(double[][] signal) {
+        RangeStatistics index = new RangeStatistics(signal);
+        IntStream.range(0, index.channels).parallel().forEach(index::buildChannel);
+        return index;
+    }
+
+    private void buildChannel(int channel) {
+        double[] samples = signal[channel];
+        prefixSum[channel] = compensatedPrefix(samples, false);
+        prefixSquares[channel] = compensatedPrefix(samples, true);
+
+        int blocks = (length + BLOCK - 1) / BLOCK;
+        int levels = blocks > 0 ? 32 - Integer.numberOfLeadingZeros(blocks) : 0;
+        double[][] max = new double[levels][];
+        double[][] min = new double[levels][];
+        if (levels > 0) {
+            max[0] = new double[blocks];
+            min[0] = new double[blocks];
+            for (int block = 0; block < blocks; block++) {
+                int start = block * BLOCK;
+                int end = Math.min(length, start + BLOCK);
+                double high = Double.NEGATIVE_INFINITY;
+                double low = Double.POSITIVE_INFINITY;
+                for (int i = start; i < end; i++) {
+                    high = Math.max(high, samples[i]);
+                    low = Math.min(low, samples[i]);
+                }
+                max[0][block] = high;
+                min[0][block] = low;
+            }
+        }
+        for (int level = 1; level < levels; level++) {
+            int span = 1 << (level - 1);
+            int count = blocks - (1 << level) + 1;
+            max[level] = new double[count];
+            min[level] = new double[count];
+            for (int block = 0; block < count; block++) {
+                max[level][block] = Math.max(max[level - 1][block], max[level - 1][block + span]);
+                min[level][block] = Math.min(min[level - 1][block], min[level - 1][block + span]);
+            }
+        }
+        maxTable[channel] = max;
+        minTable[channel] = min;
+    }
+
+    // Neumaier summation, so each stored prefix is the rounded exact sum and long files do not drift
+    private static double[] compensatedPrefix(double[] samples, boolean squared) {
+        double[] prefix = new double[samples.length + 1];
+        double sum = 0;
+        double compensation = 0;
+        for (int i = 0; i < samples.length; i++) {
+            double value = squared ? samples[i] * samples[i] : samples[i];
+            double total = sum + value;
+            if (Math.abs(sum) >= Math.abs(value)) {
+                compensation += (sum - total) + value;
+            } else {
+                compensation += (value - total) + sum;
+            }
+            sum = total;
+            prefix[i + 1] = sum + compensation;
+        }
+        return prefix;
+    }
+
+    // Statistics of samples [start, end) of one channel, clamped to the signal
+    public Range query(int channel, int start, int end) {
+        start = Math.max(0, start);
+        end = Math.min(length, end);
+        if (end <= start) return new Range(0, 0, 0, 0, 0);
+
+        int samples = end - start;
+        double mean = (prefixSum[channel][end] - prefixSum[channel][start]) / samples;
+        double meanSquare = (prefixSquares[channel][end] - prefixSquares[channel][start]) / samples;
+        double rms = Math.sqrt(Math.max(0, meanSquare));
+
+        double high = Double.NEGATIVE_INFINITY;
+        double low = Double.POSITIVE_INFINITY;
+        int firstBlock = (start + BLOCK - 1) / BLOCK;
+        int lastBlock = end / BLOCK; // Exclusive
+        double[] data = signal[channel];
+        if (firstBlock < lastBlock) {
+            int level = 31 - Integer.numberOfLeadingZeros(lastBlock - firstBlock);
+            int second = lastBlock - (1 << level);
+            high = Math.max(maxTable[channel][level][firstBlock], maxTable[channel][level][second]);
+            low = Math.min(minTable[channel][level][firstBlock], minTable[channel][level][second]);
+            for (int i = start; i < firstBlock * BLOCK; i++) {
+                high = Math.max(high, data[i]);
+                low = Math.min(low, data[i]);
+            }
+            for (int i = lastBlock * BLOCK; i < end; i++) {
+                high = Math.max(high, data[i]);
+                low = Math.min(low, data[i]);
+            }
+        } else {
+            for (int i = start; i < end; i++) {
+                high = Math.max(high, data[i]);
+                low = Math.min(low, data[i]);
+            }
+        }
+        return new Range(samples, mean, rms, low, high);
+    }
+}
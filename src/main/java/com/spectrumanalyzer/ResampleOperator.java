@@ -0,0 +1,33 @@
+package com.spectrumanalyzer;
+
+public class ResampleOperator {
+    private SpectrumAnalyzer analyzer;
+
+    public ResampleOperator(SpectrumAnalyzer analyzer) {
+        this.analyzer = analyzer;
+    }
+
+    // Converts both signals so later filtering and FFTs run on fewer samples
+    public void applyResample(int targetRate) {
+        AnalysisState state = analyzer.getState();
+        if (!state.hasSignal()) return;
+        if (targetRate == state.sampleRate) return;
+
+        try (PerformanceMonitor.Timer timer = analyzer.performanceMonitor.time("Resample")) {
+            double[][] resampledOriginal = Resampler.resample(state.originalSignal, state.sampleRate, targetRate);
+            double[][] resampledProcessed = new double[state.processedSignal.length][];
+            for (int ch = 0; ch < resampledProcessed.length; ch++) {
+                // Unfiltered channels are shared with the original, keep them shared
+                resampledProcessed[ch] = ch < state.originalSignal.length && state.processedSignal[ch] == state.originalSignal[ch]
+                        ? resampledOriginal[ch]
+                        : Resampler.resample(state.processedSignal[ch], state.sampleRate, targetRate);
+            }
+
+            // Earlier states are at the old rate and can't be mixed with the new one
+            analyzer.signalHistory.clear();
+            analyzer.publishState(state.withSignals(resampledOriginal, resampledProcessed, targetRate));
+        } catch (Exception e) {
+            analyzer.showAlert("Resampling failed: " + e.getMessage());
+        }
+    }
+}
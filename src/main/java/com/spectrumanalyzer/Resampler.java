@@ -0,0 +1,148 @@
+package com.spectrumanalyzer;
+
+import com.github.psambit9791.jdsp.windows.Kaiser;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+public final class Resampler {
+    private static final int TAPS_PER_ZERO_CROSSING = 32; // Filter length in units of the output sample period
+    private static final double KAISER_BETA = 8.0;
+    private static final double ROLLOFF = 0.9; // Passband edge as a fraction of the new Nyquist
+
+    // Filter banks only depend on the reduced ratio, so they are shared between instances
+    private static final Map<Long, double[][]> FILTER_BANK_CACHE = new ConcurrentHashMap<>();
+
+    private final int up;
+    private final int down;
+    private final int tapsPerPhase;
+    private final int delay; // In output samples
+    private final double[][] bank; // [phase][tap], gain already scaled by the up factor
+
+    // Streaming state
+    private double[] history;
+    private long inputCount;
+    private long outputCount;
+
+    public Resampler(int fromRate, int toRate) {
+        if (fromRate <= 0 || toRate <= 0) {
+            throw new IllegalArgumentException("Sample rates must be positive");
+        }
+
+        int gcd = gcd(fromRate, toRate);
+        this.up = toRate / gcd;
+        this.down = fromRate / gcd;
+        // Decimation widens the filter in input samples, so the phases get proportionally longer
+        this.tapsPerPhase = TAPS_PER_ZERO_CROSSING * (int) Math.max(1, ceilDiv(down, up));
+        this.delay = ((tapsPerPhase * up - 1) / 2) / down;
+        this.bank = FILTER_BANK_CACHE.computeIfAbsent(((long) up << 32) | down,
+                key -> designFilterBank(up, down, tapsPerPhase, delay * down));
+        reset();
+    }
+
+    public void reset() {
+        history = new double[tapsPerPhase - 1];
+        inputCount = 0;
+        outputCount = 0;
+    }
+
+    // Streaming entry point; state is carried across calls
+    public double[] process(double[] block) {
+        int historyLength = history.length;
+        double[] buffer = new double[historyLength + block.length];
+        System.arraycopy(history, 0, buffer, 0, historyLength);
+        System.arraycopy(block, 0, buffer, historyLength, block.length);
+
+        long bufferStart = inputCount - historyLength; // Absolute input index of buffer[0]
+        long inputEnd = inputCount + block.length;
+
+        long firstOutput = outputCount;
+        long lastOutput = ceilDiv(inputEnd * up, down); // Exclusive, first output whose base index is not available yet
+        double[] output = new double[(int) Math.max(0, lastOutput - firstOutput)];
+
+        for (int n = 0; n < output.length; n++) {
+            long t = (firstOutput + n) * down;
+            int base = (int) (t / up - bufferStart);
+            double[] coefficients = bank[(int) (t % up)];
+
+            double sum = 0;
+            for (int k = 0; k < coefficients.length; k++) {
+                sum += coefficients[k] * buffer[base - k];
+            }
+            output[n] = sum;
+        }
+
+        System.arraycopy(buffer, buffer.length - historyLength, history, 0, historyLength);
+        inputCount = inputEnd;
+        outputCount = firstOutput + output.length;
+        return output;
+    }
+
+    // Group delay of the anti-aliasing filter, a whole number of output samples
+    public int getDelay() {
+        return delay;
+    }
+
+    public int getUpFactor() {
+        return up;
+    }
+
+    public int getDownFactor() {
+        return down;
+    }
+
+    public static double[] resample(double[] signal, int fromRate, int toRate) {
+        if (fromRate == toRate) return signal.clone();
+
+        Resampler resampler = new Resampler(fromRate, toRate);
+        int outputLength = (int) ceilDiv((long) signal.length * resampler.up, resampler.down);
+        int delay = resampler.delay;
+
+        // Zero padding at the end pushes the filter tail out so the output is delay compensated
+        int padding = (int) ceilDiv((long) (delay + 1) * resampler.down, resampler.up) + resampler.tapsPerPhase;
+        double[] head = resampler.process(signal);
+        double[] tail = resampler.process(new double[padding]);
+
+        double[] output = new double[outputLength];
+        for (int i = 0; i < outputLength; i++) {
+            int source = i + delay;
+            output[i] = source < head.length ? head[source] : tail[source - head.length];
+        }
+        return output;
+    }
+
+    public static double[][] resample(double[][] signal, int fromRate, int toRate) {
+        double[][] output = new double[signal.length][];
+        IntStream.range(0, signal.length).parallel()
+                .forEach(ch -> output[ch] = resample(signal[ch], fromRate, toRate));
+        return output;
+    }
+
+    // The prototype is centred on a multiple of the down factor so the delay is a whole output sample
+    private static double[][] designFilterBank(int up, int down, int tapsPerPhase, int center) {
+        double cutoff = ROLLOFF * 0.5 / Math.max(up, down); // Cycles per sample at the upsampled rate
+        double[] window = new Kaiser(2 * center + 1, KAISER_BETA).getWindow();
+
+        double[][] bank = new double[up][tapsPerPhase];
+        for (int i = 0; i <= 2 * center; i++) {
+            double x = 2 * cutoff * (i - center);
+            double sinc = x == 0 ? 1.0 : Math.sin(Math.PI * x) / (Math.PI * x);
+            bank[i % up][i / up] = 2 * cutoff * sinc * window[i] * up;
+        }
+        return bank;
+    }
+
+    private static long ceilDiv(long a, long b) {
+        return (a + b - 1) / b;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
@@ -0,0 +1,415 @@
+package com.spectrumanalyzer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Pipeline results on disk, keyed by the fingerprint of the input's samples and the pipeline's canonical
+// description, so a file seen before under any name skips the analysis. An entry holds the statistics and
+// spectra, the processed audio, or both. Entries are evicted least recently used once the directory passes
+// its size bound. Processes sharing a directory each keep their own index; a vanished entry is a miss.
+//
+// -Dspectrumanalyzer.cache.dir (default ~/.spectrumanalyzer/cache) and -Dspectrumanalyzer.cache.maxMb
+// (default 2048, 0 turns caching off) pick the store.
+public class ResultCache {
+    private static final int MAGIC = 0x53415243; // "SARC"
+    private static final int FORMAT_VERSION = 1; // Bump when the layout or the analysis behind it changes
+    private static final String SUFFIX = ".bin";
+    private static final int AUDIO_BUFFER_BYTES = 1 << 23;
+
+    // Writes requested from the FX thread; one at a time so large entries don't compete for the disk
+    private static final ExecutorService BACKGROUND_WRITER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ResultCache-Writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Path directory;
+    private final long maxBytes;
+    // Entry file name to size, least recently used first
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public static class Key {
+        public final long fingerprint;
+        public final String pipeline;
+
+        public Key(long fingerprint, String pipeline) {
+            this.fingerprint = fingerprint;
+            this.pipeline = pipeline;
+        }
+
+        String fileName() {
+            return String.format("%016x-%016x%s", fingerprint,
+                    ContentHash.xxHash64(pipeline + "#" + FORMAT_VERSION), SUFFIX);
+        }
+    }
+
+    public ResultCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        long bound = maxBytes;
+        if (bound > 0) {
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException e) {
+                System.err.println("Result cache disabled, " + directory + " is unusable: " + e.getMessage());
+                bound = 0;
+            }
+        }
+        this.maxBytes = bound;
+        if (bound > 0) {
+            try {
+                loadIndex();
+            } catch (IOException e) {
+                System.err.println("Could not index " + directory + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public static ResultCache openDefault() {
+        String location = System.getProperty("spectrumanalyzer.cache.dir");
+        Path directory = location != null ? Path.of(location)
+                : Path.of(System.getProperty("user.home"), ".spectrumanalyzer", "cache");
+        return new ResultCache(directory, Long.getLong("spectrumanalyzer.cache.maxMb", 2048) << 20);
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    // Null when caching is off or the file isn't one WavDecoder reads
+    public Key key(Path input, String pipeline) {
+        if (!isEnabled()) return null;
+        try {
+            return new Key(WavDecoder.fingerprint(input), pipeline);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // The stored entry, with the processed audio only if asked for and stored. Statistics fields are
+    // null for entries holding audio alone, see Result.hasStatistics.
+    public AnalysisPipeline.Result get(Key key, boolean withAudio) {
+        if (key == null) return null;
+        String name = key.fileName();
+        Path file = directory.resolve(name);
+        boolean indexed;
+        synchronized (this) {
+            indexed = entries.get(name) != null; // Also marks it as the most recently used
+        }
+        // Possibly written by another process sharing the directory
+        if (!indexed && !Files.exists(file)) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            AnalysisPipeline.Result result = read(channel, key, withAudio);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            if (!indexed) {
+                synchronized (this) {
+                    Long previous = entries.put(name, channel.size());
+                    totalBytes += channel.size() - (previous != null ? previous : 0);
+                    evict(name);
+                }
+            }
+            hits.incrementAndGet();
+            return result;
+        } catch (IOException e) {
+            // Evicted by another process, cut short or from another version
+            forget(name);
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    // Stores the result's statistics, if it has them, and its processed audio if withAudio. Entries
+    // larger than the whole store are skipped.
+    public void put(Key key, AnalysisPipeline.Result result, boolean withAudio) {
+        if (key == null || !isEnabled()) return;
+        boolean audio = withAudio && result.processed != null;
+        String name = key.fileName();
+        Path file = directory.resolve(name);
+        Path temporary = directory.resolve(name + "." + Thread.currentThread().threadId() + ".tmp");
+        try {
+            byte[] header = header(key, result, audio);
+            long size = 4L + header.length + (audio ? (long) result.processed.length * result.processed[0].length * 8 : 0);
+            if (size > maxBytes) return;
+
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer prefix = ByteBuffer.allocate(4 + header.length);
+                prefix.putInt(header.length).put(header).flip();
+                writeFully(channel, prefix);
+                if (audio) writeAudio(channel, result.processed);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            synchronized (this) {
+                Long previous = entries.put(name, size);
+                totalBytes += size - (previous != null ? previous : 0);
+                evict(name);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not cache " + name + ": " + e.getMessage());
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    // For callers on the FX thread; the result is built on the writer thread too
+    public void putInBackground(Key key, Supplier<AnalysisPipeline.Result> result, boolean withAudio) {
+        if (key == null || !isEnabled()) return;
+        BACKGROUND_WRITER.execute(() -> put(key, result.get(), withAudio));
+    }
+
+    // Waits for the background writes requested so far
+    public void awaitBackgroundWrites() throws InterruptedException {
+        try {
+            BACKGROUND_WRITER.submit(() -> { }).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public synchronized long getSizeBytes() {
+        return totalBytes;
+    }
+
+    // Oldest first, by the modification time get() refreshes
+    private void loadIndex() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        Map<Path, Long> modified = new LinkedHashMap<>();
+        for (Path file : files) {
+            try {
+                modified.put(file, Files.getLastModifiedTime(file).toMillis());
+            } catch (IOException ignored) {
+                // Removed meanwhile
+            }
+        }
+        modified.entrySet().stream().sorted(Map.Entry.comparingByValue(Comparator.naturalOrder())).forEach(entry -> {
+            try {
+                long size = Files.size(entry.getKey());
+                entries.put(entry.getKey().getFileName().toString(), size);
+                totalBytes += size;
+            } catch (IOException ignored) {
+            }
+        });
+        evict(null);
+    }
+
+    // Caller holds the lock. Keeps the entry just written even if it alone fills the store.
+    private void evict(String keep) {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            if (eldest.getKey().equals(keep)) continue;
+            iterator.remove();
+            totalBytes -= eldest.getValue();
+            try {
+                Files.deleteIfExists(directory.resolve(eldest.getKey()));
+            } catch (IOException e) {
+                System.err.println("Could not evict " + eldest.getKey() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private synchronized void forget(String name) {
+        Long size = entries.remove(name);
+        if (size != null) totalBytes -= size;
+    }
+
+    // Everything but the audio, which follows as raw little endian doubles channel by channel
+    private static byte[] header(Key key, AnalysisPipeline.Result result, boolean audio) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(key.fingerprint);
+        out.writeUTF(key.pipeline);
+        out.writeInt(result.sampleRate);
+
+        Map<String, Long> properties = result.properties != null ? result.properties : Map.of();
+        out.writeInt(properties.size());
+        for (Map.Entry<String, Long> property : properties.entrySet()) {
+            out.writeUTF(property.getKey());
+            out.writeLong(property.getValue());
+        }
+
+        out.writeBoolean(result.hasStatistics());
+        if (result.hasStatistics()) {
+            writeSummary(out, result.original);
+            writeSummary(out, result.filtered);
+            writeArray(out, result.channelRmsDb);
+            writeArray(out, result.channelPeakDb);
+            out.writeInt(result.topFrequencies.size());
+            for (SpectrumCalculator.FrequencyPeak peak : result.topFrequencies) {
+                out.writeDouble(peak.frequency);
+                out.writeDouble(peak.magnitude);
+            }
+            out.writeInt(result.spectra.length);
+            for (SpectrumCalculator.Spectrum spectrum : result.spectra) {
+                writeArray(out, spectrum.frequencies);
+                writeArray(out, spectrum.magnitudesDb);
+            }
+        }
+
+        out.writeBoolean(audio);
+        if (audio) {
+            out.writeInt(result.processed.length);
+            out.writeInt(result.processed[0].length);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static AnalysisPipeline.Result read(FileChannel channel, Key key, boolean withAudio) throws IOException {
+        ByteBuffer prefix = ByteBuffer.allocate(4);
+        readFully(channel, prefix, 0);
+        int headerLength = prefix.getInt(0);
+        if (headerLength <= 0 || headerLength > channel.size() - 4) throw new IOException("Corrupt entry");
+        ByteBuffer header = ByteBuffer.allocate(headerLength);
+        readFully(channel, header, 4);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(header.array()));
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) throw new IOException("Not a current entry");
+        // The file name only holds a hash of the pipeline
+        if (in.readLong() != key.fingerprint || !in.readUTF().equals(key.pipeline)) throw new IOException("Key mismatch");
+        int sampleRate = in.readInt();
+
+        Map<String, Long> properties = new Hashtable<>();
+        int propertyCount = in.readInt();
+        for (int i = 0; i < propertyCount; i++) properties.put(in.readUTF(), in.readLong());
+
+        SignalStatistics.Summary original = null;
+        SignalStatistics.Summary filtered = null;
+        double[] channelRmsDb = null;
+        double[] channelPeakDb = null;
+        List<SpectrumCalculator.FrequencyPeak> topFrequencies = null;
+        SpectrumCalculator.Spectrum[] spectra = null;
+        if (in.readBoolean()) {
+            original = readSummary(in);
+            filtered = readSummary(in);
+            channelRmsDb = readArray(in);
+            channelPeakDb = readArray(in);
+            topFrequencies = new ArrayList<>();
+            int peaks = in.readInt();
+            for (int i = 0; i < peaks; i++) topFrequencies.add(new SpectrumCalculator.FrequencyPeak(in.readDouble(), in.readDouble()));
+            spectra = new SpectrumCalculator.Spectrum[in.readInt()];
+            for (int ch = 0; ch < spectra.length; ch++) spectra[ch] = new SpectrumCalculator.Spectrum(readArray(in), readArray(in));
+        }
+
+        double[][] processed = null;
+        if (in.readBoolean() && withAudio) {
+            int channels = in.readInt();
+            int length = in.readInt();
+            if (channel.size() != 4L + headerLength + (long) channels * length * 8) throw new IOException("Truncated audio");
+            processed = readAudio(channel, 4L + headerLength, channels, length);
+        }
+        return new AnalysisPipeline.Result(sampleRate, processed, original, filtered, channelRmsDb, channelPeakDb,
+                topFrequencies, spectra, properties, true);
+    }
+
+    private static void writeAudio(FileChannel channel, double[][] signal) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(AUDIO_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        int perBuffer = AUDIO_BUFFER_BYTES / 8;
+        for (double[] samples : signal) {
+            for (int offset = 0; offset < samples.length; offset += perBuffer) {
+                int count = Math.min(perBuffer, samples.length - offset);
+                buffer.clear();
+                buffer.asDoubleBuffer().put(samples, offset, count);
+                buffer.limit(count * 8);
+                writeFully(channel, buffer);
+            }
+        }
+    }
+
+    private static double[][] readAudio(FileChannel channel, long position, int channels, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(AUDIO_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        int perBuffer = AUDIO_BUFFER_BYTES / 8;
+        double[][] signal = new double[channels][length];
+        for (double[] samples : signal) {
+            for (int offset = 0; offset < length; offset += perBuffer) {
+                int count = Math.min(perBuffer, length - offset);
+                buffer.clear().limit(count * 8);
+                readFully(channel, buffer, position);
+                buffer.flip();
+                buffer.asDoubleBuffer().get(samples, offset, count);
+                position += count * 8L;
+            }
+        }
+        return signal;
+    }
+
+    private static void writeSummary(DataOutputStream out, SignalStatistics.Summary summary) throws IOException {
+        out.writeInt(summary.channels);
+        out.writeInt(summary.sampleRate);
+        out.writeDouble(summary.duration);
+        out.writeDouble(summary.rmsDb);
+        out.writeDouble(summary.peakDb);
+    }
+
+    private static SignalStatistics.Summary readSummary(DataInputStream in) throws IOException {
+        return new SignalStatistics.Summary(in.readInt(), in.readInt(), in.readDouble(), in.readDouble(), in.readDouble());
+    }
+
+    private static void writeArray(DataOutputStream out, double[] values) throws IOException {
+        out.writeInt(values.length);
+        for (double value : values) out.writeDouble(value);
+    }
+
+    private static double[] readArray(DataInputStream in) throws IOException {
+        double[] values = new double[in.readInt()];
+        for (int i = 0; i < values.length; i++) values[i] = in.readDouble();
+        return values;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) throw new IOException("Unexpected end of entry");
+            position += read;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.spectrumanalyzer;
+
+import org.apache.commons.math3.complex.Complex;
+import org.apache.commons.math3.transform.DftNormalization;
+import org.apache.commons.math3.transform.FastFourierTransformer;
+import org.apache.commons.math3.transform.TransformType;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.IntFunction;
+
+public class SegmentSpectrumCache {
+    public static final int SEGMENT_SIZE = SpectrumCalculator.MAX_FFT_SIZE;
+    // Wide views use every n-th segment, with n a power of two so panning keeps hitting the same ones
+    private static final int MAX_SEGMENTS_PER_QUERY = 256;
+
+    // Sum of the squared window, turns |X|^2 back into mean-square power
+    private static final double WINDOW_POWER = windowPower();
+
+    private final int maxEntries;
+    private final LinkedHashMap<SegmentKey, double[]> segments;
+
+    private static class SegmentKey {
+        final long version;
+        final int channel;
+        final int segment;
+
+        SegmentKey(long version, int channel, int segment) {
+            this.version = version;
+            this.channel = channel;
+            this.segment = segment;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof SegmentKey other && other.version == version && other.channel == channel
+                    && other.segment == segment;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(version, channel, segment);
+        }
+    }
+
+    public SegmentSpectrumCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.segments = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SegmentKey, double[]> eldest) {
+                return size() > SegmentSpectrumCache.this.maxEntries;
+            }
+        };
+    }
+
+    // Averaged spectrum of the samples in [startSample, endSample), built from cached segment spectra.
+    // The version and channel identify the signal, see AnalysisState.
+    public SpectrumCalculator.Spectrum computeSpectrum(long version, int channel, double[] signal, double sampleRate,
+                                                       int startSample, int endSample) {
+        int totalSegments = Math.max(1, (signal.length + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+        double[] averagePower = averagePower(version, channel, totalSegments, startSample, endSample,
+                segment -> computeSegmentPower(signal, segment));
+
+        int halfLength = averagePower.length;
+        double freqResolution = sampleRate / SEGMENT_SIZE;
+        int step = Math.max(1, halfLength / SpectrumCalculator.MAX_FREQ_POINTS);
+        int points = (halfLength - 2) / step + 1;
+
+        double[] frequencies = new double[points];
+        double[] magnitudesDb = new double[points];
+        int p = 0;
+        for (int bin = 1; bin < halfLength; bin += step) {
+            double magnitude = Math.sqrt(averagePower[bin]);
+            double magnitudeValue = magnitude / (SEGMENT_SIZE / 2.0) / 0.5; // Normalize and correct for windowing
+
+            frequencies[p] = bin * freqResolution;
+            magnitudesDb[p] = magnitudeValue > 0 ? 20 * Math.log10(magnitudeValue) : -120;
+            p++;
+        }
+
+        return new SpectrumCalculator.Spectrum(frequencies, magnitudesDb);
+    }
+
+    // Complex input has no mirror image, so the whole -Fs/2 .. +Fs/2 span is shown around the
+    // center frequency
+    public SpectrumCalculator.Spectrum computeComplexSpectrum(IqRecording recording, long startSample, long endSample) {
+        long segmentCount = Math.max(1, (recording.getSampleCount() + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+        int totalSegments = (int) Math.min(Integer.MAX_VALUE, segmentCount);
+        double[] averagePower = averagePower(recording.version, 0, totalSegments, startSample, endSample,
+                segment -> computeComplexSegmentPower(recording, segment));
+
+        double freqResolution = recording.sampleRate / SEGMENT_SIZE;
+        int step = Math.max(1, SEGMENT_SIZE / SpectrumCalculator.MAX_FREQ_POINTS);
+        int points = (SEGMENT_SIZE + step - 1) / step;
+
+        double[] frequencies = new double[points];
+        double[] magnitudesDb = new double[points];
+        int p = 0;
+        for (int shifted = 0; shifted < SEGMENT_SIZE; shifted += step) {
+            // Bins above N/2 are the negative frequencies
+            int bin = (shifted + SEGMENT_SIZE / 2) % SEGMENT_SIZE;
+            double magnitude = Math.sqrt(averagePower[bin]);
+            double magnitudeValue = magnitude / SEGMENT_SIZE / 0.5; // Normalize and correct for windowing
+
+            frequencies[p] = recording.centerFrequency + (shifted - SEGMENT_SIZE / 2) * freqResolution;
+            magnitudesDb[p] = magnitudeValue > 0 ? 20 * Math.log10(magnitudeValue) : -120;
+            p++;
+        }
+
+        return new SpectrumCalculator.Spectrum(frequencies, magnitudesDb);
+    }
+
+    // Band power meter over the same segments as computeSpectrum, at full FFT resolution
+    public BandPowerMeter computeBandPower(long version, int channel, double[] signal, double sampleRate,
+                                           int startSample, int endSample) {
+        int totalSegments = Math.max(1, (signal.length + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+        double[] averagePower = averagePower(version, channel, totalSegments, startSample, endSample,
+                segment -> computeSegmentPower(signal, segment));
+
+        // One-sided: the mirrored negative frequencies double every bin except DC
+        double[] binPower = new double[averagePower.length];
+        for (int bin = 0; bin < binPower.length; bin++) {
+            binPower[bin] = averagePower[bin] * (bin == 0 ? 1 : 2) / (SEGMENT_SIZE * WINDOW_POWER);
+        }
+        return new BandPowerMeter(binPower, 0, sampleRate / SEGMENT_SIZE);
+    }
+
+    public BandPowerMeter computeComplexBandPower(IqRecording recording, long startSample, long endSample) {
+        long segmentCount = Math.max(1, (recording.getSampleCount() + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+        int totalSegments = (int) Math.min(Integer.MAX_VALUE, segmentCount);
+        double[] averagePower = averagePower(recording.version, 0, totalSegments, startSample, endSample,
+                segment -> computeComplexSegmentPower(recording, segment));
+
+        double[] binPower = new double[SEGMENT_SIZE];
+        for (int shifted = 0; shifted < SEGMENT_SIZE; shifted++) {
+            binPower[shifted] = averagePower[(shifted + SEGMENT_SIZE / 2) % SEGMENT_SIZE] / (SEGMENT_SIZE * WINDOW_POWER);
+        }
+        double binWidth = recording.sampleRate / SEGMENT_SIZE;
+        return new BandPowerMeter(binPower, recording.centerFrequency - SEGMENT_SIZE / 2 * binWidth, binWidth);
+    }
+
+    // Mean power per FFT bin over the segments covering [startSample, endSample)
+    private double[] averagePower(long version, int channel, int totalSegments, long startSample, long endSample,
+                                  IntFunction<double[]> segmentPower) {
+        int firstSegment = (int) clamp(startSample / SEGMENT_SIZE, 0, totalSegments - 1);
+        int lastSegment = (int) clamp((Math.max(endSample, startSample + 1) - 1) / SEGMENT_SIZE, firstSegment, totalSegments - 1);
+
+        int stride = Integer.highestOneBit(Math.max(1, (lastSegment - firstSegment) / MAX_SEGMENTS_PER_QUERY));
+        if ((lastSegment - firstSegment + 1) / stride > MAX_SEGMENTS_PER_QUERY) {
+            stride *= 2;
+        }
+
+        List<Integer> wanted = new ArrayList<>();
+        for (int segment = firstSegment; segment <= lastSegment; segment++) {
+            if (segment % stride == 0) wanted.add(segment);
+        }
+        if (wanted.isEmpty()) wanted.add(firstSegment);
+
+        double[][] powers = new double[wanted.size()][];
+        List<Integer> missing = new ArrayList<>();
+        synchronized (this) {
+            for (int i = 0; i < wanted.size(); i++) {
+                powers[i] = segments.get(new SegmentKey(version, channel, wanted.get(i)));
+                if (powers[i] == null) missing.add(i);
+            }
+        }
+
+        // Only newly exposed segments get transformed
+        missing.parallelStream().forEach(i -> powers[i] = segmentPower.apply(wanted.get(i)));
+        synchronized (this) {
+            for (int i : missing) {
+                segments.put(new SegmentKey(version, channel, wanted.get(i)), powers[i]);
+            }
+        }
+
+        double[] averagePower = new double[powers[0].length];
+        for (double[] power : powers) {
+            for (int bin = 0; bin < averagePower.length; bin++) {
+                averagePower[bin] += power[bin] / powers.length;
+            }
+        }
+        return averagePower;
+    }
+
+    public synchronized void clear() {
+        segments.clear();
+    }
+
+    public synchronized int size() {
+        return segments.size();
+    }
+
+    private double[] computeSegmentPower(double[] signal, int segment) {
+        int start = segment * SEGMENT_SIZE;
+        double[] frame = new double[SEGMENT_SIZE];
+        System.arraycopy(signal, start, frame, 0, Math.max(0, Math.min(SEGMENT_SIZE, signal.length - start)));
+        SpectrumCalculator.applyHanningWindow(frame);
+
+        Complex[] fftResult = new FastFourierTransformer(DftNormalization.STANDARD).transform(frame, TransformType.FORWARD);
+
+        double[] power = new double[SEGMENT_SIZE / 2];
+        for (int bin = 0; bin < power.length; bin++) {
+            double re = fftResult[bin].getReal();
+            double im = fftResult[bin].getImaginary();
+            power[bin] = re * re + im * im;
+        }
+        return power;
+    }
+
+    private double[] computeComplexSegmentPower(IqRecording recording, int segment) {
+        double[] re = new double[SEGMENT_SIZE];
+        double[] im = new double[SEGMENT_SIZE];
+        try {
+            recording.read((long) segment * SEGMENT_SIZE, re, im, SEGMENT_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        SpectrumCalculator.applyHanningWindow(re);
+        SpectrumCalculator.applyHanningWindow(im);
+
+        FastFourierTransformer.transformInPlace(new double[][]{re, im}, DftNormalization.STANDARD, TransformType.FORWARD);
+
+        double[] power = new double[SEGMENT_SIZE];
+        for (int bin = 0; bin < power.length; bin++) {
+            power[bin] = re[bin] * re[bin] + im[bin] * im[bin];
+        }
+        return power;
+    }
+
+    private static double windowPower() {
+        double[] window = new double[SEGMENT_SIZE];
+        Arrays.fill(window, 1.0);
+        SpectrumCalculator.applyHanningWindow(window);
+        double sum = 0;
+        for (double value : window) {
+            sum += value * value;
+        }
+        return sum;
+    }
+
+    private static long clamp(long value, long min, long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
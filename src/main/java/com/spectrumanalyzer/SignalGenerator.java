@@ -0,0 +1,88 @@
+package com.spectrumanalyzer;
+
+// Deterministic test signals: tones, linear chirps, Gaussian noise and impulse trains. Every sample
+// is a function of its index alone and StrictMath is used throughout, so a long signal generated block
+// by block equals the same signal generated whole, on any machine. The add methods mix into out,
+// whose first element is sample firstSample of the signal.
+public final class SignalGenerator {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final double UNIT = 0x1.0p-53;
+
+    private SignalGenerator() {
+    }
+
+    public static void addTone(double[] out, long firstSample, double sampleRate, double frequency, double amplitude,
+                               double phase) {
+        for (int i = 0; i < out.length; i++) {
+            // Whole cycles dropped first so the phase stays exact far into long signals
+            double cycles = frequency * ((firstSample + i) / sampleRate);
+            cycles -= StrictMath.floor(cycles);
+            out[i] += amplitude * StrictMath.sin(2 * StrictMath.PI * cycles + phase);
+        }
+    }
+
+    // Linear sweep from startFrequency to endFrequency, restarting every sweepSeconds
+    public static void addChirp(double[] out, long firstSample, double sampleRate, double startFrequency,
+                                double endFrequency, double sweepSeconds, double amplitude) {
+        long sweepSamples = Math.max(1, Math.round(sweepSeconds * sampleRate));
+        double rate = (endFrequency - startFrequency) / (sweepSamples / sampleRate);
+        for (int i = 0; i < out.length; i++) {
+            double t = Math.floorMod(firstSample + i, sweepSamples) / sampleRate;
+            double cycles = startFrequency * t + 0.5 * rate * t * t;
+            cycles -= StrictMath.floor(cycles);
+            out[i] += amplitude * StrictMath.sin(2 * StrictMath.PI * cycles);
+        }
+    }
+
+    // White Gaussian noise; the same seed gives the same sample at the same index
+    public static void addNoise(double[] out, long firstSample, double rms, long seed) {
+        for (int i = 0; i < out.length; i++) {
+            long n = firstSample + i;
+            // Box-Muller over two counter-based uniforms, u1 in (0, 1] so the log stays finite
+            double u1 = ((mix(seed + (2 * n + 1) * GOLDEN_GAMMA) >>> 11) + 1) * UNIT;
+            double u2 = (mix(seed + (2 * n + 2) * GOLDEN_GAMMA) >>> 11) * UNIT;
+            out[i] += rms * StrictMath.sqrt(-2 * StrictMath.log(u1)) * StrictMath.cos(2 * StrictMath.PI * u2);
+        }
+    }
+
+    // One sample of the given amplitude at offset, offset + period, ...
+    public static void addImpulses(double[] out, long firstSample, long period, long offset, double amplitude) {
+        long next = firstSample + Math.floorMod(offset - firstSample, period);
+        for (long n = next; n < firstSample + out.length; n += period) {
+            out[(int) (n - firstSample)] += amplitude;
+        }
+    }
+
+    public static double[] tone(int length, double sampleRate, double frequency, double amplitude) {
+        double[] signal = new double[length];
+        addTone(signal, 0, sampleRate, frequency, amplitude, 0);
+        return signal;
+    }
+
+    // One sweep over the whole length
+    public static double[] chirp(int length, double sampleRate, double startFrequency, double endFrequency,
+                                 double amplitude) {
+        double[] signal = new double[length];
+        addChirp(signal, 0, sampleRate, startFrequency, endFrequency, length / sampleRate, amplitude);
+        return signal;
+    }
+
+    public static double[] noise(int length, double rms, long seed) {
+        double[] signal = new double[length];
+        addNoise(signal, 0, rms, seed);
+        return signal;
+    }
+
+    public static double[] impulse(int length, int position, double amplitude) {
+        double[] signal = new double[length];
+        signal[position] = amplitude;
+        return signal;
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,244 @@
+package com.spectrumanalyzer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+public class SignalHistory {
+    private static final long DEFAULT_MEMORY_BUDGET = 256L * 1024 * 1024; // 256 MB
+    private static final int SPILL_BUFFER_SIZE = 1 << 16;
+
+    private final Deque<Snapshot> undoStack = new ArrayDeque<>();
+    private final Deque<Snapshot> redoStack = new ArrayDeque<>();
+    private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+
+    // Channel arrays are never modified in place by the operators, so snapshots only keep
+    // references and unchanged channels are shared between consecutive states.
+    private static class Snapshot {
+        final String label;
+        double[][] channels;
+        Path spillFile;
+
+        Snapshot(String label, double[][] channels) {
+            this.label = label;
+            this.channels = channels.clone();
+        }
+
+        boolean isSpilled() {
+            return channels == null;
+        }
+    }
+
+    public void record(double[][] state, String label) {
+        if (state == null) return;
+
+        undoStack.push(new Snapshot(label, state));
+        discardAll(redoStack);
+        enforceBudget();
+    }
+
+    public double[][] undo(double[][] current) {
+        if (undoStack.isEmpty()) return current;
+
+        Snapshot target = undoStack.pop();
+        redoStack.push(new Snapshot(target.label, current));
+        double[][] restored = restore(target);
+        enforceBudget();
+        return restored != null ? restored : current;
+    }
+
+    public double[][] redo(double[][] current) {
+        if (redoStack.isEmpty()) return current;
+
+        Snapshot target = redoStack.pop();
+        undoStack.push(new Snapshot(target.label, current));
+        double[][] restored = restore(target);
+        enforceBudget();
+        return restored != null ? restored : current;
+    }
+
+    public boolean canUndo() {
+        return !undoStack.isEmpty();
+    }
+
+    public boolean canRedo() {
+        return !redoStack.isEmpty();
+    }
+
+    public String peekUndoLabel() {
+        return undoStack.isEmpty() ? null : undoStack.peek().label;
+    }
+
+    public String peekRedoLabel() {
+        return redoStack.isEmpty() ? null : redoStack.peek().label;
+    }
+
+    public void clear() {
+        discardAll(undoStack);
+        discardAll(redoStack);
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    public void setMemoryBudget(long bytes) {
+        this.memoryBudget = Math.max(0, bytes);
+        enforceBudget();
+    }
+
+    // Bytes held by in-memory snapshots, counting every shared channel array only once
+    public long getResidentBytes() {
+        Set<double[]> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        long total = 0;
+        for (Deque<Snapshot> stack : List.of(undoStack, redoStack)) {
+            for (Snapshot snapshot : stack) {
+                if (snapshot.isSpilled()) continue;
+                for (double[] channel : snapshot.channels) {
+                    if (channel != null && seen.add(channel)) {
+                        total += (long) channel.length * Double.BYTES;
+                    }
+                }
+            }
+        }
+        return total;
+    }
+
+    private void enforceBudget() {
+        // Spill the oldest states first; recent ones stay in memory for quick stepping
+        while (getResidentBytes() > memoryBudget) {
+            Snapshot oldest = findOldestResident();
+            if (oldest == null) return;
+
+            try {
+                spill(oldest);
+            } catch (IOException e) {
+                System.err.println("History spill failed, dropping snapshot: " + e.getMessage());
+                undoStack.remove(oldest);
+                redoStack.remove(oldest);
+                oldest.channels = null;
+            }
+        }
+    }
+
+    private Snapshot findOldestResident() {
+        Iterator<Snapshot> undoIterator = undoStack.descendingIterator();
+        while (undoIterator.hasNext()) {
+            Snapshot snapshot = undoIterator.next();
+            if (!snapshot.isSpilled()) return snapshot;
+        }
+        Iterator<Snapshot> redoIterator = redoStack.descendingIterator();
+        while (redoIterator.hasNext()) {
+            Snapshot snapshot = redoIterator.next();
+            if (!snapshot.isSpilled()) return snapshot;
+        }
+        return null;
+    }
+
+    private void spill(Snapshot snapshot) throws IOException {
+        Path file = Files.createTempFile("spectrum-history-", ".bin");
+        file.toFile().deleteOnExit();
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(SPILL_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            buffer.putInt(snapshot.channels.length);
+            for (double[] data : snapshot.channels) {
+                buffer.putInt(data.length);
+            }
+            for (double[] data : snapshot.channels) {
+                int offset = 0;
+                while (offset < data.length) {
+                    if (buffer.remaining() < Double.BYTES) {
+                        drain(buffer, channel);
+                    }
+                    int count = Math.min(data.length - offset, buffer.remaining() / Double.BYTES);
+                    buffer.asDoubleBuffer().put(data, offset, count);
+                    buffer.position(buffer.position() + count * Double.BYTES);
+                    offset += count;
+                }
+            }
+            drain(buffer, channel);
+        }
+
+        snapshot.spillFile = file;
+        snapshot.channels = null;
+    }
+
+    private double[][] restore(Snapshot snapshot) {
+        if (!snapshot.isSpilled()) return snapshot.channels;
+        if (snapshot.spillFile == null) return null;
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(SPILL_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(snapshot.spillFile, StandardOpenOption.READ)) {
+            fill(buffer, channel);
+            int channelCount = buffer.getInt();
+            double[][] data = new double[channelCount][];
+            for (int ch = 0; ch < channelCount; ch++) {
+                data[ch] = new double[buffer.getInt()];
+            }
+            for (double[] samples : data) {
+                int offset = 0;
+                while (offset < samples.length) {
+                    if (buffer.remaining() < Double.BYTES) {
+                        buffer.compact();
+                        fill(buffer, channel);
+                    }
+                    int count = Math.min(samples.length - offset, buffer.remaining() / Double.BYTES);
+                    buffer.asDoubleBuffer().get(samples, offset, count);
+                    buffer.position(buffer.position() + count * Double.BYTES);
+                    offset += count;
+                }
+            }
+            return data;
+        } catch (IOException e) {
+            System.err.println("Failed to restore history snapshot: " + e.getMessage());
+            return null;
+        } finally {
+            deleteSpillFile(snapshot);
+        }
+    }
+
+    private void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // Leaves the buffer flipped for reading
+    private void fill(ByteBuffer buffer, FileChannel channel) throws IOException {
+        while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+            // keep reading until the buffer is full or the file ends
+        }
+        buffer.flip();
+    }
+
+    private void discardAll(Deque<Snapshot> stack) {
+        for (Snapshot snapshot : stack) {
+            deleteSpillFile(snapshot);
+        }
+        stack.clear();
+    }
+
+    private void deleteSpillFile(Snapshot snapshot) {
+        if (snapshot.spillFile == null) return;
+        try {
+            Files.deleteIfExists(snapshot.spillFile);
+        } catch (IOException e) {
+            System.err.println("Could not delete history file " + snapshot.spillFile + ": " + e.getMessage());
+        }
+        snapshot.spillFile = null;
+    }
+}
@@ -0,0 +1,65 @@
+package com.spectrumanalyzer;
+
+public final class SignalStatistics {
+
+    private SignalStatistics() {
+    }
+
+    public static class Summary {
+        public final int channels;
+        public final int sampleRate;
+        public final double duration;
+        public final double rmsDb;
+        public final double peakDb;
+
+        public Summary(int channels, int sampleRate, double duration, double rmsDb, double peakDb) {
+            this.channels = channels;
+            this.sampleRate = sampleRate;
+            this.duration = duration;
+            this.rmsDb = rmsDb;
+            this.peakDb = peakDb;
+        }
+    }
+
+    public static Summary summarize(double[][] signal, double[] mixedSignal, int sampleRate) {
+        double duration = (double) signal[0].length / sampleRate;
+        double rmsDb = toDb(calculateRMS(mixedSignal));
+        double peakDb = toDb(calculatePeak(mixedSignal));
+        return new Summary(signal.length, sampleRate, duration, rmsDb, peakDb);
+    }
+
+    public static double[] getMixedDownSignal(double[][] signal) {
+        int sampleCount = signal[0].length;
+        double[] monoSignal = new double[sampleCount];
+
+        for (int i = 0; i < sampleCount; i++) {
+            double sum = 0;
+            for (int ch = 0; ch < signal.length; ch++) {
+                sum += signal[ch][i];
+            }
+            monoSignal[i] = sum / signal.length;
+        }
+
+        return monoSignal;
+    }
+
+    public static double calculateRMS(double[] samples) {
+        double sum = 0;
+        for (double sample : samples) {
+            sum += sample * sample;
+        }
+        return Math.sqrt(sum / samples.length);
+    }
+
+    public static double calculatePeak(double[] samples) {
+        double peak = 0;
+        for (double sample : samples) {
+            peak = Math.max(peak, Math.abs(sample));
+        }
+        return peak;
+    }
+
+    public static double toDb(double value) {
+        return 20 * Math.log10(Math.abs(value) + 1e-10);
+    }
+}
@@ -5,18 +5,20 @@ import com.spectrumanalyzer.panels.*;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.scene.Scene;
+import javafx.scene.input.KeyCode;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.stage.Stage;
-import com.github.psambit9791.jdsp.io.WAV;
-import java.util.Hashtable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class SpectrumAnalyzer extends Application {
-    public double[][] originalSignal;
-    public double[][] processedSignal;
-    public Hashtable<String, Long> audioProperties;
-    public int sampleRate;
-    public int channels;
+    // Written on the FX thread, read from any thread without locking
+    private final AtomicReference<AnalysisState> state = new AtomicReference<>(AnalysisState.EMPTY);
+    private final AtomicLong loads = new AtomicLong(); // Numbers the file loads; only the newest is shown
 
     public HomePanel homePanel;
 
@@ -27,6 +29,16 @@ public class SpectrumAnalyzer extends Application {
 
     public FilterOperator filterOperator;
     public WindowOperator windowOperator;
+    public ResampleOperator resampleOperator;
+    public SignalHistory signalHistory;
+    public DerivedDataCache originalDataCache;
+    public ResultCache resultCache;
+    private volatile OpenedFile.Fingerprint loadedFingerprint; // Of the file behind the current original signal
+    public ComparisonLoader comparisonLoader;
+    public volatile IqRecording iqRecording; // Set while an I/Q capture is shown instead of audio
+    public volatile ToneTracker.Result toneTracks; // Last tone tracking run, null until one is made
+    public PerformanceMonitor performanceMonitor;
+    public PerformanceOverlay performanceOverlay;
 
     public BorderPane rootPane;
     public SplitPane splitPane;
@@ -38,6 +50,10 @@ public class SpectrumAnalyzer extends Application {
         Application.setUserAgentStylesheet(new CupertinoDark().getUserAgentStylesheet());
 
         Scene scene = new Scene(rootPane, 1200, 600);
+        performanceMonitor.attachToScene(scene);
+        scene.setOnKeyPressed(e -> {
+            if (e.getCode() == KeyCode.F3) performanceOverlay.toggle();
+        });
         primaryStage.setTitle("Spectrum Analyzer");
         primaryStage.setScene(scene);
         primaryStage.show();
@@ -46,8 +62,17 @@ public class SpectrumAnalyzer extends Application {
     }
 
     private void initializeComponents() {
+        performanceMonitor = new PerformanceMonitor();
+        performanceMonitor.registerMBean();
+        performanceOverlay = new PerformanceOverlay(performanceMonitor);
+
         filterOperator = new FilterOperator(this);
         windowOperator = new WindowOperator(this);
+        resampleOperator = new ResampleOperator(this);
+        signalHistory = new SignalHistory();
+        originalDataCache = new DerivedDataCache();
+        resultCache = ResultCache.openDefault();
+        comparisonLoader = new ComparisonLoader(Runtime.getRuntime().maxMemory() / 2);
 
         homePanel = new HomePanel(this);
         dashboardPanel = new DashboardPanel(this);
@@ -84,67 +109,111 @@ public class SpectrumAnalyzer extends Application {
         tabPane.setPrefWidth(300); // optional width
 
         splitPane.setDividerPosition(0, 0.15);
-        splitPane.getItems().addAll(tabPane, dashboardPanel);
+        // Overlay sits above the charts without taking part in their layout
+        StackPane dashboardStack = new StackPane(dashboardPanel, performanceOverlay);
+        splitPane.getItems().addAll(tabPane, dashboardStack);
 
         rootPane.setCenter(splitPane);
     }
 
 
+    // Decodes and looks up the file on a virtual thread, then shows it on the FX thread. Of overlapping
+    // loads only the newest is shown.
     public void loadAudioFile(String filename) {
-        try {
-            WAV objRead = new WAV();
-            objRead.readWAV(filename);
-            audioProperties = objRead.getProperties();
-            double[][] rawData = objRead.getData("int");
-
-            if (rawData == null || rawData.length == 0) {
-                throw new RuntimeException("No audio data found in file");
+        long load = loads.incrementAndGet();
+        dashboardPanel.statusLabel.setText("Loading " + Path.of(filename).getFileName() + "...");
+
+        Thread.ofVirtual().name("Load").start(() -> {
+            OpenedFile file;
+            try {
+                file = OpenedFile.open(Path.of(filename), resultCache, performanceMonitor);
+            } catch (Exception e) {
+                e.printStackTrace();
+                Platform.runLater(() -> {
+                    if (load != loads.get()) return;
+                    dashboardPanel.statusLabel.setText("Ready");
+                    showAlert("Error loading file: " + e.getMessage());
+                });
+                return;
             }
+            Platform.runLater(() -> {
+                if (load == loads.get()) showLoadedFile(file);
+            });
+        });
+    }
 
-            sampleRate = getSampleRate();
-            channels = getChannels();
-
-            // rawData is [samples][channels], transpose to [channels][samples]
-            originalSignal = new double[channels][rawData.length];
-            processedSignal = new double[channels][rawData.length];
-
-            for (int sample = 0; sample < rawData.length; sample++) {
-                for (int ch = 0; ch < channels; ch++) {
-                    originalSignal[ch][sample] = rawData[sample][ch];
-                    processedSignal[ch][sample] = rawData[sample][ch];
-                }
-            }
+    private void showLoadedFile(OpenedFile file) {
+        AnalysisState loaded = file.state;
+        double[][] originalSignal = loaded.originalSignal;
+        int channels = loaded.channels;
 
-            // Debug first few values
-            System.out.println("First few values from channel 0: " + originalSignal[0][0] + ", " + originalSignal[0][1] + ", " + originalSignal[0][2]);
-            if (channels > 1) {
-                System.out.println("First few values from channel 1: " + originalSignal[1][0] + ", " + originalSignal[1][1] + ", " + originalSignal[1][2]);
-            }
+        // Debug first few values
+        System.out.println("First few values from channel 0: " + originalSignal[0][0] + ", " + originalSignal[0][1] + ", " + originalSignal[0][2]);
+        if (channels > 1) {
+            System.out.println("First few values from channel 1: " + originalSignal[1][0] + ", " + originalSignal[1][1] + ", " + originalSignal[1][2]);
+        }
 
-            System.out.println("Loaded: " + channels + " channels, " + rawData.length + " samples");
-            dashboardPanel.updatePlots();
+        System.out.println("Loaded: " + channels + " channels, " + loaded.getSampleCount() + " samples");
+        closeIqRecording();
+        toneTracks = null;
+        signalHistory.clear();
+        originalDataCache.clear();
+        file.seed(originalDataCache);
+        loadedFingerprint = file.fingerprint;
+        publishState(loaded);
+        controlPanel.updateHistoryButtons();
+        dashboardPanel.updatePlots();
+    }
 
+    public void loadIqRecording(Path path, IqRecording.SampleFormat format, double sampleRate, double centerFrequency) {
+        try {
+            IqRecording recording = IqRecording.open(path, format, sampleRate, centerFrequency);
+            closeIqRecording();
+            iqRecording = recording;
+            toneTracks = null;
+
+            // Audio operators have nothing to work on while an I/Q capture is shown
+            signalHistory.clear();
+            originalDataCache.clear();
+            publishState(AnalysisState.EMPTY);
+            controlPanel.updateHistoryButtons();
         } catch (Exception e) {
             e.printStackTrace();
-            showAlert("Error loading file: " + e.getMessage());
+            showAlert("Error opening I/Q recording: " + e.getMessage());
+            return;
         }
+
+        dashboardPanel.updatePlots();
     }
 
-    private int getSampleRate() {
-        Long sampleRate = audioProperties.get("SampleRate");
-        if (sampleRate != null) {
-            return sampleRate.intValue();
-        }
-        return 44100; // default
+    // Cache key for a pipeline run on the loaded file, null after a resample or for files that
+    // can't be fingerprinted
+    public ResultCache.Key resultCacheKey(AnalysisState state, AnalysisPipeline pipeline) {
+        OpenedFile.Fingerprint loaded = loadedFingerprint;
+        return loaded != null ? loaded.key(state, pipeline) : null;
+    }
+
+    public void cacheOriginalResults(AnalysisState state) {
+        OpenedFile.Fingerprint loaded = loadedFingerprint;
+        if (loaded != null) loaded.cacheOriginalResults(state, resultCache, originalDataCache);
     }
 
-    private int getChannels() {
-        Long channels = audioProperties.get("Channels");
-        if (channels != null) {
-            System.out.println(channels.intValue());
-            return channels.intValue();
+    private void closeIqRecording() {
+        if (iqRecording == null) return;
+        try {
+            iqRecording.close();
+        } catch (IOException e) {
+            e.printStackTrace();
         }
-        return 1; // default
+        iqRecording = null;
+    }
+
+    public AnalysisState getState() {
+        return state.get();
+    }
+
+    public void publishState(AnalysisState newState) {
+        state.set(newState);
     }
 
     public void showAlert(String message) {
@@ -155,7 +224,20 @@ public class SpectrumAnalyzer extends Application {
         alert.showAndWait();
     }
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        // Headless modes instead of the window
+        if (args.length > 0 && args[0].equals("--serve")) {
+            AnalysisService.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--watch")) {
+            WatchFolderIngest.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--benchmark")) {
+            LatencyBenchmark.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         launch(args);
     }
 }
\ No newline at end of file
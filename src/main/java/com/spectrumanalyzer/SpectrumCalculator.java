@@ -0,0 +1,131 @@
+package com.spectrumanalyzer;
+
+import com.github.psambit9791.jdsp.transform.DiscreteFourier;
+import org.apache.commons.math3.complex.Complex;
+import org.apache.commons.math3.transform.DftNormalization;
+import org.apache.commons.math3.transform.FastFourierTransformer;
+import org.apache.commons.math3.transform.TransformType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public final class SpectrumCalculator {
+    public static final int MAX_FREQ_POINTS = 500;  // Reduced for better performance
+    public static final int MAX_FFT_SIZE = 4096;    // Reduced for faster FFT
+
+    private SpectrumCalculator() {
+    }
+
+    // Plot-ready spectrum, positive frequencies only
+    public static class Spectrum {
+        public final double[] frequencies;
+        public final double[] magnitudesDb;
+
+        public Spectrum(double[] frequencies, double[] magnitudesDb) {
+            this.frequencies = frequencies;
+            this.magnitudesDb = magnitudesDb;
+        }
+    }
+
+    public static class FrequencyPeak {
+        public final double frequency;
+        public final double magnitude;
+
+        public FrequencyPeak(double frequency, double magnitude) {
+            this.frequency = frequency;
+            this.magnitude = magnitude;
+        }
+    }
+
+    public static Spectrum computeSpectrum(double[] signal, double sampleRate) {
+        // Use smaller FFT size for better performance
+        int fftSize = Math.min(MAX_FFT_SIZE, Integer.highestOneBit(signal.length));
+        if (fftSize < signal.length && fftSize * 2 <= MAX_FFT_SIZE) {
+            fftSize *= 2;
+        }
+
+        double[] chunk = new double[fftSize];
+        System.arraycopy(signal, 0, chunk, 0, Math.min(fftSize, signal.length));
+        Arrays.fill(chunk, Math.min(fftSize, signal.length), fftSize, 0.0);
+
+        // Apply windowing
+        applyHanningWindow(chunk);
+
+        // Compute FFT
+        DiscreteFourier dft = new DiscreteFourier(chunk);
+        dft.transform();
+        double[] magnitude = dft.getMagnitude(true);
+
+        // Only positive frequencies with decimation (getMagnitude(true) already holds fftSize / 2 + 1 bins)
+        int halfLength = fftSize / 2;
+        double freqResolution = sampleRate / fftSize;
+        int step = Math.max(1, halfLength / MAX_FREQ_POINTS);
+        int points = halfLength > 1 ? (halfLength - 2) / step + 1 : 0;
+
+        double[] frequencies = new double[points];
+        double[] magnitudesDb = new double[points];
+        int p = 0;
+        for (int i = 1; i < halfLength; i += step) {
+            double magnitudeValue = magnitude[i] / (fftSize / 2.0) / 0.5; // Normalize and correct for windowing
+
+            frequencies[p] = i * freqResolution;
+            magnitudesDb[p] = magnitudeValue > 0 ? 20 * Math.log10(magnitudeValue) : -120;
+            p++;
+        }
+
+        return new Spectrum(frequencies, magnitudesDb);
+    }
+
+    public static void applyHanningWindow(double[] data) {
+        int N = data.length;
+        for (int i = 0; i < N; i++) {
+            double window = 0.5 * (1 - Math.cos(2 * Math.PI * i / (N - 1)));
+            data[i] *= window;
+        }
+    }
+
+    public static List<FrequencyPeak> findTopFrequencies(double[] monoSignal, int sampleRate, int count) {
+        // Use power-of-2 frame size for FFT
+        int frameSize = 4096;
+        double overlapRatio = 0.5;
+        int hopSize = (int) (frameSize * (1 - overlapRatio));
+
+        FastFourierTransformer fft = new FastFourierTransformer(DftNormalization.STANDARD);
+
+        // Accumulate magnitudes across all frames
+        double[] totalMagnitudes = new double[frameSize / 2];
+        int numFrames = 0;
+
+        for (int start = 0; start + frameSize <= monoSignal.length; start += hopSize) {
+            double[] frame = Arrays.copyOfRange(monoSignal, start, start + frameSize);
+            applyHanningWindow(frame);
+
+            Complex[] fftResult = fft.transform(frame, TransformType.FORWARD);
+
+            for (int i = 1; i < frameSize / 2; i++) { // Skip DC component
+                totalMagnitudes[i] += fftResult[i].abs();
+            }
+            numFrames++;
+        }
+
+        // Average and find peaks
+        List<FrequencyPeak> peaks = new ArrayList<>();
+        double freqPerBin = (double) sampleRate / frameSize;
+
+        for (int i = 1; i < totalMagnitudes.length; i++) {
+            if (numFrames > 0) {
+                totalMagnitudes[i] /= numFrames;
+            }
+
+            double frequency = i * freqPerBin;
+            double magnitudeDb = 20 * Math.log10(totalMagnitudes[i] + 1e-10);
+
+            peaks.add(new FrequencyPeak(frequency, magnitudeDb));
+        }
+
+        // Sort by magnitude and return the top entries
+        peaks.sort((a, b) -> Double.compare(b.magnitude, a.magnitude));
+        return peaks.subList(0, Math.min(count, peaks.size()));
+    }
+}
@@ -0,0 +1,16 @@
+package com.spectrumanalyzer;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.spectrumanalyzer.Stage")
+@Label("Processing Stage")
+@Category("Spectrum Analyzer")
+@Description("Duration of one processing stage (decode, filter, window, FFT, plot preparation, ...)")
+public class StageEvent extends Event {
+    @Label("Stage")
+    public String stage;
+}
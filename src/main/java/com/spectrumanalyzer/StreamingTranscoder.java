@@ -0,0 +1,181 @@
+package com.spectrumanalyzer;
+
+import com.github.psambit9791.wavfile.WavFile;
+import uk.me.berndporr.iirj.Cascade;
+
+import java.io.File;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleConsumer;
+
+// Filters and windows a WAV file into another one block by block. Reading, processing and writing
+// run on their own threads and pass a fixed set of blocks around, so memory does not grow with the file.
+public class StreamingTranscoder {
+    public static final int DEFAULT_BLOCK_FRAMES = 16384;
+    private static final int BLOCKS_IN_FLIGHT = 4;
+
+    private final int blockFrames;
+    private final PerformanceMonitor monitor;
+
+    private String filterType;
+    private double cutoff, lowCutoff, highCutoff, ripple;
+    private int order;
+    private String windowType = "Rectangular";
+    private double kaiserBeta;
+
+    private static class Block {
+        final double[][] samples;
+        int frames;
+
+        Block(int channels, int blockFrames) {
+            samples = new double[channels][blockFrames];
+        }
+    }
+
+    public StreamingTranscoder(int blockFrames, PerformanceMonitor monitor) {
+        this.blockFrames = blockFrames;
+        this.monitor = monitor;
+    }
+
+    public void setFilter(String filterType, double cutoff, double lowCutoff, double highCutoff, int order, double ripple) {
+        this.filterType = filterType;
+        this.cutoff = cutoff;
+        this.lowCutoff = lowCutoff;
+        this.highCutoff = highCutoff;
+        this.order = order;
+        this.ripple = ripple;
+    }
+
+    public void setWindow(String windowType, double kaiserBeta) {
+        this.windowType = windowType;
+        this.kaiserBeta = kaiserBeta;
+    }
+
+    // Blocks until the output is complete and returns the frames written; progress gets the fraction done
+    public long transcode(File input, File output, DoubleConsumer progress) throws Exception {
+        WavFile reader = WavFile.openWavFile(input);
+        WavFile writer = null;
+        try {
+            int channels = reader.getNumChannels();
+            int sampleRate = (int) reader.getSampleRate();
+            long totalFrames = reader.getNumFrames();
+            writer = WavFile.newWavFile(output, channels, totalFrames, reader.getValidBits(), reader.getSampleRate());
+
+            Cascade[] filters = new Cascade[channels];
+            if (filterType != null) {
+                for (int ch = 0; ch < channels; ch++) {
+                    filters[ch] = FilterOperator.createFilter(filterType, sampleRate, cutoff, lowCutoff, highCutoff, order, ripple);
+                }
+            }
+
+            // Blocks cycle free -> read -> processed -> free; an empty block marks the end
+            BlockingQueue<Block> free = new ArrayBlockingQueue<>(BLOCKS_IN_FLIGHT);
+            BlockingQueue<Block> read = new ArrayBlockingQueue<>(BLOCKS_IN_FLIGHT);
+            BlockingQueue<Block> processed = new ArrayBlockingQueue<>(BLOCKS_IN_FLIGHT);
+            for (int i = 0; i < BLOCKS_IN_FLIGHT; i++) {
+                free.add(new Block(channels, blockFrames));
+            }
+
+            AtomicInteger threadCount = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(3, runnable -> {
+                Thread thread = new Thread(runnable, "Transcoder-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            WavFile out = writer;
+            ExecutorCompletionService<Long> stages = new ExecutorCompletionService<>(executor);
+            try {
+                stages.submit(() -> readBlocks(reader, free, read));
+                stages.submit(() -> processBlocks(filters, totalFrames, read, processed));
+                Future<Long> written = stages.submit(() -> writeBlocks(out, processed, free, totalFrames, progress));
+                awaitStages(stages, 3);
+                return written.get();
+            } finally {
+                executor.shutdownNow();
+            }
+        } finally {
+            reader.close();
+            if (writer != null) writer.close();
+        }
+    }
+
+    private long readBlocks(WavFile reader, BlockingQueue<Block> free, BlockingQueue<Block> read) throws Exception {
+        long frames = 0;
+        while (true) {
+            Block block = free.take();
+            int count;
+            try (PerformanceMonitor.Timer timer = time("Decode")) {
+                count = reader.readFrames(block.samples, blockFrames);
+            }
+            block.frames = count;
+            // The block may be recycled as soon as it is handed on, so only the local count is used after put
+            read.put(block);
+            if (count == 0) return frames;
+            frames += count;
+        }
+    }
+
+    private long processBlocks(Cascade[] filters, long totalFrames, BlockingQueue<Block> read, BlockingQueue<Block> processed) throws Exception {
+        boolean windowed = !"Rectangular".equals(windowType);
+        long position = 0;
+        while (true) {
+            Block block = read.take();
+            int count = block.frames;
+            try (PerformanceMonitor.Timer timer = time("Filter")) {
+                for (int ch = 0; ch < block.samples.length; ch++) {
+                    double[] samples = block.samples[ch];
+                    Cascade filter = filters[ch];
+                    for (int i = 0; i < count; i++) {
+                        double value = filter != null ? filter.filter(samples[i]) : samples[i];
+                        if (windowed) {
+                            value *= WindowOperator.windowValue(windowType, position + i, totalFrames, kaiserBeta);
+                        }
+                        // The writer wraps around instead of clipping
+                        samples[i] = Math.max(-1.0, Math.min(1.0, value));
+                    }
+                }
+            }
+            processed.put(block);
+            if (count == 0) return position;
+            position += count;
+        }
+    }
+
+    private long writeBlocks(WavFile writer, BlockingQueue<Block> processed, BlockingQueue<Block> free,
+                             long totalFrames, DoubleConsumer progress) throws Exception {
+        long frames = 0;
+        while (true) {
+            Block block = processed.take();
+            if (block.frames == 0) return frames;
+
+            writer.writeFrames(block.samples, block.frames);
+            frames += block.frames;
+            free.put(block);
+            if (progress != null) progress.accept((double) frames / totalFrames);
+        }
+    }
+
+    // Stages finish in any order; the first failure is rethrown and the finally block in
+    // transcode interrupts the stages still waiting on a queue
+    private static void awaitStages(ExecutorCompletionService<Long> stages, int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            try {
+                stages.take().get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception cause) throw cause;
+                throw e;
+            }
+        }
+    }
+
+    private PerformanceMonitor.Timer time(String stage) {
+        return monitor != null ? monitor.time(stage) : null;
+    }
+}
@@ -0,0 +1,99 @@
+package com.spectrumanalyzer;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+// Runs each node as soon as the nodes it depends on are done, independent nodes in parallel
+public class TaskGraph {
+    private final Executor executor;
+    private final PerformanceMonitor monitor;
+    private final List<Node<?>> nodes = new CopyOnWriteArrayList<>();
+    private final AtomicInteger completed = new AtomicInteger();
+    private BiConsumer<Integer, Integer> progressListener;
+
+    public class Node<T> {
+        private final String name;
+        private final CompletableFuture<T> future;
+
+        private Node(String name, CompletableFuture<T> future) {
+            this.name = name;
+            this.future = future;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        // Only call from nodes that list this one as a dependency, or after await()
+        public T get() {
+            return future.join();
+        }
+    }
+
+    public TaskGraph() {
+        this(ForkJoinPool.commonPool(), null);
+    }
+
+    public TaskGraph(Executor executor, PerformanceMonitor monitor) {
+        this.executor = executor;
+        this.monitor = monitor;
+    }
+
+    public void setProgressListener(BiConsumer<Integer, Integer> progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    public <T> Node<T> add(String name, Supplier<T> work, Node<?>... dependencies) {
+        CompletableFuture<?>[] dependencyFutures = new CompletableFuture<?>[dependencies.length];
+        for (int i = 0; i < dependencies.length; i++) {
+            dependencyFutures[i] = dependencies[i].future;
+        }
+
+        CompletableFuture<T> future = CompletableFuture.allOf(dependencyFutures)
+                .thenApplyAsync(ignored -> runTimed(name, work), executor);
+        future.whenComplete((result, error) -> {
+            int done = completed.incrementAndGet();
+            if (progressListener != null) {
+                progressListener.accept(done, nodes.size());
+            }
+        });
+
+        Node<T> node = new Node<>(name, future);
+        nodes.add(node);
+        return node;
+    }
+
+    // Completes once every node added so far has finished
+    public CompletableFuture<Void> completion() {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[nodes.size()];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = nodes.get(i).future;
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+    // Waits for every node; the first failure is rethrown unwrapped when possible
+    public void await() {
+        try {
+            completion().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) throw runtimeException;
+            throw e;
+        }
+    }
+
+    private <T> T runTimed(String name, Supplier<T> work) {
+        if (monitor == null) return work.get();
+
+        try (PerformanceMonitor.Timer timer = monitor.time(name)) {
+            return work.get();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.spectrumanalyzer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+// Bank of Goertzel detectors: amplitude and phase of a few known frequencies, block by block, in one
+// pass over the signal. Costs a couple of multiplies per tone and sample instead of a full FFT.
+public class ToneTracker {
+    private final double[] frequencies;
+    private final int sampleRate;
+    private final int blockLength;
+    private final double[] window;
+    private final double windowGain;
+
+    public static class Track {
+        public final double frequency;
+        public final int channel;
+        public final double[] amplitudesDb;
+        public final double[] phasesDeg; // Relative to the start of the signal, steady for a steady tone
+
+        public Track(double frequency, int channel, double[] amplitudesDb, double[] phasesDeg) {
+            this.frequency = frequency;
+            this.channel = channel;
+            this.amplitudesDb = amplitudesDb;
+            this.phasesDeg = phasesDeg;
+        }
+    }
+
+    public static class Result {
+        public final long signalVersion; // Version of the signal the tracks were measured on
+        public final double[] times; // Block centres in seconds
+        public final double blockSeconds;
+        public final List<Track> tracks;
+
+        public Result(long signalVersion, double[] times, double blockSeconds, List<Track> tracks) {
+            this.signalVersion = signalVersion;
+            this.times = times;
+            this.blockSeconds = blockSeconds;
+            this.tracks = tracks;
+        }
+    }
+
+    public ToneTracker(double[] frequencies, int sampleRate, double blockSeconds) {
+        for (double frequency : frequencies) {
+            if (frequency <= 0 || frequency >= sampleRate / 2.0) {
+                throw new IllegalArgumentException("Tone " + frequency + " Hz is outside 0 - " + sampleRate / 2 + " Hz");
+            }
+        }
+        this.frequencies = frequencies.clone();
+        this.sampleRate = sampleRate;
+        this.blockLength = Math.max(16, (int) Math.round(blockSeconds * sampleRate));
+
+        // A Hann window keeps neighbouring tones and hum harmonics from leaking into each other
+        this.window = new double[blockLength];
+        double sum = 0;
+        for (int n = 0; n < blockLength; n++) {
+            window[n] = 0.5 - 0.5 * Math.cos(2 * Math.PI * n / (blockLength - 1));
+            sum += window[n];
+        }
+        this.windowGain = sum;
+    }
+
+    // Channels run in parallel, each in a single pass that feeds every tone
+    public Result track(double[][] signal, long signalVersion) {
+        int blocks = signal[0].length / blockLength;
+        double[] times = new double[blocks];
+        for (int b = 0; b < blocks; b++) {
+            times[b] = (b + 0.5) * blockLength / sampleRate;
+        }
+
+        Track[][] perChannel = new Track[signal.length][];
+        IntStream.range(0, signal.length).parallel().forEach(ch -> perChannel[ch] = trackChannel(signal[ch], ch, blocks));
+
+        List<Track> tracks = new ArrayList<>();
+        for (int t = 0; t < frequencies.length; t++) {
+            for (Track[] channelTracks : perChannel) {
+                tracks.add(channelTracks[t]);
+            }
+        }
+        return new Result(signalVersion, times, (double) blockLength / sampleRate, tracks);
+    }
+
+    private Track[] trackChannel(double[] samples, int channel, int blocks) {
+        int tones = frequencies.length;
+        double[] omega = new double[tones];
+        double[] coefficient = new double[tones];
+        for (int t = 0; t < tones; t++) {
+            omega[t] = 2 * Math.PI * frequencies[t] / sampleRate;
+            coefficient[t] = 2 * Math.cos(omega[t]);
+        }
+
+        double[][] amplitudes = new double[tones][blocks];
+        double[][] phases = new double[tones][blocks];
+        double[] s1 = new double[tones];
+        double[] s2 = new double[tones];
+
+        for (int b = 0; b < blocks; b++) {
+            int start = b * blockLength;
+            Arrays.fill(s1, 0);
+            Arrays.fill(s2, 0);
+
+            for (int n = 0; n < blockLength; n++) {
+                double x = samples[start + n] * window[n];
+                for (int t = 0; t < tones; t++) {
+                    double s = x + coefficient[t] * s1[t] - s2[t];
+                    s2[t] = s1[t];
+                    s1[t] = s;
+                }
+            }
+
+            for (int t = 0; t < tones; t++) {
+                // y = s1 - e^(-jw) s2 is the DFT term rotated by w (N - 1); undoing that and the block
+                // offset references the phase to sample 0
+                double yRe = s1[t] - Math.cos(omega[t]) * s2[t];
+                double yIm = Math.sin(omega[t]) * s2[t];
+                double rotation = -omega[t] * ((double) start + blockLength - 1);
+                double re = yRe * Math.cos(rotation) - yIm * Math.sin(rotation);
+                double im = yRe * Math.sin(rotation) + yIm * Math.cos(rotation);
+
+                double amplitude = 2 * Math.hypot(re, im) / windowGain;
+                amplitudes[t][b] = SignalStatistics.toDb(amplitude);
+                phases[t][b] = Math.toDegrees(Math.atan2(im, re));
+            }
+        }
+
+        Track[] tracks = new Track[tones];
+        for (int t = 0; t < tones; t++) {
+            tracks[t] = new Track(frequencies[t], channel, amplitudes[t], phases[t]);
+        }
+        return tracks;
+    }
+}
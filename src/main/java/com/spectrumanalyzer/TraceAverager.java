@@ -0,0 +1,101 @@
+package com.spectrumanalyzer;
+
+import java.util.Arrays;
+
+// Running trace over successive spectrum frames, like the trace modes of a hardware analyzer.
+// Only the accumulator is kept, so each frame costs O(bins) and no history is stored.
+public final class TraceAverager {
+    public enum Mode {
+        EXPONENTIAL("Exponential Average"),
+        LINEAR("Linear Average"),
+        MAX_HOLD("Max Hold"),
+        MIN_HOLD("Min Hold");
+
+        public final String label;
+
+        Mode(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    public final Mode mode;
+    private int averageCount;
+    private double[] frequencies;
+    private double[] accumulator; // Power for the averages, dB for the holds
+    private long frames;
+
+    public TraceAverager(Mode mode, int averageCount) {
+        this.mode = mode;
+        setAverageCount(averageCount);
+    }
+
+    // Time constant of the exponential average in frames
+    public synchronized void setAverageCount(int averageCount) {
+        this.averageCount = Math.max(1, averageCount);
+    }
+
+    public synchronized void reset() {
+        frequencies = null;
+        accumulator = null;
+        frames = 0;
+    }
+
+    public synchronized long getFrameCount() {
+        return frames;
+    }
+
+    // Folds one frame in and returns the current trace
+    public synchronized SpectrumCalculator.Spectrum update(SpectrumCalculator.Spectrum frame) {
+        // A different frequency grid (new file, resample, I/Q) starts the trace over
+        if (frequencies == null || !Arrays.equals(frequencies, frame.frequencies)) {
+            frequencies = frame.frequencies.clone();
+            accumulator = new double[frequencies.length];
+            frames = 0;
+        }
+
+        double[] levels = frame.magnitudesDb;
+        frames++;
+        switch (mode) {
+            case EXPONENTIAL -> {
+                // The first frames use the running mean so the trace does not start from zero
+                double weight = 1.0 / Math.min(frames, averageCount);
+                for (int i = 0; i < levels.length; i++) {
+                    accumulator[i] += (toPower(levels[i]) - accumulator[i]) * weight;
+                }
+            }
+            case LINEAR -> {
+                double weight = 1.0 / frames;
+                for (int i = 0; i < levels.length; i++) {
+                    accumulator[i] += (toPower(levels[i]) - accumulator[i]) * weight;
+                }
+            }
+            case MAX_HOLD -> {
+                for (int i = 0; i < levels.length; i++) {
+                    accumulator[i] = frames == 1 ? levels[i] : Math.max(accumulator[i], levels[i]);
+                }
+            }
+            case MIN_HOLD -> {
+                for (int i = 0; i < levels.length; i++) {
+                    accumulator[i] = frames == 1 ? levels[i] : Math.min(accumulator[i], levels[i]);
+                }
+            }
+        }
+
+        double[] trace = new double[accumulator.length];
+        boolean averaged = mode == Mode.EXPONENTIAL || mode == Mode.LINEAR;
+        for (int i = 0; i < trace.length; i++) {
+            trace[i] = averaged ? 10 * Math.log10(accumulator[i]) : accumulator[i];
+        }
+        return new SpectrumCalculator.Spectrum(frequencies, trace);
+    }
+
+    // Averaging happens on power; averaging dB values would bias noise low
+    private static double toPower(double levelDb) {
+        return Math.pow(10, levelDb / 10);
+    }
+}
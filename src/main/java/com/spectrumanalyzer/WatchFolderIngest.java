@@ -0,0 +1,297 @@
+package com.spectrumanalyzer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+// Analyzes every WAV file that lands in a directory, started with --watch. Each file gets a JSON sidecar
+// in the output directory and a line in its summary log.
+//
+// Events only mark a file as pending, so a burst of writes to one file is a single entry. A pending file
+// is analyzed once it has been quiet and its size stable for the settle time and, for RIFF files, the
+// header's size matches the file; recorders fill that in when they close the file. Ready files wait here
+// as paths while the worker queue is full, so only the workers ever hold decoded audio. A file whose
+// samples went through the same pipeline before is answered from the result cache and logged as cached.
+public class WatchFolderIngest {
+    private static final long POLL_MILLIS = 250;
+    private static final String SUMMARY_LOG = "summary.log";
+
+    private final Path directory;
+    private final Path outputDirectory;
+    private final AnalysisPipeline pipeline;
+    private final long settleNanos;
+    private final ThreadPoolExecutor workers;
+    private final PerformanceMonitor monitor = new PerformanceMonitor();
+    private final ResultCache resultCache = ResultCache.openDefault();
+
+    // Insertion ordered, so files are analyzed in the order they arrived
+    private final Map<Path, Pending> pending = new LinkedHashMap<>();
+    private boolean throttled;
+
+    private static class Pending {
+        long lastEventNanos;
+        long size = -1;
+        long sizeSinceNanos;
+
+        Pending(long now) {
+            lastEventNanos = now;
+        }
+    }
+
+    public WatchFolderIngest(Path directory, Path outputDirectory, AnalysisPipeline pipeline, int workerCount,
+                             int queueCapacity, long settleMillis) throws IOException {
+        this.directory = directory;
+        this.outputDirectory = outputDirectory;
+        this.pipeline = pipeline;
+        this.settleNanos = TimeUnit.MILLISECONDS.toNanos(settleMillis);
+        Files.createDirectories(outputDirectory);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "WatchFolder-Worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // --watch DIR [--output DIR] [--workers N] [--queue N] [--settle-ms N] [pipeline options as for the
+    // analysis service, e.g. --filter "Low Pass" --cutoff 1000 --window Hanning]
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) throw new IllegalArgumentException("Missing directory to watch");
+        Path directory = Path.of(args[0]).toAbsolutePath();
+        Path output = directory.resolve("analysis");
+        int workerCount = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        int queueCapacity = 8;
+        long settleMillis = 2000;
+        Map<String, String> pipelineParameters = new HashMap<>();
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--output" -> output = Path.of(value).toAbsolutePath();
+                case "--workers" -> workerCount = Integer.parseInt(value);
+                case "--queue" -> queueCapacity = Integer.parseInt(value);
+                case "--settle-ms" -> settleMillis = Long.parseLong(value);
+                default -> {
+                    if (!args[i].startsWith("--")) throw new IllegalArgumentException("Unknown option " + args[i]);
+                    pipelineParameters.put(args[i].substring(2), value);
+                }
+            }
+        }
+        new WatchFolderIngest(directory, output, AnalysisPipeline.fromParameters(pipelineParameters),
+                workerCount, queueCapacity, settleMillis).run();
+    }
+
+    // Blocks for as long as the directory can be watched
+    public void run() throws IOException, InterruptedException {
+        try (WatchService watcher = directory.getFileSystem().newWatchService()) {
+            directory.register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+            System.out.println("Watching " + directory + " with " + workers.getMaximumPoolSize() + " workers, results in "
+                    + outputDirectory + ", pipeline " + pipeline.describe());
+            // Files that arrived while nothing was watching
+            scanDirectory();
+
+            while (true) {
+                WatchKey key = watcher.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    long now = System.nanoTime();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == OVERFLOW) {
+                            // Events were dropped, the directory itself is the only reliable record
+                            scanDirectory();
+                        } else if (event.context() instanceof Path name) {
+                            markPending(directory.resolve(name), now);
+                        }
+                    }
+                    if (!key.reset()) {
+                        System.err.println("Watch directory " + directory + " is no longer accessible");
+                        break;
+                    }
+                }
+                dispatchReadyFiles();
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Closed from outside, nothing left to do
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    private void scanDirectory() throws IOException {
+        long now = System.nanoTime();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.{wav,WAV}")) {
+            for (Path file : files) {
+                if (!isAnalyzed(file)) markPending(file, now);
+            }
+        }
+    }
+
+    private void markPending(Path file, long now) {
+        if (!file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".wav")) return;
+        Pending entry = pending.get(file);
+        if (entry == null) {
+            pending.put(file, new Pending(now));
+        } else {
+            entry.lastEventNanos = now;
+        }
+    }
+
+    // Hands settled files to the workers in arrival order, stopping while their queue is full
+    private void dispatchReadyFiles() {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<Path, Pending>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, Pending> entry = iterator.next();
+            Path file = entry.getKey();
+            if (!Files.exists(file)) {
+                iterator.remove();
+                continue;
+            }
+            if (!isSettled(file, entry.getValue(), now)) continue;
+
+            if (workers.getQueue().remainingCapacity() == 0) {
+                if (!throttled) System.out.println("Worker queue full, holding " + pending.size() + " files");
+                throttled = true;
+                return;
+            }
+            iterator.remove();
+            workers.execute(() -> analyze(file));
+        }
+        if (throttled && pending.isEmpty()) {
+            System.out.println("Caught up with the directory");
+            throttled = false;
+        }
+    }
+
+    private boolean isSettled(Path file, Pending entry, long now) {
+        if (now - entry.lastEventNanos < settleNanos) return false;
+        long size;
+        try {
+            size = Files.size(file);
+        } catch (IOException e) {
+            return false;
+        }
+        // Some writers do not raise events for every write, so the size has to hold still on its own too
+        if (size != entry.size) {
+            entry.size = size;
+            entry.sizeSinceNanos = now;
+            return false;
+        }
+        long stableNanos = now - entry.sizeSinceNanos;
+        // A header that never matches is taken as written by a tool that does not fix it up
+        return stableNanos >= settleNanos && (hasCompleteHeader(file, size) || stableNanos >= 10 * settleNanos);
+    }
+
+    // A RIFF header is written with a placeholder size until the recorder closes the file. RF64 and
+    // Wave64 keep their sizes elsewhere, for them the stable size has to do.
+    private static boolean hasCompleteHeader(Path file, long size) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) > 0) {
+            }
+            if (header.position() < 12) return false;
+            String id = new String(header.array(), 0, 4, StandardCharsets.US_ASCII);
+            if (!id.equals("RIFF")) return true;
+            long riffSize = Integer.toUnsignedLong(header.getInt(4));
+            // The data chunk may be followed by one pad byte
+            return riffSize + 8 == size || riffSize + 9 == size;
+        } catch (IOException e) {
+            return false; // Still locked by the writer on some systems
+        }
+    }
+
+    private boolean isAnalyzed(Path file) {
+        Path sidecar = sidecarFor(file);
+        try {
+            return Files.exists(sidecar) && Files.getLastModifiedTime(sidecar).compareTo(Files.getLastModifiedTime(file)) >= 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private Path sidecarFor(Path file) {
+        return outputDirectory.resolve(file.getFileName() + ".analysis.json");
+    }
+
+    // Failed files get a sidecar too, so a rescan does not retry them until they change
+    private void analyze(Path file) {
+        long start = System.nanoTime();
+        String status;
+        String summary;
+        String json;
+        try (PerformanceMonitor.Timer timer = monitor.time("Job")) {
+            AnalysisPipeline.Result result = pipeline.run(file, resultCache, false, monitor);
+            json = "\"result\":" + result.toJson(true);
+            status = result.cached ? "cached" : "done";
+            String topFrequency = result.topFrequencies.isEmpty() ? "" : String.format(Locale.ROOT, "%.1f", result.topFrequencies.get(0).frequency);
+            summary = String.format(Locale.ROOT, "%d\t%d\t%.3f\t%.2f\t%.2f\t%s\t", result.sampleRate, result.filtered.channels,
+                    result.filtered.duration, result.filtered.rmsDb, result.filtered.peakDb, topFrequency);
+        } catch (Throwable e) {
+            e.printStackTrace();
+            String message = e.getMessage() != null ? e.getMessage() : e.toString();
+            json = "\"error\":" + AnalysisPipeline.quote(message);
+            status = "failed";
+            summary = "\t\t\t\t\t\t" + message.replace('\t', ' ').replace('\n', ' ');
+        }
+
+        try {
+            writeSidecar(file, String.format(Locale.ROOT, "{\"file\":%s,\"pipeline\":%s,\"analyzedAt\":\"%s\",%s}%n",
+                    AnalysisPipeline.quote(file.toString()), AnalysisPipeline.quote(pipeline.describe()), Instant.now(), json));
+        } catch (IOException e) {
+            System.err.println("Could not write the sidecar of " + file + ": " + e.getMessage());
+        }
+        appendSummary(String.format(Locale.ROOT, "%s\t%s\t%s\t%.1f\t%d\t%s", Instant.now(), file.getFileName(), status,
+                (System.nanoTime() - start) / 1e6, workers.getQueue().size(), summary));
+    }
+
+    // Written under a temporary name first, so readers never see half a sidecar
+    private void writeSidecar(Path file, String json) throws IOException {
+        Path sidecar = sidecarFor(file);
+        Path temporary = sidecar.resolveSibling(sidecar.getFileName() + ".tmp");
+        Files.writeString(temporary, json);
+        Files.move(temporary, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // One tab separated line per file: time, file, status, ms, queue depth, sample rate, channels,
+    // duration, RMS dB, peak dB, the strongest frequency and the error for failed files
+    private synchronized void appendSummary(String line) {
+        Path log = outputDirectory.resolve(SUMMARY_LOG);
+        try {
+            boolean created = !Files.exists(log);
+            try (Writer writer = Files.newBufferedWriter(log, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                if (created) writer.write("time\tfile\tstatus\tms\tqueue\tsampleRate\tchannels\tduration\trmsDb\tpeakDb\ttopFrequency\terror\n");
+                writer.write(line);
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            System.err.println("Could not write " + log + ": " + e.getMessage());
+        }
+        System.out.println(line);
+    }
+}
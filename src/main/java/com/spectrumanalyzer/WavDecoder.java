@@ -0,0 +1,321 @@
+package com.spectrumanalyzer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Hashtable;
+import java.util.stream.IntStream;
+
+// Decodes RIFF, RF64/BW64 and Sony Wave64 files with 8, 16, 24 or 32-bit integer or 32/64-bit float
+// samples. The data chunk is memory mapped and converted straight into [channels][samples] arrays.
+// Integer samples keep their raw integer values, the same scale jdsp's getData("int") gives.
+public final class WavDecoder {
+    private static final int FORMAT_PCM = 1;
+    private static final int FORMAT_FLOAT = 3;
+    private static final int FORMAT_EXTENSIBLE = 0xFFFE;
+    private static final long MAX_MAPPING = 1L << 30;
+    private static final int FRAMES_PER_TASK = 1 << 16;
+    private static final int BYTES_PER_HASH_TASK = 1 << 24; // Divides MAX_MAPPING
+
+    // Wave64 chunk GUIDs are the four letter id followed by this, except for the riff header
+    private static final byte[] W64_GUID_SUFFIX = {(byte) 0xF3, (byte) 0xAC, (byte) 0xD3, 0x11,
+            (byte) 0x8C, (byte) 0xD1, 0x00, (byte) 0xC0, 0x4F, (byte) 0x8E, (byte) 0xDB, (byte) 0x8A};
+    private static final byte[] W64_RIFF_GUID = {'r', 'i', 'f', 'f', 0x2E, (byte) 0x91, (byte) 0xCF, 0x11,
+            (byte) 0xA5, (byte) 0xD6, 0x28, (byte) 0xDB, 0x04, (byte) 0xC1, 0x00, 0x00};
+
+    private WavDecoder() {
+    }
+
+    public static class UnsupportedFormatException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public UnsupportedFormatException(String message) {
+            super(message);
+        }
+    }
+
+    private static class Format {
+        int formatTag;
+        int channels;
+        int sampleRate;
+        int blockAlign;
+        int bitsPerSample;
+        int validBits;
+        long dataOffset = -1;
+        long dataSize;
+    }
+
+    public static AudioFile decode(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Format format = readFormat(channel);
+            long frames = frameCount(channel, format);
+            // Not a format problem, so no fallback; jdsp would reject the file the same way
+            if (frames == 0) throw new IOException("No audio data found in file");
+            double[][] samples = new double[format.channels][(int) frames];
+            decodeData(channel, format, samples, (int) frames);
+            return new AudioFile(samples, properties(format, frames), format.sampleRate, format.channels);
+        }
+    }
+
+    // XXH64 of the sample format and the frames decode would read. Container layout and metadata
+    // chunks are left out, so re-tagging a file or rewrapping it as RF64 keeps its fingerprint.
+    public static long fingerprint(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Format format = readFormat(channel);
+            long dataSize = frameCount(channel, format) * format.blockAlign;
+
+            int blocks = (int) ((dataSize + BYTES_PER_HASH_TASK - 1) / BYTES_PER_HASH_TASK);
+            long[] hashes = new long[blocks + 4];
+            hashes[0] = format.formatTag;
+            hashes[1] = format.channels;
+            hashes[2] = format.sampleRate;
+            hashes[3] = format.bitsPerSample;
+            // Fixed size blocks hashed in parallel, then the block hashes hashed in order
+            for (long first = 0; first < dataSize; first += MAX_MAPPING) {
+                long mappedSize = Math.min(MAX_MAPPING, dataSize - first);
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, format.dataOffset + first, mappedSize);
+                int baseBlock = (int) (first / BYTES_PER_HASH_TASK);
+                int tasks = (int) ((mappedSize + BYTES_PER_HASH_TASK - 1) / BYTES_PER_HASH_TASK);
+                IntStream.range(0, tasks).parallel().forEach(task -> {
+                    int start = task * BYTES_PER_HASH_TASK;
+                    int length = (int) Math.min(BYTES_PER_HASH_TASK, mappedSize - start);
+                    hashes[4 + baseBlock + task] = ContentHash.xxHash64(mapped.slice(start, length), baseBlock + task);
+                });
+            }
+            return ContentHash.xxHash64(hashes, dataSize);
+        }
+    }
+
+    private static Format readFormat(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, header, 0);
+        String id = ascii(header, 0);
+
+        Format format;
+        if (id.equals("RIFF") || id.equals("RF64") || id.equals("BW64")) {
+            if (!ascii(header, 8).equals("WAVE")) throw new UnsupportedFormatException("Not a WAVE file");
+            format = parseRiffChunks(channel, id.equals("RIFF"));
+        } else if (matches(header, 0, W64_RIFF_GUID)) {
+            format = parseWave64Chunks(channel);
+        } else {
+            throw new UnsupportedFormatException("Unknown container " + id);
+        }
+        validate(format);
+        return format;
+    }
+
+    private static long frameCount(FileChannel channel, Format format) throws IOException {
+        // A truncated capture still decodes whatever complete frames made it to disk
+        long dataSize = Math.min(format.dataSize, channel.size() - format.dataOffset);
+        long frames = dataSize / format.blockAlign;
+        if (frames > Integer.MAX_VALUE) {
+            throw new UnsupportedFormatException("File has more than " + Integer.MAX_VALUE + " frames per channel");
+        }
+        return frames;
+    }
+
+    private static Format parseRiffChunks(FileChannel channel, boolean classic) throws IOException {
+        Format format = new Format();
+        long ds64DataSize = -1;
+        long position = 12;
+        ByteBuffer chunkHeader = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+
+        while (position + 8 <= channel.size()) {
+            readFully(channel, chunkHeader.clear(), position);
+            String chunkId = ascii(chunkHeader, 0);
+            long size = Integer.toUnsignedLong(chunkHeader.getInt(4));
+            long body = position + 8;
+
+            switch (chunkId) {
+                case "ds64" -> {
+                    ByteBuffer ds64 = readChunk(channel, body, 24);
+                    ds64DataSize = ds64.getLong(8);
+                }
+                case "fmt " -> parseFmt(readChunk(channel, body, (int) Math.min(size, 40)), format);
+                case "data" -> {
+                    format.dataOffset = body;
+                    // RF64 writers put 0xFFFFFFFF here and the real size in ds64
+                    format.dataSize = !classic && ds64DataSize >= 0 ? ds64DataSize : size;
+                    return format;
+                }
+                default -> { }
+            }
+            position = body + size + (size & 1);
+        }
+        return format;
+    }
+
+    private static Format parseWave64Chunks(FileChannel channel) throws IOException {
+        Format format = new Format();
+        long position = 40; // riff GUID, file size, wave GUID
+        ByteBuffer chunkHeader = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN);
+
+        while (position + 24 <= channel.size()) {
+            readFully(channel, chunkHeader.clear(), position);
+            long size = chunkHeader.getLong(16); // Includes the 24 byte header
+            if (size < 24) throw new UnsupportedFormatException("Corrupt Wave64 chunk");
+
+            if (matches(chunkHeader, 4, W64_GUID_SUFFIX)) {
+                String chunkId = ascii(chunkHeader, 0);
+                if (chunkId.equals("fmt ")) {
+                    parseFmt(readChunk(channel, position + 24, (int) Math.min(size - 24, 40)), format);
+                } else if (chunkId.equals("data")) {
+                    format.dataOffset = position + 24;
+                    format.dataSize = size - 24;
+                    return format;
+                }
+            }
+            position += (size + 7) & ~7L;
+        }
+        return format;
+    }
+
+    private static void parseFmt(ByteBuffer fmt, Format format) {
+        format.formatTag = Short.toUnsignedInt(fmt.getShort(0));
+        format.channels = Short.toUnsignedInt(fmt.getShort(2));
+        format.sampleRate = fmt.getInt(4);
+        format.blockAlign = Short.toUnsignedInt(fmt.getShort(12));
+        format.bitsPerSample = Short.toUnsignedInt(fmt.getShort(14));
+        format.validBits = format.bitsPerSample;
+
+        if (format.formatTag == FORMAT_EXTENSIBLE && fmt.limit() >= 26) {
+            int validBits = Short.toUnsignedInt(fmt.getShort(18));
+            if (validBits > 0) format.validBits = validBits;
+            format.formatTag = Short.toUnsignedInt(fmt.getShort(24)); // First field of the sub format GUID
+        }
+    }
+
+    private static void validate(Format format) throws UnsupportedFormatException {
+        if (format.dataOffset < 0 || format.channels == 0) {
+            throw new UnsupportedFormatException("Missing fmt or data chunk");
+        }
+        boolean supported = switch (format.formatTag) {
+            case FORMAT_PCM -> format.bitsPerSample == 8 || format.bitsPerSample == 16
+                    || format.bitsPerSample == 24 || format.bitsPerSample == 32;
+            case FORMAT_FLOAT -> format.bitsPerSample == 32 || format.bitsPerSample == 64;
+            default -> false;
+        };
+        if (!supported || format.blockAlign != format.channels * format.bitsPerSample / 8) {
+            throw new UnsupportedFormatException("Unsupported sample format " + format.formatTag + "/" + format.bitsPerSample + " bit");
+        }
+    }
+
+    // Maps the data chunk in windows of at most MAX_MAPPING bytes and decodes each window in parallel
+    private static void decodeData(FileChannel channel, Format format, double[][] samples, int frames) throws IOException {
+        long framesPerMapping = MAX_MAPPING / format.blockAlign;
+        for (long firstFrame = 0; firstFrame < frames; firstFrame += framesPerMapping) {
+            int mappedFrames = (int) Math.min(framesPerMapping, frames - firstFrame);
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY,
+                    format.dataOffset + firstFrame * format.blockAlign, (long) mappedFrames * format.blockAlign);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+            int baseFrame = (int) firstFrame;
+            int tasks = (mappedFrames + FRAMES_PER_TASK - 1) / FRAMES_PER_TASK;
+            IntStream.range(0, tasks).parallel().forEach(task -> {
+                int start = task * FRAMES_PER_TASK;
+                int count = Math.min(FRAMES_PER_TASK, mappedFrames - start);
+                ByteBuffer slice = mapped.slice(start * format.blockAlign, count * format.blockAlign)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                decodeFrames(slice, format, samples, baseFrame + start, count);
+            });
+        }
+    }
+
+    private static void decodeFrames(ByteBuffer data, Format format, double[][] samples, int offset, int frames) {
+        int channels = format.channels;
+        int values = frames * channels;
+
+        if (format.formatTag == FORMAT_FLOAT && format.bitsPerSample == 32) {
+            float[] interleaved = new float[values];
+            data.asFloatBuffer().get(interleaved);
+            for (int ch = 0; ch < channels; ch++) {
+                double[] out = samples[ch];
+                for (int f = 0, i = ch; f < frames; f++, i += channels) out[offset + f] = interleaved[i];
+            }
+        } else if (format.formatTag == FORMAT_FLOAT) {
+            double[] interleaved = new double[values];
+            data.asDoubleBuffer().get(interleaved);
+            for (int ch = 0; ch < channels; ch++) {
+                double[] out = samples[ch];
+                for (int f = 0, i = ch; f < frames; f++, i += channels) out[offset + f] = interleaved[i];
+            }
+        } else if (format.bitsPerSample == 32) {
+            int[] interleaved = new int[values];
+            data.asIntBuffer().get(interleaved);
+            for (int ch = 0; ch < channels; ch++) {
+                double[] out = samples[ch];
+                for (int f = 0, i = ch; f < frames; f++, i += channels) out[offset + f] = interleaved[i];
+            }
+        } else if (format.bitsPerSample == 16) {
+            short[] interleaved = new short[values];
+            data.asShortBuffer().get(interleaved);
+            for (int ch = 0; ch < channels; ch++) {
+                double[] out = samples[ch];
+                for (int f = 0, i = ch; f < frames; f++, i += channels) out[offset + f] = interleaved[i];
+            }
+        } else if (format.bitsPerSample == 24) {
+            byte[] packed = new byte[values * 3];
+            data.get(packed);
+            for (int ch = 0; ch < channels; ch++) {
+                double[] out = samples[ch];
+                for (int f = 0, b = ch * 3; f < frames; f++, b += channels * 3) {
+                    // The top byte is shifted in signed so the value sign-extends
+                    out[offset + f] = (packed[b] & 0xFF) | (packed[b + 1] & 0xFF) << 8 | packed[b + 2] << 16;
+                }
+            }
+        } else {
+            byte[] unsigned = new byte[values];
+            data.get(unsigned);
+            for (int ch = 0; ch < channels; ch++) {
+                double[] out = samples[ch];
+                for (int f = 0, i = ch; f < frames; f++, i += channels) out[offset + f] = (unsigned[i] & 0xFF) - 128;
+            }
+        }
+    }
+
+    private static Hashtable<String, Long> properties(Format format, long frames) {
+        Hashtable<String, Long> properties = new Hashtable<>();
+        properties.put("Channels", (long) format.channels);
+        properties.put("Frames", frames);
+        properties.put("SampleRate", (long) format.sampleRate);
+        properties.put("BlockAlign", (long) format.blockAlign);
+        properties.put("ValidBits", (long) format.validBits);
+        properties.put("BytesPerSample", (long) format.bitsPerSample / 8);
+        properties.put("FormatTag", (long) format.formatTag);
+        return properties;
+    }
+
+    private static ByteBuffer readChunk(FileChannel channel, long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, buffer, position);
+        return buffer;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new UnsupportedFormatException("Unexpected end of file");
+            }
+        }
+        buffer.flip();
+    }
+
+    private static String ascii(ByteBuffer buffer, int offset) {
+        byte[] bytes = new byte[4];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private static boolean matches(ByteBuffer buffer, int offset, byte[] expected) {
+        if (buffer.limit() < offset + expected.length) return false;
+        for (int i = 0; i < expected.length; i++) {
+            if (buffer.get(offset + i) != expected[i]) return false;
+        }
+        return true;
+    }
+}
@@ -1,5 +1,6 @@
 package com.spectrumanalyzer;
 
+import com.github.psambit9791.jdsp.misc.UtilMethods;
 import com.github.psambit9791.jdsp.windows.*;
 import com.spectrumanalyzer.SpectrumAnalyzer;
 import java.util.Arrays;
@@ -11,26 +12,32 @@ public class WindowOperator {
         this.analyzer = analyzer;
     }
 
-    public void applyWindow(String windowType, double kaiserBeta) {
-        if (analyzer.processedSignal == null) {
+    // Records the window in the history only once it has been applied; returns whether it was
+    public boolean applyWindow(String windowType, double kaiserBeta) {
+        AnalysisState state = analyzer.getState();
+        if (!state.hasSignal()) {
             analyzer.showAlert("No signal to apply window to");
-            return;
+            return false;
         }
 
-        try {
-            double[][] windowedSignal = applyWindowFunction(analyzer.processedSignal, windowType, kaiserBeta);
-            if (windowedSignal != null) {
-                analyzer.processedSignal = windowedSignal;
-            } else {
+        try (PerformanceMonitor.Timer timer = analyzer.performanceMonitor.time("Window")) {
+            double[][] windowedSignal = applyWindowFunction(state.processedSignal, windowType, kaiserBeta);
+            if (windowedSignal == null) {
                 analyzer.showAlert("Failed to apply window function");
+                return false;
             }
+            analyzer.signalHistory.record(state.processedSignal, windowType + " window");
+            analyzer.publishState(state.withProcessed(windowedSignal));
+            return true;
         } catch (Exception e) {
             analyzer.showAlert("Error applying window: " + e.getMessage());
             e.printStackTrace();
+            return false;
         }
     }
 
-    private double[][] applyWindowFunction(double[][] signal, String windowType, double kaiserBeta) {
+    // Returns a windowed copy of the signal, or null for an unknown window type
+    public static double[][] applyWindowFunction(double[][] signal, String windowType, double kaiserBeta) {
         int channels = signal.length;
         int length = signal[0].length;
 
@@ -47,7 +54,7 @@ public class WindowOperator {
         return windowedSignal;
     }
 
-    private double[] generateWindow(String windowType, int length, double kaiserBeta) {
+    private static double[] generateWindow(String windowType, int length, double kaiserBeta) {
         try {
             return switch (windowType) {
                 case "Rectangular" -> generateRectangularWindow(length);
@@ -67,10 +74,26 @@ public class WindowOperator {
         }
     }
 
-    private double[] generateRectangularWindow(int length) {
+    private static double[] generateRectangularWindow(int length) {
         double[] window = new double[length];
         Arrays.fill(window, 1.0);
         return window;
     }
 
+    // Value of sample n of a symmetric window of the given length, the same as the arrays
+    // generateWindow builds, for signals that are windowed piece by piece
+    public static double windowValue(String windowType, long n, long length, double kaiserBeta) {
+        if (length <= 1) return 1.0;
+        double phase = 2 * Math.PI * n / (length - 1);
+        return switch (windowType) {
+            case "Hanning" -> 0.5 - 0.5 * Math.cos(phase);
+            case "Hamming" -> 0.54 - 0.46 * Math.cos(phase);
+            case "Blackman" -> 0.42 - 0.5 * Math.cos(phase) + 0.08 * Math.cos(2 * phase);
+            case "Kaiser" -> {
+                double ratio = 2.0 * n / (length - 1) - 1;
+                yield UtilMethods.i0(kaiserBeta * Math.sqrt(1 - ratio * ratio)) / UtilMethods.i0(kaiserBeta);
+            }
+            default -> 1.0;
+        };
+    }
 }
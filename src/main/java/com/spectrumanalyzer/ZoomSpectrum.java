@@ -0,0 +1,174 @@
+package com.spectrumanalyzer;
+
+import com.github.psambit9791.jdsp.windows.Kaiser;
+import org.apache.commons.math3.transform.DftNormalization;
+import org.apache.commons.math3.transform.FastFourierTransformer;
+import org.apache.commons.math3.transform.TransformType;
+
+import java.io.IOException;
+
+// High resolution spectrum of a narrow band: the band is mixed down to 0 Hz, low-pass filtered and
+// decimated so its width fills the new sample rate, then averaged FFTs of the slow signal are taken.
+// The FFT size depends on span / resolution, not on the full bandwidth.
+public final class ZoomSpectrum {
+    public static final int MAX_FFT_SIZE = 1 << 16;
+    private static final int MAX_SEGMENTS = 16;
+    private static final int TAPS_PER_DECIMATION = 12; // Filter length in decimated samples
+    private static final double KAISER_BETA = 8.0;
+    private static final int OUTPUT_CHUNK = 4096;
+    private static final int MAX_POINTS = 4 * SpectrumCalculator.MAX_FREQ_POINTS;
+
+    private ZoomSpectrum() {
+    }
+
+    // Fills re and im with count samples from start; real signals leave im at zero
+    public interface SampleReader {
+        void read(long start, double[] re, double[] im, int count) throws IOException;
+    }
+
+    public static class Result {
+        public final SpectrumCalculator.Spectrum spectrum;
+        public final double binWidth;
+        public final int decimation;
+
+        public Result(SpectrumCalculator.Spectrum spectrum, double binWidth, int decimation) {
+            this.spectrum = spectrum;
+            this.binWidth = binWidth;
+            this.decimation = decimation;
+        }
+    }
+
+    public static Result compute(double[] signal, double sampleRate, int startSample, int endSample,
+                                 double lowFrequency, double highFrequency) {
+        SampleReader reader = (start, re, im, count) -> {
+            for (int i = 0; i < count; i++) {
+                long index = start + i;
+                re[i] = index >= 0 && index < signal.length ? signal[(int) index] : 0;
+                im[i] = 0;
+            }
+        };
+        try {
+            // A real cosine splits into two halves, so the mixed tone is doubled back to its amplitude
+            return compute(reader, startSample, endSample, sampleRate, 0, 2.0, lowFrequency, highFrequency);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // The array reader never throws
+        }
+    }
+
+    // baseFrequency is what 0 Hz in the samples stands for, the center frequency of I/Q input
+    public static Result compute(SampleReader reader, long startSample, long endSample, double sampleRate,
+                                 double baseFrequency, double gain, double lowFrequency, double highFrequency) throws IOException {
+        double span = highFrequency - lowFrequency;
+        if (span <= 0) throw new IllegalArgumentException("Empty frequency span");
+
+        // Decimated rate of at least twice the span keeps the aliased filter skirt outside the band
+        int decimation = (int) Math.max(1, Math.floor(sampleRate / (2 * span)));
+        double decimatedRate = sampleRate / decimation;
+        double mixFrequency = (lowFrequency + highFrequency) / 2 - baseFrequency;
+        double[] taps = designLowPass(decimation);
+
+        long available = Math.max(0, endSample - startSample);
+        int fftSize = (int) Math.max(16, Math.min(MAX_FFT_SIZE, Long.highestOneBit(Math.max(1, available / decimation))));
+        int segments = (int) Math.max(1, Math.min(MAX_SEGMENTS, available / decimation / fftSize));
+        // Long ranges are analysed around their middle
+        long outputs = (long) segments * fftSize;
+        long first = startSample + Math.max(0, (available - outputs * decimation) / 2);
+
+        double[] power = new double[fftSize];
+        double[] re = new double[fftSize];
+        double[] im = new double[fftSize];
+        for (int segment = 0; segment < segments; segment++) {
+            mixAndDecimate(reader, first + (long) segment * fftSize * decimation, fftSize, decimation,
+                    mixFrequency / sampleRate, taps, re, im);
+            SpectrumCalculator.applyHanningWindow(re);
+            SpectrumCalculator.applyHanningWindow(im);
+            FastFourierTransformer.transformInPlace(new double[][]{re, im}, DftNormalization.STANDARD, TransformType.FORWARD);
+            for (int bin = 0; bin < fftSize; bin++) {
+                power[bin] += (re[bin] * re[bin] + im[bin] * im[bin]) / segments;
+            }
+        }
+
+        double binWidth = decimatedRate / fftSize;
+        int halfBins = (int) Math.min(fftSize / 2 - 1, Math.floor(span / 2 / binWidth));
+        int step = Math.max(1, (2 * halfBins + 1) / MAX_POINTS);
+        int points = 2 * halfBins / step + 1;
+
+        double[] frequencies = new double[points];
+        double[] magnitudesDb = new double[points];
+        for (int p = 0; p < points; p++) {
+            int offset = -halfBins + p * step; // Bins relative to the mixing frequency
+            int bin = Math.floorMod(offset, fftSize);
+            double magnitudeValue = gain * Math.sqrt(power[bin]) / fftSize / 0.5; // Normalize and correct for windowing
+
+            frequencies[p] = baseFrequency + mixFrequency + offset * binWidth;
+            magnitudesDb[p] = magnitudeValue > 0 ? 20 * Math.log10(magnitudeValue) : -120;
+        }
+
+        return new Result(new SpectrumCalculator.Spectrum(frequencies, magnitudesDb), binWidth, decimation);
+    }
+
+    // Computes count decimated outputs; output k is the filtered mixed signal at input first + k * decimation
+    private static void mixAndDecimate(SampleReader reader, long first, int count, int decimation, double cyclesPerSample,
+                                       double[] taps, double[] outRe, double[] outIm) throws IOException {
+        int history = taps.length - 1;
+        for (int chunkStart = 0; chunkStart < count; chunkStart += OUTPUT_CHUNK) {
+            int chunkOutputs = Math.min(OUTPUT_CHUNK, count - chunkStart);
+            long inputStart = first + (long) chunkStart * decimation - history;
+            int inputs = (chunkOutputs - 1) * decimation + taps.length;
+
+            double[] re = new double[inputs];
+            double[] im = new double[inputs];
+            reader.read(inputStart, re, im, inputs);
+
+            // The oscillator is restarted from the exact phase every chunk so rounding cannot build up
+            double phase = -2 * Math.PI * (cyclesPerSample * inputStart % 1.0);
+            double stepCos = Math.cos(-2 * Math.PI * cyclesPerSample);
+            double stepSin = Math.sin(-2 * Math.PI * cyclesPerSample);
+            double oscCos = Math.cos(phase);
+            double oscSin = Math.sin(phase);
+            for (int i = 0; i < inputs; i++) {
+                double r = re[i] * oscCos - im[i] * oscSin;
+                double q = re[i] * oscSin + im[i] * oscCos;
+                re[i] = r;
+                im[i] = q;
+
+                double nextCos = oscCos * stepCos - oscSin * stepSin;
+                oscSin = oscCos * stepSin + oscSin * stepCos;
+                oscCos = nextCos;
+            }
+
+            for (int k = 0; k < chunkOutputs; k++) {
+                int newest = k * decimation + history;
+                double sumRe = 0;
+                double sumIm = 0;
+                for (int t = 0; t < taps.length; t++) {
+                    sumRe += taps[t] * re[newest - t];
+                    sumIm += taps[t] * im[newest - t];
+                }
+                outRe[chunkStart + k] = sumRe;
+                outIm[chunkStart + k] = sumIm;
+            }
+        }
+    }
+
+    // Kaiser windowed sinc with unit DC gain, cut off at the Nyquist frequency of the decimated rate
+    private static double[] designLowPass(int decimation) {
+        if (decimation == 1) return new double[]{1.0};
+
+        int length = TAPS_PER_DECIMATION * decimation + 1;
+        double cutoff = 0.5 / decimation; // Cycles per input sample
+        double[] window = new Kaiser(length, KAISER_BETA).getWindow();
+        double[] taps = new double[length];
+        double sum = 0;
+        for (int t = 0; t < length; t++) {
+            double x = t - (length - 1) / 2.0;
+            double sinc = x == 0 ? 1.0 : Math.sin(2 * Math.PI * cutoff * x) / (2 * Math.PI * cutoff * x);
+            taps[t] = sinc * window[t];
+            sum += taps[t];
+        }
+        for (int t = 0; t < length; t++) {
+            taps[t] /= sum;
+        }
+        return taps;
+    }
+}
@@ -1,10 +1,18 @@
 package com.spectrumanalyzer.panels;
 
+import com.spectrumanalyzer.AnalysisState;
+import com.spectrumanalyzer.PerformanceMonitor;
 import com.spectrumanalyzer.SpectrumAnalyzer;
+import com.spectrumanalyzer.StreamingTranscoder;
+import com.spectrumanalyzer.ToneTracker;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
+import javafx.stage.FileChooser;
+
+import java.io.File;
 
 public class ControlPanel extends VBox {
     private SpectrumAnalyzer analyzer;
@@ -23,6 +31,17 @@ public class ControlPanel extends VBox {
     private RadioButton rectangularButton, hanningButton, hammingButton, blackmanButton, kaiserButton;
     private TextField kaiserBetaField;
 
+    // Resampling components
+    private ComboBox<String> resampleRateBox;
+
+    // History components
+    private Button undoButton, redoButton;
+    private TextField historyBudgetField;
+
+    // Tone tracking components
+    private TextField toneFrequenciesField;
+    private TextField toneBlockField;
+
     public ControlPanel(SpectrumAnalyzer analyzer) {
         this.analyzer = analyzer;
 
@@ -60,17 +79,34 @@ public class ControlPanel extends VBox {
         HBox.setHgrow(applyButton, Priority.ALWAYS);
         HBox.setHgrow(resetButton, Priority.ALWAYS);
 
+        // Filters a file on disk without loading it, for files too large to analyze
+        Button streamFileButton = new Button("Filter File to File...");
+        streamFileButton.setMaxWidth(Double.MAX_VALUE);
+        streamFileButton.setOnAction(e -> filterFileToFile());
+
         // Create windowing section
         VBox windowingBox = createWindowingBox();
 
+        VBox historyBox = createHistoryBox();
+
+        VBox resamplingBox = createResamplingBox();
+
+        VBox toneTrackingBox = createToneTrackingBox();
+
         getChildren().addAll(
                 titleLabel,
                 filterAccordion,
                 makeSeparator(),
                 windowingBox,
                 makeSeparator(),
+                resamplingBox,
+                makeSeparator(),
+                toneTrackingBox,
+                makeSeparator(),
                 parameterBox,
                 buttonBox,
+                streamFileButton,
+                historyBox,
                 analyzer.dashboardPanel.statusLabel,
                 analyzer.dashboardPanel.progressBar
         );
@@ -146,6 +182,191 @@ public class ControlPanel extends VBox {
         return windowingBox;
     }
 
+    private VBox createResamplingBox() {
+        VBox resamplingBox = new VBox(10);
+        resamplingBox.setPadding(new Insets(10));
+
+        Label titleLabel = new Label("Resampling");
+        titleLabel.setStyle("-fx-font-size: 18px; -fx-font-weight: bold;");
+
+        resampleRateBox = new ComboBox<>();
+        resampleRateBox.getItems().addAll("8000", "11025", "16000", "22050", "32000", "44100", "48000", "96000");
+        resampleRateBox.setEditable(true);
+        resampleRateBox.setValue("16000");
+
+        Button resampleButton = new Button("Resample");
+        resampleButton.setStyle("-fx-background-color: #0373ab;");
+        resampleButton.setMaxWidth(Double.MAX_VALUE);
+        resampleButton.setOnAction(e -> applyResample());
+
+        resamplingBox.getChildren().addAll(
+                titleLabel,
+                createStyledLabel("Analysis rate (Hz):"),
+                createHBox(resampleRateBox, new Label("Hz")),
+                resampleButton
+        );
+
+        return resamplingBox;
+    }
+
+    private void applyResample() {
+        if (!analyzer.getState().hasSignal()) {
+            analyzer.showAlert("Please load an audio file first");
+            return;
+        }
+
+        try {
+            int targetRate = Integer.parseInt(resampleRateBox.getValue().trim());
+            if (targetRate <= 0) {
+                analyzer.showAlert("Sample rate must be positive");
+                return;
+            }
+
+            analyzer.resampleOperator.applyResample(targetRate);
+            updateHistoryButtons();
+            analyzer.dashboardPanel.updatePlots();
+        } catch (NumberFormatException e) {
+            analyzer.showAlert("Invalid sample rate");
+        }
+    }
+
+    private VBox createToneTrackingBox() {
+        VBox toneBox = new VBox(10);
+        toneBox.setPadding(new Insets(10));
+
+        Label titleLabel = new Label("Tone Tracking");
+        titleLabel.setStyle("-fx-font-size: 18px; -fx-font-weight: bold;");
+
+        toneFrequenciesField = new TextField("50, 100, 1000");
+        toneFrequenciesField.setTooltip(new Tooltip("Comma separated frequencies in Hz"));
+        toneBlockField = new TextField("100");
+        toneBlockField.setPrefWidth(85);
+
+        Button trackButton = new Button("Track Tones");
+        trackButton.setStyle("-fx-background-color: #0373ab;");
+        trackButton.setMaxWidth(Double.MAX_VALUE);
+        trackButton.setOnAction(e -> trackTones());
+
+        toneBox.getChildren().addAll(
+                titleLabel,
+                createStyledLabel("Frequencies (Hz):"),
+                toneFrequenciesField,
+                createStyledLabel("Block length:"),
+                createHBox(toneBlockField, new Label("ms")),
+                trackButton
+        );
+
+        return toneBox;
+    }
+
+    // Amplitude and phase of each listed tone over time, on every channel of the processed signal
+    private void trackTones() {
+        AnalysisState state = analyzer.getState();
+        if (!state.hasSignal()) {
+            analyzer.showAlert("Please load an audio file first");
+            return;
+        }
+
+        ToneTracker tracker;
+        try {
+            String[] parts = toneFrequenciesField.getText().split(",");
+            double[] frequencies = new double[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                frequencies[i] = Double.parseDouble(parts[i].trim());
+            }
+            double blockSeconds = Double.parseDouble(toneBlockField.getText().trim()) / 1000.0;
+            if (blockSeconds <= 0) {
+                analyzer.showAlert("Block length must be positive");
+                return;
+            }
+            tracker = new ToneTracker(frequencies, state.sampleRate, blockSeconds);
+        } catch (NumberFormatException e) {
+            analyzer.showAlert("Invalid tone frequencies or block length");
+            return;
+        } catch (IllegalArgumentException e) {
+            analyzer.showAlert(e.getMessage());
+            return;
+        }
+
+        Label statusLabel = analyzer.dashboardPanel.statusLabel;
+        statusLabel.setText("Tracking tones...");
+        Thread.ofPlatform().name("ToneTracker").daemon().start(() -> {
+            try (PerformanceMonitor.Timer timer = analyzer.performanceMonitor.time("Tone tracking")) {
+                ToneTracker.Result result = tracker.track(state.processedSignal, state.processedVersion);
+                Platform.runLater(() -> {
+                    // A newer file may have been loaded while the tracker ran
+                    if (analyzer.getState().processedVersion != state.processedVersion) return;
+                    analyzer.toneTracks = result;
+                    analyzer.dashboardPanel.showToneTracks(result);
+                    statusLabel.setText("Ready");
+                });
+            } catch (Exception e) {
+                e.printStackTrace();
+                Platform.runLater(() -> {
+                    statusLabel.setText("Error occurred");
+                    analyzer.showAlert("Tone tracking failed: " + e.getMessage());
+                });
+            }
+        });
+    }
+
+    private VBox createHistoryBox() {
+        undoButton = new Button("Undo");
+        redoButton = new Button("Redo");
+        undoButton.setMaxWidth(Double.MAX_VALUE);
+        redoButton.setMaxWidth(Double.MAX_VALUE);
+        undoButton.setOnAction(e -> undo());
+        redoButton.setOnAction(e -> redo());
+
+        HBox undoRedoBox = new HBox(10, undoButton, redoButton);
+        HBox.setHgrow(undoButton, Priority.ALWAYS);
+        HBox.setHgrow(redoButton, Priority.ALWAYS);
+
+        historyBudgetField = new TextField(String.valueOf(analyzer.signalHistory.getMemoryBudget() / (1024 * 1024)));
+        historyBudgetField.setPrefWidth(85);
+        historyBudgetField.setOnAction(e -> applyHistoryBudget());
+        historyBudgetField.focusedProperty().addListener((obs, wasFocused, isFocused) -> {
+            if (!isFocused) applyHistoryBudget();
+        });
+
+        updateHistoryButtons();
+        return new VBox(5, undoRedoBox, createStyledLabel("History memory (MB):"), historyBudgetField);
+    }
+
+    private void applyHistoryBudget() {
+        try {
+            long megabytes = Long.parseLong(historyBudgetField.getText().trim());
+            analyzer.signalHistory.setMemoryBudget(megabytes * 1024 * 1024);
+        } catch (NumberFormatException e) {
+            historyBudgetField.setText(String.valueOf(analyzer.signalHistory.getMemoryBudget() / (1024 * 1024)));
+        }
+    }
+
+    private void undo() {
+        if (!analyzer.signalHistory.canUndo()) return;
+        AnalysisState state = analyzer.getState();
+        analyzer.publishState(state.withProcessed(analyzer.signalHistory.undo(state.processedSignal)));
+        updateHistoryButtons();
+        analyzer.dashboardPanel.updatePlots();
+    }
+
+    private void redo() {
+        if (!analyzer.signalHistory.canRedo()) return;
+        AnalysisState state = analyzer.getState();
+        analyzer.publishState(state.withProcessed(analyzer.signalHistory.redo(state.processedSignal)));
+        updateHistoryButtons();
+        analyzer.dashboardPanel.updatePlots();
+    }
+
+    public void updateHistoryButtons() {
+        String undoLabel = analyzer.signalHistory.peekUndoLabel();
+        String redoLabel = analyzer.signalHistory.peekRedoLabel();
+        undoButton.setDisable(undoLabel == null);
+        redoButton.setDisable(redoLabel == null);
+        undoButton.setTooltip(undoLabel != null ? new Tooltip("Undo " + undoLabel) : null);
+        redoButton.setTooltip(redoLabel != null ? new Tooltip("Redo " + redoLabel) : null);
+    }
+
     private void setupWindowToggleListeners() {
         windowToggleGroup.selectedToggleProperty().addListener((obs, oldVal, newVal) -> {
             if (newVal != null) {
@@ -173,7 +394,7 @@ public class ControlPanel extends VBox {
     }
 
     private void applySelectedWindow() {
-        if (analyzer.originalSignal == null) {
+        if (!analyzer.getState().hasSignal()) {
             analyzer.showAlert("Please load an audio file first");
             return;
         }
@@ -183,8 +404,10 @@ public class ControlPanel extends VBox {
             double kaiserBeta = Double.parseDouble(kaiserBetaField.getText());
 
             // Apply window using WindowOperator (you'll need to create this class)
-            analyzer.windowOperator.applyWindow(windowType, kaiserBeta);
-            analyzer.dashboardPanel.updatePlots();
+            if (analyzer.windowOperator.applyWindow(windowType, kaiserBeta)) {
+                updateHistoryButtons();
+                analyzer.dashboardPanel.updatePlots();
+            }
         } catch (NumberFormatException e) {
             analyzer.showAlert("Invalid parameter values for window");
         }
@@ -335,29 +558,34 @@ public class ControlPanel extends VBox {
     }
 
     private void applySelectedFilter() {
-        if (analyzer.originalSignal == null) {
+        if (!analyzer.getState().hasSignal()) {
             analyzer.showAlert("Please load an audio file first");
             return;
         }
 
-        resetSignal();
-
         try {
-            double cutoff = Double.parseDouble(cutoffField.getText());
-            double lowCutoff = Double.parseDouble(lowCutoffField.getText());
-            double highCutoff = Double.parseDouble(highCutoffField.getText());
+            double[] cutoffs = getCutoffsInHz();
+            double cutoff = cutoffs[0];
+            double lowCutoff = cutoffs[1];
+            double highCutoff = cutoffs[2];
             int order = (int) orderSlider.getValue();
             double ripple = Double.parseDouble(rippleField.getText());
 
-            // Convert units
-            cutoff *= getUnitMultiplier(cutOffUnitBox.getValue());
-            lowCutoff *= getUnitMultiplier(lowCutOffUnitBox.getValue());
-            highCutoff *= getUnitMultiplier(highCutoffUnitBox.getValue());
-
             String filterType = getSelectedFilterType();
             if (filterType != null) {
-                analyzer.filterOperator.applyFilter(filterType, cutoff, lowCutoff, highCutoff, order, ripple);
-                analyzer.dashboardPanel.updatePlots();
+                // The design's response and predicted spectrum show up before the filter has run
+                DashboardPanel dashboard = analyzer.dashboardPanel;
+                dashboard.showFilterPreview(filterType, cutoff, lowCutoff, highCutoff, order, ripple);
+                dashboard.statusLabel.setText("Filtering...");
+                analyzer.filterOperator.applyFilter(filterType, cutoff, lowCutoff, highCutoff, order, ripple,
+                        () -> {
+                            updateHistoryButtons();
+                            dashboard.updatePlots();
+                        },
+                        () -> {
+                            dashboard.cancelFilterPreview();
+                            dashboard.statusLabel.setText("Ready");
+                        });
             } else {
                 analyzer.showAlert("Please select a filter type");
             }
@@ -366,6 +594,77 @@ public class ControlPanel extends VBox {
         }
     }
 
+    // Cutoff, low cutoff and high cutoff with their units applied
+    private double[] getCutoffsInHz() {
+        return new double[]{
+                Double.parseDouble(cutoffField.getText()) * getUnitMultiplier(cutOffUnitBox.getValue()),
+                Double.parseDouble(lowCutoffField.getText()) * getUnitMultiplier(lowCutOffUnitBox.getValue()),
+                Double.parseDouble(highCutoffField.getText()) * getUnitMultiplier(highCutoffUnitBox.getValue())
+        };
+    }
+
+    // Runs the selected filter and window over a WAV file straight into another one
+    private void filterFileToFile() {
+        String filterType = getSelectedFilterType();
+        StreamingTranscoder transcoder = new StreamingTranscoder(StreamingTranscoder.DEFAULT_BLOCK_FRAMES, analyzer.performanceMonitor);
+        try {
+            double[] cutoffs = getCutoffsInHz();
+            if (filterType != null) {
+                transcoder.setFilter(filterType, cutoffs[0], cutoffs[1], cutoffs[2], (int) orderSlider.getValue(),
+                        Double.parseDouble(rippleField.getText()));
+            }
+            transcoder.setWindow(getSelectedWindowType(), Double.parseDouble(kaiserBetaField.getText()));
+        } catch (NumberFormatException e) {
+            analyzer.showAlert("Invalid parameter values");
+            return;
+        }
+
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Select WAV File to Filter");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("WAV Files", "*.wav"));
+        File input = fileChooser.showOpenDialog(getScene().getWindow());
+        if (input == null) return;
+
+        fileChooser.setTitle("Save Filtered WAV File");
+        fileChooser.setInitialDirectory(input.getParentFile());
+        fileChooser.setInitialFileName(input.getName().replaceFirst("(?i)\\.wav$", "") + "_filtered.wav");
+        File output = fileChooser.showSaveDialog(getScene().getWindow());
+        if (output == null) return;
+        if (output.getAbsoluteFile().equals(input.getAbsoluteFile())) {
+            analyzer.showAlert("Output must be a different file than the input");
+            return;
+        }
+
+        ProgressBar progressBar = analyzer.dashboardPanel.progressBar;
+        Label statusLabel = analyzer.dashboardPanel.statusLabel;
+        progressBar.setVisible(true);
+        progressBar.setProgress(0);
+        statusLabel.setText("Filtering " + input.getName() + "...");
+
+        Thread.ofPlatform().name("Transcoder").daemon().start(() -> {
+            int[] lastPercent = {-1};
+            try {
+                transcoder.transcode(input, output, fraction -> {
+                    int percent = (int) (fraction * 100);
+                    if (percent == lastPercent[0]) return;
+                    lastPercent[0] = percent;
+                    Platform.runLater(() -> progressBar.setProgress(fraction));
+                });
+                Platform.runLater(() -> {
+                    progressBar.setVisible(false);
+                    statusLabel.setText("Wrote " + output.getName());
+                });
+            } catch (Exception e) {
+                e.printStackTrace();
+                Platform.runLater(() -> {
+                    progressBar.setVisible(false);
+                    statusLabel.setText("Error occurred");
+                    analyzer.showAlert("Filtering file failed: " + e.getMessage());
+                });
+            }
+        });
+    }
+
     private double getUnitMultiplier(String unit) {
         return switch (unit) {
             case "Hz" -> 1.0;
@@ -377,8 +676,13 @@ public class ControlPanel extends VBox {
 
 
     private void resetSignal() {
-        if (analyzer.originalSignal != null) {
-            analyzer.processedSignal = analyzer.originalSignal.clone();
+        AnalysisState state = analyzer.getState();
+        if (state.hasSignal()) {
+            analyzer.signalHistory.record(state.processedSignal, "Reset");
+            updateHistoryButtons();
+
+            // Shallow copy is enough, channel arrays are replaced rather than modified in place
+            analyzer.publishState(state.withProcessed(state.originalSignal.clone()));
             analyzer.dashboardPanel.updatePlots();
         }
     }
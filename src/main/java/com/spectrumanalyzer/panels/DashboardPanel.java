@@ -1,29 +1,100 @@
 package com.spectrumanalyzer.panels;
 
+import com.spectrumanalyzer.AnalysisState;
+import com.spectrumanalyzer.BandPowerMeter;
+import com.spectrumanalyzer.DerivedDataCache;
+import com.spectrumanalyzer.FilterResponse;
+import com.spectrumanalyzer.IqRecording;
+import com.spectrumanalyzer.PerformanceMonitor;
+import com.spectrumanalyzer.PersistenceHistogram;
+import com.spectrumanalyzer.RangeStatistics;
+import com.spectrumanalyzer.SegmentSpectrumCache;
+import com.spectrumanalyzer.SignalStatistics;
 import com.spectrumanalyzer.SpectrumAnalyzer;
+import com.spectrumanalyzer.SpectrumCalculator;
+import com.spectrumanalyzer.TaskGraph;
+import com.spectrumanalyzer.ToneTracker;
+import com.spectrumanalyzer.TraceAverager;
+import com.spectrumanalyzer.ZoomSpectrum;
+import javafx.geometry.Bounds;
+import javafx.geometry.Insets;
+import javafx.geometry.Point2D;
+import javafx.scene.Cursor;
 import javafx.scene.Node;
 import javafx.scene.chart.*;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
 import javafx.scene.layout.*;
+import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
 import javafx.scene.control.*;
 import javafx.concurrent.Task;
 import javafx.application.Platform;
-import com.github.psambit9791.jdsp.transform.DiscreteFourier;
 
-import java.util.Arrays;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.DoubleConsumer;
 
 public class DashboardPanel extends VBox {
     private SpectrumAnalyzer analyzer;
     public LineChart<Number, Number> timeChart;
     public LineChart<Number, Number> frequencyChart;
+    public LineChart<Number, Number> toneChart; // Only laid out while tone tracks exist
+    public LineChart<Number, Number> responseChart; // Only laid out while a filter's response is shown
 
     // Background processing
     private ExecutorService executorService;
     public ProgressBar progressBar;
     public Label statusLabel;
     private volatile boolean processingInProgress = false;
+    private boolean updatePending; // updatePlots was called during a refresh, which then runs once more
+
+    // Spectrum of the visible time range, built from cached per-segment spectra
+    private final SegmentSpectrumCache segmentSpectrumCache = new SegmentSpectrumCache(4096);
+    private ExecutorService spectrumExecutor;
+    private PlotData plotData; // Series of every channel, built once per signal version
+    private boolean visibleSpectrumRunning = false;
+    private boolean visibleSpectrumDirty = false;
+
+    // Fine resolution spectrum of a span dragged out on the frequency chart
+    private final Rectangle zoomSelection = new Rectangle();
+    private double zoomDragStartX;
+    private XYChart.Series<Number, Number> zoomSeries;
+
+    // Statistics of the visible time range, answered from an index built with the plots
+    private RangeStatistics rangeStatistics;
+    private int rangeStatisticsRate;
+
+    // Band markers on the frequency chart, read from the power meter of the visible range
+    private final List<BandMarker> bandMarkers = new ArrayList<>();
+    private BandPowerMeter bandPowerMeter;
+
+    // Averaged and held traces, fed with every visible-range spectrum
+    private final Map<TraceAverager.Mode, TraceAverager> traceAveragers = new EnumMap<>(TraceAverager.Mode.class);
+    private final Map<TraceAverager.Mode, XYChart.Series<Number, Number>> traceSeries = new EnumMap<>(TraceAverager.Mode.class);
+    private int traceAverageCount = 10;
+
+    // Traces and spectra of the processed signal, kept until it is filtered again
+    private final DerivedDataCache processedDataCache = new DerivedDataCache();
+
+    // Channels switched off here keep their series, they are only taken off the charts
+    public FlowPane channelSelector = new FlowPane(8, 4);
+    private final Set<Integer> hiddenChannels = new HashSet<>();
+
+    // Spectra of other files overlaid for comparison
+    private final List<XYChart.Series<Number, Number>> comparisonSeries = new ArrayList<>();
 
     // Zoom and pan functionality
     private LineChart<Number, Number> selectedChart = null;
@@ -35,13 +106,30 @@ public class DashboardPanel extends VBox {
     private double baseXRange = 0;
     private double baseXCenter = 0;
 
+    // Persistence heat map of the whole signal, laid out below the charts while shown
+    private VBox persistencePane;
+    private Label persistenceTitle;
+    private ImageView persistenceView;
+    private long persistenceVersion = -1;
+
+    // Response of the filter being applied or shown. Until the filter has run, the predicted spectrum
+    // of each channel stands in for its filtered spectrum.
+    private final Map<Integer, XYChart.Series<Number, Number>> predictedSeries = new HashMap<>();
+    private long responseVersion = -1; // Processed version the response belongs to
+    private static final long RESPONSE_PENDING = -2;
+    private static final int RESPONSE_POINTS = 1024;
+    private static final double RESPONSE_FLOOR_DB = -160;
+
+    private boolean showTimeChart = true;
+    private boolean showFrequencyChart = true;
+
     // Performance settings
     private static final int MAX_TIME_POINTS = 1000; // Reduced for better performance
-    private static final int MAX_FREQ_POINTS = 500;  // Reduced for better performance
-    private static final int MAX_FFT_SIZE = 4096;    // Reduced for faster FFT
+    private static final int IQ_TRACE_BLOCK = 1 << 16; // Complex samples per read when decimating an I/Q trace
 
     // Color constants for consistent styling
     private static final String PROCESSED_COLOR = "#0066cc"; // Blue
+    private static final String PREDICTED_STYLE = "-fx-stroke: #66aaff; -fx-stroke-dash-array: 6 4;";
 
     public DashboardPanel(SpectrumAnalyzer analyzer) {
         this.analyzer = analyzer;
@@ -50,6 +138,11 @@ public class DashboardPanel extends VBox {
             t.setDaemon(true);
             return t;
         });
+        this.spectrumExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "SpectrumAnalyzer-VisibleSpectrum");
+            t.setDaemon(true);
+            return t;
+        });
 
         setupUI();
         setupZoomAndPan();
@@ -82,6 +175,16 @@ public class DashboardPanel extends VBox {
         timeChart.setLegendVisible(true); // Ensure legend is visible
         VBox.setVgrow(timeChart, Priority.ALWAYS);
 
+        // Spectrum follows whatever part of the signal the time chart shows
+        timeXAxis.lowerBoundProperty().addListener((obs, oldVal, newVal) -> {
+            requestVisibleSpectrumUpdate();
+            updateRangeStatistics();
+        });
+        timeXAxis.upperBoundProperty().addListener((obs, oldVal, newVal) -> {
+            requestVisibleSpectrumUpdate();
+            updateRangeStatistics();
+        });
+
         NumberAxis freqXAxis = new NumberAxis();
         NumberAxis freqYAxis = new NumberAxis();
         freqXAxis.setLabel("Frequency (Hz)");
@@ -93,9 +196,54 @@ public class DashboardPanel extends VBox {
         frequencyChart.setLegendVisible(true); // Ensure legend is visible
         VBox.setVgrow(frequencyChart, Priority.ALWAYS);
 
+        NumberAxis toneXAxis = new NumberAxis();
+        NumberAxis toneYAxis = new NumberAxis();
+        toneXAxis.setLabel("Time (s)");
+        toneYAxis.setLabel("Tone Level (dB)");
+        toneChart = new LineChart<>(toneXAxis, toneYAxis);
+        toneChart.setTitle("Tone Tracks");
+        toneChart.setCreateSymbols(false);
+        toneChart.setAnimated(false);
+        toneChart.setLegendVisible(true);
+        toneChart.setMaxSize(Double.MAX_VALUE, Double.MAX_VALUE);
+        VBox.setVgrow(toneChart, Priority.ALWAYS);
+
+        // Magnitude and phase share the axis; both fit in -180..20
+        NumberAxis responseXAxis = new NumberAxis();
+        NumberAxis responseYAxis = new NumberAxis(-180, 20, 20);
+        responseXAxis.setLabel("Frequency (Hz)");
+        responseYAxis.setLabel("Magnitude (dB) / Phase (°)");
+        responseChart = new LineChart<>(responseXAxis, responseYAxis);
+        responseChart.setTitle("Filter Response");
+        responseChart.setCreateSymbols(false);
+        responseChart.setAnimated(false);
+        responseChart.setLegendVisible(true);
+        responseChart.setMaxSize(Double.MAX_VALUE, Double.MAX_VALUE);
+        VBox.setVgrow(responseChart, Priority.ALWAYS);
+
+        persistenceTitle = new Label("Persistence");
+        persistenceTitle.setStyle("-fx-text-fill: #ffffff; -fx-font-weight: bold;");
+        persistenceView = new ImageView();
+        persistenceView.setPreserveRatio(false);
+        persistenceView.setSmooth(true);
+        persistenceView.setManaged(false); // Follows the holder's size instead of driving it
+        Pane persistenceHolder = new Pane(persistenceView);
+        persistenceView.fitWidthProperty().bind(persistenceHolder.widthProperty());
+        persistenceView.fitHeightProperty().bind(persistenceHolder.heightProperty());
+        VBox.setVgrow(persistenceHolder, Priority.ALWAYS);
+        persistencePane = new VBox(5, persistenceTitle, persistenceHolder);
+        persistencePane.setPadding(new Insets(5, 10, 10, 10));
+        persistencePane.setMaxSize(Double.MAX_VALUE, Double.MAX_VALUE);
+        VBox.setVgrow(persistencePane, Priority.ALWAYS);
+
         timeBox.getChildren().addAll(timeChart);
         frequencyBox.getChildren().add(frequencyChart);
 
+        // Band markers follow the axis once the chart has laid it out
+        frequencyChart.needsLayoutProperty().addListener((obs, wasNeeded, isNeeded) -> {
+            if (!isNeeded) layoutBandMarkers();
+        });
+
         getChildren().addAll(timeBox, frequencyBox);
 
         HBox.setHgrow(timeBox, Priority.ALWAYS);
@@ -174,6 +322,255 @@ public class DashboardPanel extends VBox {
 
     private void setupChartInteraction(LineChart<Number, Number> chart) {
         chart.setOnMouseClicked(this::handleChartClick);
+        if (chart == frequencyChart) {
+            zoomSelection.setManaged(false);
+            zoomSelection.setVisible(false);
+            zoomSelection.setFill(Color.rgb(3, 115, 171, 0.25));
+            zoomSelection.setStroke(Color.rgb(3, 115, 171));
+            zoomSelection.setMouseTransparent(true);
+            chart.setOnMousePressed(this::startZoomSelection);
+            chart.setOnMouseDragged(this::dragZoomSelection);
+            chart.setOnMouseReleased(this::finishZoomSelection);
+        }
+    }
+
+    private void startZoomSelection(MouseEvent event) {
+        Pane content = (Pane) frequencyChart.lookup(".chart-content");
+        Region plotArea = (Region) frequencyChart.lookup(".chart-plot-background");
+        if (content == null || plotArea == null) return;
+        if (!content.getChildren().contains(zoomSelection)) content.getChildren().add(zoomSelection);
+
+        Bounds plotBounds = content.sceneToLocal(plotArea.localToScene(plotArea.getBoundsInLocal()));
+        zoomDragStartX = content.sceneToLocal(event.getSceneX(), event.getSceneY()).getX();
+        zoomSelection.setX(zoomDragStartX);
+        zoomSelection.setY(plotBounds.getMinY());
+        zoomSelection.setWidth(0);
+        zoomSelection.setHeight(plotBounds.getHeight());
+    }
+
+    private void dragZoomSelection(MouseEvent event) {
+        if (zoomSelection.getParent() == null) return;
+        double x = zoomSelection.getParent().sceneToLocal(event.getSceneX(), event.getSceneY()).getX();
+        zoomSelection.setX(Math.min(zoomDragStartX, x));
+        zoomSelection.setWidth(Math.abs(x - zoomDragStartX));
+        zoomSelection.setVisible(true);
+    }
+
+    private void finishZoomSelection(MouseEvent event) {
+        boolean selected = zoomSelection.isVisible() && zoomSelection.getWidth() > 5;
+        zoomSelection.setVisible(false);
+        if (!selected) return;
+
+        NumberAxis axis = (NumberAxis) frequencyChart.getXAxis();
+        Point2D left = axis.sceneToLocal(zoomSelection.localToScene(zoomSelection.getX(), 0));
+        Point2D right = axis.sceneToLocal(zoomSelection.localToScene(zoomSelection.getX() + zoomSelection.getWidth(), 0));
+        double lowFrequency = axis.getValueForDisplay(left.getX()).doubleValue();
+        double highFrequency = axis.getValueForDisplay(right.getX()).doubleValue();
+        if (event.isShiftDown()) {
+            addBandMarker(lowFrequency, highFrequency);
+        } else {
+            requestZoomSpectrum(lowFrequency, highFrequency);
+        }
+        event.consume();
+    }
+
+    // A band between two frequencies; drag the body to move it, the edges to resize, right click removes it
+    private class BandMarker {
+        private static final double EDGE_PIXELS = 6;
+
+        double lowFrequency;
+        double highFrequency;
+        final Rectangle rectangle = new Rectangle();
+        final Label label = new Label();
+        private double dragStartValue;
+        private double dragStartLow;
+        private double dragStartHigh;
+        private int dragEdge; // -1 low edge, 1 high edge, 0 whole band
+
+        BandMarker(double lowFrequency, double highFrequency) {
+            this.lowFrequency = lowFrequency;
+            this.highFrequency = highFrequency;
+            rectangle.setManaged(false);
+            rectangle.setFill(Color.rgb(227, 122, 9, 0.2));
+            rectangle.setStroke(Color.rgb(227, 122, 9));
+            label.setManaged(false);
+            label.setMouseTransparent(true);
+            label.setStyle("-fx-text-fill: #e37a09; -fx-font-size: 11px;");
+
+            rectangle.setOnMousePressed(this::pressed);
+            rectangle.setOnMouseDragged(this::dragged);
+            rectangle.setOnMouseReleased(MouseEvent::consume);
+            rectangle.setOnMouseClicked(MouseEvent::consume);
+            rectangle.setOnMouseMoved(e -> rectangle.setCursor(edgeAt(e) != 0
+                    ? Cursor.H_RESIZE : Cursor.MOVE));
+        }
+
+        private int edgeAt(MouseEvent event) {
+            double x = rectangle.sceneToLocal(event.getSceneX(), event.getSceneY()).getX();
+            if (x - rectangle.getX() < EDGE_PIXELS) return -1;
+            if (rectangle.getX() + rectangle.getWidth() - x < EDGE_PIXELS) return 1;
+            return 0;
+        }
+
+        private void pressed(MouseEvent event) {
+            event.consume();
+            if (event.getButton() == MouseButton.SECONDARY) {
+                removeBandMarker(this);
+                return;
+            }
+            dragEdge = edgeAt(event);
+            dragStartValue = frequencyAt(event);
+            dragStartLow = lowFrequency;
+            dragStartHigh = highFrequency;
+        }
+
+        private void dragged(MouseEvent event) {
+            event.consume();
+            double shift = frequencyAt(event) - dragStartValue;
+            if (dragEdge <= 0) lowFrequency = dragStartLow + shift;
+            if (dragEdge >= 0) highFrequency = dragStartHigh + shift;
+            if (lowFrequency > highFrequency) {
+                double swap = lowFrequency;
+                lowFrequency = highFrequency;
+                highFrequency = swap;
+            }
+            layout();
+            updateBandReadings();
+        }
+
+        private double frequencyAt(MouseEvent event) {
+            NumberAxis axis = (NumberAxis) frequencyChart.getXAxis();
+            return axis.getValueForDisplay(axis.sceneToLocal(event.getSceneX(), event.getSceneY()).getX()).doubleValue();
+        }
+
+        // Maps the band from axis values to the plot content's coordinates
+        void layout() {
+            Pane content = (Pane) frequencyChart.lookup(".chart-content");
+            Region plotArea = (Region) frequencyChart.lookup(".chart-plot-background");
+            if (content == null || plotArea == null) return;
+            if (rectangle.getParent() != content) content.getChildren().addAll(rectangle, label);
+
+            NumberAxis axis = (NumberAxis) frequencyChart.getXAxis();
+            Bounds plotBounds = content.sceneToLocal(plotArea.localToScene(plotArea.getBoundsInLocal()));
+            double left = content.sceneToLocal(axis.localToScene(axis.getDisplayPosition(lowFrequency), 0)).getX();
+            double right = content.sceneToLocal(axis.localToScene(axis.getDisplayPosition(highFrequency), 0)).getX();
+            left = Math.max(plotBounds.getMinX(), left);
+            right = Math.min(plotBounds.getMaxX(), right);
+
+            boolean visible = right > left;
+            rectangle.setVisible(visible);
+            label.setVisible(visible);
+            rectangle.setX(left);
+            rectangle.setY(plotBounds.getMinY());
+            rectangle.setWidth(Math.max(0, right - left));
+            rectangle.setHeight(plotBounds.getHeight());
+            label.autosize();
+            label.relocate(left + 3, plotBounds.getMinY() + 3);
+        }
+
+        void remove() {
+            if (rectangle.getParent() instanceof Pane parent) parent.getChildren().removeAll(rectangle, label);
+        }
+    }
+
+    private void addBandMarker(double lowFrequency, double highFrequency) {
+        BandMarker marker = new BandMarker(lowFrequency, highFrequency);
+        bandMarkers.add(marker);
+        marker.layout();
+        updateBandReadings();
+    }
+
+    private void removeBandMarker(BandMarker marker) {
+        marker.remove();
+        bandMarkers.remove(marker);
+        updateBandReadings();
+    }
+
+    public void clearBandMarkers() {
+        bandMarkers.forEach(BandMarker::remove);
+        bandMarkers.clear();
+        updateBandReadings();
+    }
+
+    private void layoutBandMarkers() {
+        bandMarkers.forEach(BandMarker::layout);
+    }
+
+    // Every reading is a couple of lookups in the cumulative spectrum, so this runs on each drag event
+    private void updateBandReadings() {
+        List<StatisticPanel.BandReading> readings = new ArrayList<>();
+        for (int i = 0; i < bandMarkers.size(); i++) {
+            BandMarker marker = bandMarkers.get(i);
+            if (bandPowerMeter == null) {
+                marker.label.setText("B" + (i + 1));
+                continue;
+            }
+            double power = bandPowerMeter.bandPower(marker.lowFrequency, marker.highFrequency);
+            double[] adjacent = bandPowerMeter.adjacentChannelRatio(marker.lowFrequency, marker.highFrequency);
+            readings.add(new StatisticPanel.BandReading("B" + (i + 1), marker.lowFrequency, marker.highFrequency,
+                    BandPowerMeter.toDb(power), 100 * power / Math.max(1e-300, bandPowerMeter.totalPower()),
+                    adjacent[0], adjacent[1]));
+            marker.label.setText(String.format("B%d %.1f dB", i + 1, BandPowerMeter.toDb(power)));
+            marker.label.autosize();
+        }
+        analyzer.statisticPanel.showBandPower(bandPowerMeter, readings);
+    }
+
+    // Runs over the visible time range of the processed signal, or of the I/Q recording
+    private void requestZoomSpectrum(double lowFrequency, double highFrequency) {
+        NumberAxis timeXAxis = (NumberAxis) timeChart.getXAxis();
+        double lowerTime = timeXAxis.getLowerBound();
+        double upperTime = timeXAxis.getUpperBound();
+        IqRecording recording = analyzer.iqRecording;
+        AnalysisState state = analyzer.getState();
+        if (recording == null && !state.hasSignal()) return;
+        int channel = recording == null ? Math.min(getPrimaryChannel(), state.channels - 1) : 0;
+
+        statusLabel.setText("Computing zoom spectrum...");
+        spectrumExecutor.submit(() -> {
+            try (PerformanceMonitor.Timer timer = analyzer.performanceMonitor.time("Zoom FFT")) {
+                ZoomSpectrum.Result result;
+                if (recording != null) {
+                    double low = Math.max(lowFrequency, recording.centerFrequency - recording.sampleRate / 2);
+                    double high = Math.min(highFrequency, recording.centerFrequency + recording.sampleRate / 2);
+                    long start = (long) Math.max(0, lowerTime * recording.sampleRate);
+                    long end = (long) Math.min(recording.getSampleCount(), upperTime * recording.sampleRate);
+                    result = ZoomSpectrum.compute(recording::read, start, end, recording.sampleRate,
+                            recording.centerFrequency, 1.0, low, high);
+                } else {
+                    double[] signal = state.isFiltered() ? state.processedSignal[channel] : state.originalSignal[channel];
+                    int start = (int) Math.max(0, Math.min(signal.length, lowerTime * state.sampleRate));
+                    int end = (int) Math.max(start, Math.min(signal.length, upperTime * state.sampleRate));
+                    result = ZoomSpectrum.compute(signal, state.sampleRate, start, end,
+                            Math.max(0, lowFrequency), Math.min(state.sampleRate / 2.0, highFrequency));
+                }
+
+                Platform.runLater(() -> showZoomSpectrum(result));
+            } catch (Exception e) {
+                e.printStackTrace();
+                Platform.runLater(() -> statusLabel.setText("Zoom spectrum failed: " + e.getMessage()));
+            }
+        });
+    }
+
+    private void showZoomSpectrum(ZoomSpectrum.Result result) {
+        clearZoomSpectrum();
+        double[] frequencies = result.spectrum.frequencies;
+        zoomSeries = toSeries(result.spectrum, String.format("Zoom Spectrum (%.3g Hz bins)", result.binWidth));
+        frequencyChart.getData().add(zoomSeries);
+
+        NumberAxis axis = (NumberAxis) frequencyChart.getXAxis();
+        axis.setAutoRanging(false);
+        axis.setLowerBound(frequencies[0]);
+        axis.setUpperBound(frequencies[frequencies.length - 1]);
+        axis.setTickUnit((axis.getUpperBound() - axis.getLowerBound()) / 10);
+        statusLabel.setText("Ready");
+    }
+
+    private void clearZoomSpectrum() {
+        if (zoomSeries == null) return;
+        frequencyChart.getData().remove(zoomSeries);
+        zoomSeries = null;
     }
 
     private void handleChartClick(MouseEvent event) {
@@ -196,6 +593,7 @@ public class DashboardPanel extends VBox {
     }
 
     private void resetChartZoom(LineChart<Number, Number> chart) {
+        if (chart == frequencyChart) clearZoomSpectrum();
         NumberAxis xAxis = (NumberAxis) chart.getXAxis();
         NumberAxis yAxis = (NumberAxis) chart.getYAxis();
         xAxis.setAutoRanging(true);
@@ -207,6 +605,7 @@ public class DashboardPanel extends VBox {
     }
 
     public void resetAllZoom() {
+        clearZoomSpectrum();
         NumberAxis timeXAxis = (NumberAxis) timeChart.getXAxis();
         NumberAxis timeYAxis = (NumberAxis) timeChart.getYAxis();
         NumberAxis freqXAxis = (NumberAxis) frequencyChart.getXAxis();
@@ -224,12 +623,17 @@ public class DashboardPanel extends VBox {
 
     // Main method to update plots with background processing
     public void updatePlots() {
+        if (analyzer.iqRecording != null) {
+            updateIqPlots(analyzer.iqRecording);
+            return;
+        }
         if (processingInProgress) {
-            System.out.println("Processing already in progress, skipping update");
+            updatePending = true;
             return;
         }
 
-        if (analyzer.processedSignal == null) {
+        AnalysisState state = analyzer.getState();
+        if (!state.hasSignal()) {
             System.out.println("processedSignal is null");
             return;
         }
@@ -248,17 +652,14 @@ public class DashboardPanel extends VBox {
             @Override
             protected PlotData call(){
                 updateProgress(0, 100);
-                updateMessage("Preparing time domain data...");
+                updateMessage("Preparing time series, spectra and statistics...");
 
-                // Prepare time domain data
-                PlotData plotData = new PlotData();
-                plotData.prepareTimeDomainData(analyzer);
-                updateProgress(33, 100);
+                TaskGraph graph = new TaskGraph(ForkJoinPool.commonPool(), analyzer.performanceMonitor);
+                graph.setProgressListener((done, total) -> updateProgress(done * 100.0 / total, 100));
 
-                updateMessage("Computing FFT...");
-                // Prepare frequency domain data
-                plotData.prepareFrequencyDomainData(analyzer);
-                updateProgress(66, 100);
+                PlotData plotData = new PlotData();
+                plotData.prepare(state, analyzer.originalDataCache, processedDataCache, segmentSpectrumCache, graph);
+                analyzer.cacheOriginalResults(state);
 
                 updateMessage("Finalizing...");
                 updateProgress(100, 100);
@@ -284,10 +685,13 @@ public class DashboardPanel extends VBox {
         task.setOnSucceeded(e -> {
             PlotData result = task.getValue();
             Platform.runLater(() -> {
-                updateChartsWithData(result);
+                try (PerformanceMonitor.Timer timer = analyzer.performanceMonitor.time("Chart update")) {
+                    updateChartsWithData(result);
+                }
+                analyzer.statisticPanel.showStatistics(result.statistics);
                 progressBar.setVisible(false);
                 statusLabel.setText("Ready");
-                processingInProgress = false;
+                finishUpdate();
             });
         });
 
@@ -295,7 +699,7 @@ public class DashboardPanel extends VBox {
             Platform.runLater(() -> {
                 progressBar.setVisible(false);
                 statusLabel.setText("Error occurred");
-                processingInProgress = false;
+                finishUpdate();
             });
             task.getException().printStackTrace();
         });
@@ -304,199 +708,686 @@ public class DashboardPanel extends VBox {
         executorService.submit(task);
     }
 
-    // Data class to hold prepared plot data
-    private static class PlotData {
-        XYChart.Series<Number, Number> originalTimeSeries;
-        XYChart.Series<Number, Number> currentTimeSeries;
-        XYChart.Series<Number, Number> originalFreqSeries;
-        XYChart.Series<Number, Number> currentFreqSeries;
-
-        void prepareTimeDomainData(SpectrumAnalyzer analyzer) {
-            // Always show original signal if it exists
-            if (analyzer.originalSignal != null && analyzer.originalSignal.length > 0) {
-                originalTimeSeries = new XYChart.Series<>();
-                originalTimeSeries.setName("Original Signal");
+    // I/Q recordings are never loaded; the trace and spectrum read just the samples they need
+    private void updateIqPlots(IqRecording recording) {
+        if (processingInProgress) {
+            updatePending = true;
+            return;
+        }
+        processingInProgress = true;
 
-                double[] signal = analyzer.originalSignal[0];
-                int step = Math.max(1, signal.length / MAX_TIME_POINTS);
+        progressBar.setVisible(true);
+        progressBar.setProgress(ProgressBar.INDETERMINATE_PROGRESS);
+        statusLabel.setText("Reading " + recording.path.getFileName() + "...");
+        analyzer.statisticPanel.showStatistics(null);
 
-                for (int i = 0; i < signal.length; i += step) {
-                    double time = (double) i / analyzer.sampleRate;
-                    originalTimeSeries.getData().add(new XYChart.Data<>(time, signal[i]));
+        Task<PlotData> task = new Task<>() {
+            @Override
+            protected PlotData call() throws Exception {
+                PlotData plotData = new PlotData();
+                // The trace is half the work; the spectrum reads the recording once more
+                try (PerformanceMonitor.Timer timer = analyzer.performanceMonitor.time("Time series")) {
+                    List<XYChart.Series<Number, Number>> trace = decimateIqTrace(recording,
+                            done -> updateProgress(done * 50, 100));
+                    plotData.originalTimeSeries.add(trace.get(0));
+                    plotData.currentTimeSeries.add(trace.get(1));
                 }
+                updateMessage("Computing I/Q spectrum...");
+                try (PerformanceMonitor.Timer timer = analyzer.performanceMonitor.time("FFT")) {
+                    plotData.originalFreqSeries.add(toSeries(segmentSpectrumCache.computeComplexSpectrum(
+                            recording, 0, recording.getSampleCount()), "I/Q Spectrum"));
+                }
+                updateProgress(100, 100);
+                return plotData;
             }
+        };
 
-            // Check if we should show processed signal (if it's different from original)
-            if (analyzer.processedSignal != null && analyzer.processedSignal.length > 0) {
-                boolean filterApplied = analyzer.originalSignal == null ||
-                        arraysEqual(analyzer.originalSignal[0], analyzer.processedSignal[0]);
-
-                if (filterApplied) {
-                    currentTimeSeries = new XYChart.Series<>();
-                    currentTimeSeries.setName("Filtered Signal");
-
-                    double[] signal = analyzer.processedSignal[0];
-                    int step = Math.max(1, signal.length / MAX_TIME_POINTS);
-
-                    for (int i = 0; i < signal.length; i += step) {
-                        double time = (double) i / analyzer.sampleRate;
-                        currentTimeSeries.getData().add(new XYChart.Data<>(time, signal[i]));
-                    }
+        task.progressProperty().addListener((obs, oldProgress, newProgress) -> {
+            Platform.runLater(() -> {
+                if (newProgress.doubleValue() >= 0) {
+                    progressBar.setProgress(newProgress.doubleValue());
+                }
+            });
+        });
+        task.messageProperty().addListener((obs, oldMessage, newMessage) -> {
+            Platform.runLater(() -> statusLabel.setText(newMessage));
+        });
 
-                    // Debug: Check if signals are actually different
-                    System.out.println("Filter applied - signals are different");
-                    System.out.println("Original first 3 values: " + analyzer.originalSignal[0][0] + ", " +
-                            analyzer.originalSignal[0][1] + ", " + analyzer.originalSignal[0][2]);
-                    System.out.println("Processed first 3 values: " + analyzer.processedSignal[0][0] + ", " +
-                            analyzer.processedSignal[0][1] + ", " + analyzer.processedSignal[0][2]);
-                } else {
-                    currentTimeSeries = null;
-                    System.out.println("No filter applied - signals are identical");
+        task.setOnSucceeded(e -> {
+            progressBar.setVisible(false);
+            if (analyzer.iqRecording == recording) {
+                try (PerformanceMonitor.Timer timer = analyzer.performanceMonitor.time("Chart update")) {
+                    updateChartsWithData(task.getValue());
                 }
+                statusLabel.setText("Ready");
             }
-        }
+            finishUpdate();
+        });
+        task.setOnFailed(e -> {
+            progressBar.setVisible(false);
+            if (analyzer.iqRecording == recording) {
+                statusLabel.setText("Error occurred");
+                task.getException().printStackTrace();
+                analyzer.showAlert("Reading I/Q recording failed: " + task.getException().getMessage());
+            }
+            finishUpdate();
+        });
 
-        private boolean arraysEqual(double[] a, double[] b) {
-            if (a == null || b == null) return a != b;
-            if (a.length != b.length) return true;
+        executorService.submit(task);
+    }
+
+    // Ends a refresh on the FX thread and runs the one asked for meanwhile, which sees the newest state
+    private void finishUpdate() {
+        processingInProgress = false;
+        if (updatePending) {
+            updatePending = false;
+            updatePlots();
+        }
+    }
 
-            // Use a more lenient comparison for floating point
-            for (int i = 0; i < Math.min(100, a.length); i++) { // Check first 100 samples for efficiency
-                if (Math.abs(a[i] - b[i]) > 1e-6) {
-                    return true;
+    // {I, Q}, one point per bucket of samples: the sample of largest magnitude, so short bursts still show.
+    // Each bucket is read in blocks rather than sample by sample.
+    private static List<XYChart.Series<Number, Number>> decimateIqTrace(IqRecording recording,
+                                                                        DoubleConsumer progress) throws IOException {
+        long samples = recording.getSampleCount();
+        long step = Math.max(1, samples / MAX_TIME_POINTS);
+        XYChart.Series<Number, Number> iSeries = new XYChart.Series<>();
+        XYChart.Series<Number, Number> qSeries = new XYChart.Series<>();
+        iSeries.setName("I");
+        qSeries.setName("Q");
+
+        int blockSize = (int) Math.min(step, IQ_TRACE_BLOCK);
+        double[] re = new double[blockSize];
+        double[] im = new double[blockSize];
+        for (long bucket = 0; bucket < samples; bucket += step) {
+            long bucketEnd = Math.min(samples, bucket + step);
+            long peakIndex = bucket;
+            double peakPower = -1, peakI = 0, peakQ = 0;
+            for (long block = bucket; block < bucketEnd; block += blockSize) {
+                int count = (int) Math.min(blockSize, bucketEnd - block);
+                recording.read(block, re, im, count);
+                for (int i = 0; i < count; i++) {
+                    double power = re[i] * re[i] + im[i] * im[i];
+                    if (power > peakPower) {
+                        peakPower = power;
+                        peakIndex = block + i;
+                        peakI = re[i];
+                        peakQ = im[i];
+                    }
                 }
             }
-            return false;
+            double time = peakIndex / recording.sampleRate;
+            iSeries.getData().add(new XYChart.Data<>(time, peakI));
+            qSeries.getData().add(new XYChart.Data<>(time, peakQ));
+            progress.accept((double) bucketEnd / samples);
         }
+        return List.of(iSeries, qSeries);
+    }
 
-        void prepareFrequencyDomainData(SpectrumAnalyzer analyzer) {
-            // Always show original spectrum if it exists
-            if (analyzer.originalSignal != null && analyzer.originalSignal.length > 0) {
-                originalFreqSeries = createOptimizedFrequencyDomainSeries(analyzer.originalSignal[0],
-                        analyzer.sampleRate, "Original Spectrum");
-            }
+    // Data class to hold prepared plot data. The lists hold one series per channel; an I/Q recording is
+    // a single channel with I as the original and Q as the current trace. Public so the latency
+    // benchmark can run the same preparation without a window.
+    public static class PlotData {
+        final List<XYChart.Series<Number, Number>> originalTimeSeries = new ArrayList<>();
+        final List<XYChart.Series<Number, Number>> currentTimeSeries = new ArrayList<>(); // Empty while unfiltered
+        final List<XYChart.Series<Number, Number>> originalFreqSeries = new ArrayList<>();
+        final List<XYChart.Series<Number, Number>> currentFreqSeries = new ArrayList<>();
+        AnalysisState state; // Null for I/Q recordings
+        StatisticPanel.StatisticsResult statistics;
+        RangeStatistics rangeStatistics;
+        int sampleRate;
+
+        int channels() {
+            return originalTimeSeries.size();
+        }
 
-            // Check if we should show processed spectrum (if it's different from original)
-            if (analyzer.processedSignal != null && analyzer.processedSignal.length > 0) {
-                boolean filterApplied = analyzer.originalSignal == null ||
-                        arraysEqual(analyzer.originalSignal[0], analyzer.processedSignal[0]);
+        // Every channel's traces and spectra, original and processed, and the statistics are independent
+        // graph nodes; only the statistics depend on the shared mixdowns. Each channel is cached on its own
+        // key, the original per load and the processed per filter run.
+        public void prepare(AnalysisState state, DerivedDataCache originalCache, DerivedDataCache processedCache,
+                            SegmentSpectrumCache cache, TaskGraph graph) {
+            double[][] original = state.originalSignal;
+            double[][] processed = state.processedSignal;
+            int sampleRate = state.sampleRate;
+
+            boolean filterApplied = state.isFiltered();
+
+            List<TaskGraph.Node<XYChart.Series<Number, Number>>> originalTime = new ArrayList<>();
+            List<TaskGraph.Node<XYChart.Series<Number, Number>>> originalFreq = new ArrayList<>();
+            List<TaskGraph.Node<XYChart.Series<Number, Number>>> currentTime = new ArrayList<>();
+            List<TaskGraph.Node<XYChart.Series<Number, Number>>> currentFreq = new ArrayList<>();
+            for (int ch = 0; ch < original.length; ch++) {
+                int channel = ch;
+                String suffix = original.length > 1 ? " Ch " + (ch + 1) : "";
+                originalTime.add(graph.add("Time series",
+                        () -> toTimeSeries(originalCache.getOrCompute(state.originalVersion, "timeTrace" + channel,
+                                () -> decimateTimeTrace(original[channel], sampleRate)), "Original Signal" + suffix)));
+                originalFreq.add(graph.add("FFT",
+                        () -> toSeries(originalCache.getOrCompute(state.originalVersion, "spectrum" + channel,
+                                () -> cache.computeSpectrum(state.originalVersion, channel, original[channel], sampleRate,
+                                        0, original[channel].length)), "Original Spectrum" + suffix)));
 
                 if (filterApplied) {
-                    currentFreqSeries = createOptimizedFrequencyDomainSeries(analyzer.processedSignal[0],
-                            analyzer.sampleRate, "Filtered Spectrum");
-                } else {
-                    currentFreqSeries = null;
+                    currentTime.add(graph.add("Time series",
+                            () -> toTimeSeries(processedCache.getOrCompute(state.processedVersion, "timeTrace" + channel,
+                                    () -> decimateTimeTrace(processed[channel], sampleRate)), "Filtered Signal" + suffix)));
+                    currentFreq.add(graph.add("FFT",
+                            () -> toSeries(processedCache.getOrCompute(state.processedVersion, "spectrum" + channel,
+                                    () -> cache.computeSpectrum(state.processedVersion, channel, processed[channel], sampleRate,
+                                            0, processed[channel].length)), "Filtered Spectrum" + suffix)));
                 }
             }
-        }
-
-        private XYChart.Series<Number, Number> createOptimizedFrequencyDomainSeries(double[] signal, double sampleRate, String seriesName) {
-            // Use smaller FFT size for better performance
-            int fftSize = Math.min(MAX_FFT_SIZE, Integer.highestOneBit(signal.length));
-            if (fftSize < signal.length && fftSize * 2 <= MAX_FFT_SIZE) {
-                fftSize *= 2;
-            }
 
-            double[] chunk = new double[fftSize];
-            System.arraycopy(signal, 0, chunk, 0, Math.min(fftSize, signal.length));
-            Arrays.fill(chunk, Math.min(fftSize, signal.length), fftSize, 0.0);
+            TaskGraph.Node<StatisticPanel.StatisticsResult> statisticsNode =
+                    StatisticPanel.addStatisticsNodes(graph, state, originalCache);
+            TaskGraph.Node<RangeStatistics> rangeNode = graph.add("Range index", () -> filterApplied
+                    ? processedCache.getOrCompute(state.processedVersion, "rangeIndex", () -> RangeStatistics.build(processed))
+                    : originalCache.getOrCompute(state.originalVersion, "rangeIndex", () -> RangeStatistics.build(original)));
+
+            graph.await();
+
+            originalTime.forEach(node -> originalTimeSeries.add(node.get()));
+            originalFreq.forEach(node -> originalFreqSeries.add(node.get()));
+            currentTime.forEach(node -> currentTimeSeries.add(node.get()));
+            currentFreq.forEach(node -> currentFreqSeries.add(node.get()));
+            statistics = statisticsNode.get();
+            rangeStatistics = rangeNode.get();
+            this.state = state;
+            this.sampleRate = sampleRate;
+        }
 
-            // Apply windowing
-            applyHanningWindow(chunk);
+        // {times, values}
+        private static double[][] decimateTimeTrace(double[] signal, int sampleRate) {
+            int step = Math.max(1, signal.length / MAX_TIME_POINTS);
+            int points = (signal.length + step - 1) / step;
 
-            // Compute FFT
-            DiscreteFourier dft = new DiscreteFourier(chunk);
-            dft.transform();
-            double[] magnitude = dft.getMagnitude(true);
+            double[][] trace = new double[2][points];
+            for (int p = 0, i = 0; i < signal.length; p++, i += step) {
+                trace[0][p] = (double) i / sampleRate;
+                trace[1][p] = signal[i];
+            }
+            return trace;
+        }
 
+        private static XYChart.Series<Number, Number> toTimeSeries(double[][] trace, String seriesName) {
             XYChart.Series<Number, Number> series = new XYChart.Series<>();
             series.setName(seriesName);
-
-            // Only positive frequencies with decimation
-            int halfLength = magnitude.length / 2;
-            double freqResolution = sampleRate / magnitude.length;
-            int step = Math.max(1, halfLength / MAX_FREQ_POINTS);
-
-            for (int i = 1; i < halfLength; i += step) {
-                double frequency = i * freqResolution;
-                double magnitudeValue = magnitude[i] / (fftSize / 2.0) / 0.5; // Normalize and correct for windowing
-
-                double magnitudeDb = magnitudeValue > 0 ? 20 * Math.log10(magnitudeValue) : -120;
-                series.getData().add(new XYChart.Data<>(frequency, magnitudeDb));
+            for (int p = 0; p < trace[0].length; p++) {
+                series.getData().add(new XYChart.Data<>(trace[0][p], trace[1][p]));
             }
-
             return series;
         }
+    }
 
-        private void applyHanningWindow(double[] data) {
-            int N = data.length;
-            for (int i = 0; i < N; i++) {
-                double window = 0.5 * (1 - Math.cos(2 * Math.PI * i / (N - 1)));
-                data[i] *= window;
-            }
+    static XYChart.Series<Number, Number> toSeries(SpectrumCalculator.Spectrum spectrum, String seriesName) {
+        XYChart.Series<Number, Number> series = new XYChart.Series<>();
+        series.setName(seriesName);
+        for (int i = 0; i < spectrum.frequencies.length; i++) {
+            series.getData().add(new XYChart.Data<>(spectrum.frequencies[i], spectrum.magnitudesDb[i]));
         }
+        return series;
     }
 
     // Update charts on UI thread with pre-computed data
     private void updateChartsWithData(PlotData plotData) {
-        // Clear existing data
-        timeChart.getData().clear();
-        frequencyChart.getData().clear();
-
-        // Time domain chart - add original first (series0 = orange)
-        if (plotData.originalTimeSeries != null) {
-            timeChart.getData().add(plotData.originalTimeSeries); // series0 (orange)
+        zoomSeries = null;
+        // Tone tracks belong to the signal they were measured on; a new filter run or file drops them
+        ToneTracker.Result toneTracks = analyzer.toneTracks;
+        if (toneTracks == null || plotData.state == null || toneTracks.signalVersion != plotData.state.processedVersion) {
+            analyzer.toneTracks = null;
+            clearToneTracks();
         }
-        // Add filtered second (series1 = blue)
-        if (plotData.currentTimeSeries != null) {
-            timeChart.getData().add(plotData.currentTimeSeries); // series1 (blue)
+        if (persistenceVersion != analyzer.getState().processedVersion) hidePersistence();
+
+        // The response stays with the filtered signal it predicted
+        predictedSeries.clear();
+        long version = plotData.state != null ? plotData.state.processedVersion : -1;
+        if (responseVersion == RESPONSE_PENDING && plotData.state != null && plotData.state.isFiltered()) {
+            responseVersion = version;
+        } else if (responseVersion != version) {
+            clearFilterResponse();
         }
 
-        // Frequency domain chart - same order
-        if (plotData.originalFreqSeries != null) {
-            frequencyChart.getData().add(plotData.originalFreqSeries); // series0 (orange)
+        this.plotData = plotData;
+        updateChannelSelector(plotData.channels());
+        // A new signal restarts the traces
+        clearTraces();
+        showPlotSeries();
+
+        rangeStatistics = plotData.rangeStatistics;
+        rangeStatisticsRate = plotData.sampleRate;
+        requestVisibleSpectrumUpdate();
+        updateRangeStatistics();
+    }
+
+    // Puts the already built series of the visible channels on the charts, original before filtered so
+    // a single channel keeps the orange / blue pair, then comparisons, traces and the zoom spectrum
+    private void showPlotSeries() {
+        timeChart.getData().clear();
+        frequencyChart.getData().clear();
+        if (plotData != null) {
+            for (int ch = 0; ch < plotData.channels(); ch++) {
+                if (hiddenChannels.contains(ch)) continue;
+                timeChart.getData().add(plotData.originalTimeSeries.get(ch));
+                if (ch < plotData.currentTimeSeries.size()) timeChart.getData().add(plotData.currentTimeSeries.get(ch));
+                frequencyChart.getData().add(plotData.originalFreqSeries.get(ch));
+                // A prediction replaces the spectrum of the previous filter
+                if (predictedSeries.containsKey(ch)) frequencyChart.getData().add(predictedSeries.get(ch));
+                else if (ch < plotData.currentFreqSeries.size()) frequencyChart.getData().add(plotData.currentFreqSeries.get(ch));
+            }
         }
-        if (plotData.currentFreqSeries != null) {
-            frequencyChart.getData().add(plotData.currentFreqSeries); // series1 (blue)
+        frequencyChart.getData().addAll(comparisonSeries);
+        frequencyChart.getData().addAll(traceSeries.values());
+        if (zoomSeries != null) frequencyChart.getData().add(zoomSeries);
+
+        // The processed series are the current ones of the plot data, whatever channel suffix they carry
+        Set<XYChart.Series<Number, Number>> processedSeries = new HashSet<>();
+        if (plotData != null) {
+            processedSeries.addAll(plotData.currentTimeSeries);
+            processedSeries.addAll(plotData.currentFreqSeries);
         }
+        Set<String> processedNames = new HashSet<>();
+        processedSeries.forEach(series -> processedNames.add(series.getName()));
 
         Platform.runLater(() -> {
             // Fix line stroke color
             for (XYChart.Series<Number, Number> series : timeChart.getData()) {
-                if ("Filtered Signal".equals(series.getName()) && series.getNode() != null) {
+                if (processedSeries.contains(series) && series.getNode() != null) {
                     series.getNode().setStyle("-fx-stroke: " + PROCESSED_COLOR + " !important;");
                 }
             }
 
             for (XYChart.Series<Number, Number> series : frequencyChart.getData()) {
-                if ("Filtered Spectrum".equals(series.getName()) && series.getNode() != null) {
+                if (processedSeries.contains(series) && series.getNode() != null) {
                     series.getNode().setStyle("-fx-stroke: " + PROCESSED_COLOR + " !important;");
                 }
+                if (series.getName() != null && series.getName().startsWith("Predicted Spectrum") && series.getNode() != null) {
+                    series.getNode().setStyle(PREDICTED_STYLE);
+                }
             }
 
             // Fix legend symbol color
-            for (Node legend : timeChart.lookupAll(".chart-legend-item")) {
-                if (legend instanceof Label label && label.getText().equals("Filtered Signal")) {
-                    Node symbol = label.getGraphic();
-                    if (symbol != null) {
-                        symbol.setStyle("-fx-background-color: " + PROCESSED_COLOR + ", white;");
+            for (Chart chart : List.of(timeChart, frequencyChart)) {
+                for (Node legend : chart.lookupAll(".chart-legend-item")) {
+                    if (legend instanceof Label label && processedNames.contains(label.getText())) {
+                        Node symbol = label.getGraphic();
+                        if (symbol != null) {
+                            symbol.setStyle("-fx-background-color: " + PROCESSED_COLOR + ", white;");
+                        }
                     }
                 }
             }
+        });
+    }
 
-            for (Node legend : frequencyChart.lookupAll(".chart-legend-item")) {
-                if (legend instanceof Label label && label.getText().equals("Filtered Spectrum")) {
-                    Node symbol = label.getGraphic();
-                    if (symbol != null) {
-                        symbol.setStyle("-fx-background-color: " + PROCESSED_COLOR + ", white;");
-                    }
+    // One check box per channel, kept as they are while the channel count stays the same
+    private void updateChannelSelector(int channels) {
+        int shown = channels > 1 ? channels : 0;
+        if (channelSelector.getChildren().size() == shown) return;
+        hiddenChannels.clear();
+        channelSelector.getChildren().clear();
+        for (int ch = 0; ch < shown; ch++) {
+            int channel = ch;
+            CheckBox channelBox = new CheckBox("Ch " + (ch + 1));
+            channelBox.setSelected(true);
+            channelBox.setOnAction(e -> {
+                // The last visible channel stays on
+                if (!channelBox.isSelected() && hiddenChannels.size() == shown - 1) {
+                    channelBox.setSelected(true);
+                    return;
                 }
+                setChannelVisible(channel, channelBox.isSelected());
+            });
+            channelSelector.getChildren().add(channelBox);
+        }
+    }
+
+    // Only moves existing series on and off the charts; the visible-range spectrum of a channel shown
+    // again is mostly answered from its cached segments
+    public void setChannelVisible(int channel, boolean visible) {
+        int primary = getPrimaryChannel();
+        if (visible ? !hiddenChannels.remove(channel) : !hiddenChannels.add(channel)) return;
+        if (getPrimaryChannel() != primary) clearTraces();
+        showPlotSeries();
+        requestVisibleSpectrumUpdate();
+    }
+
+    // First visible channel; traces, band power, zoom spectrum, persistence and distortion follow it
+    public int getPrimaryChannel() {
+        int channels = plotData != null ? plotData.channels() : 1;
+        for (int ch = 0; ch < channels; ch++) {
+            if (!hiddenChannels.contains(ch)) return ch;
+        }
+        return 0;
+    }
+
+    // Cheap enough to run on every bound change while panning
+    private void updateRangeStatistics() {
+        if (rangeStatistics == null) {
+            analyzer.statisticPanel.showRangeStatistics(0, 0, null);
+            return;
+        }
+        NumberAxis timeXAxis = (NumberAxis) timeChart.getXAxis();
+        int start = (int) Math.max(0, Math.min(rangeStatistics.length, timeXAxis.getLowerBound() * rangeStatisticsRate));
+        int end = (int) Math.max(start, Math.min(rangeStatistics.length, timeXAxis.getUpperBound() * rangeStatisticsRate));
+
+        RangeStatistics.Range[] ranges = new RangeStatistics.Range[rangeStatistics.channels];
+        for (int ch = 0; ch < ranges.length; ch++) {
+            ranges[ch] = rangeStatistics.query(ch, start, end);
+        }
+        analyzer.statisticPanel.showRangeStatistics((double) start / rangeStatisticsRate, (double) end / rangeStatisticsRate, ranges);
+    }
+
+    // Coalesces bound changes so at most one visible-range spectrum is computed at a time
+    private void requestVisibleSpectrumUpdate() {
+        if (plotData == null) return;
+        if (analyzer.iqRecording == null && (plotData.state == null || !analyzer.getState().hasSignal())) return;
+
+        visibleSpectrumDirty = true;
+        if (!visibleSpectrumRunning) {
+            runVisibleSpectrumUpdate();
+        }
+    }
+
+    private void runVisibleSpectrumUpdate() {
+        visibleSpectrumDirty = false;
+        visibleSpectrumRunning = true;
+
+        NumberAxis timeXAxis = (NumberAxis) timeChart.getXAxis();
+        double lowerBound = timeXAxis.getLowerBound();
+        double upperBound = timeXAxis.getUpperBound();
+        if (analyzer.iqRecording != null) {
+            runVisibleIqSpectrumUpdate(analyzer.iqRecording, lowerBound, upperBound);
+            return;
+        }
+        PlotData data = plotData;
+        AnalysisState state = data.state;
+        boolean filtered = !data.currentFreqSeries.isEmpty();
+        int sampleRate = state.sampleRate;
+        int length = state.getSampleCount();
+        int primary = getPrimaryChannel();
+        List<Integer> visible = new ArrayList<>();
+        for (int ch = 0; ch < data.channels(); ch++) {
+            if (!hiddenChannels.contains(ch)) visible.add(ch);
+        }
+
+        int startSample = (int) Math.max(0, Math.min(length, lowerBound * sampleRate));
+        int endSample = (int) Math.max(startSample + 1, Math.min(length, upperBound * sampleRate));
+        List<TraceAverager> averagers = new ArrayList<>(traceAveragers.values());
+
+        spectrumExecutor.submit(() -> {
+            try {
+                // Channels are transformed in parallel, each from its own cached segments
+                SpectrumCalculator.Spectrum[] originalSpectra = new SpectrumCalculator.Spectrum[data.channels()];
+                SpectrumCalculator.Spectrum[] processedSpectra = new SpectrumCalculator.Spectrum[data.channels()];
+                visible.parallelStream().forEach(ch -> {
+                    originalSpectra[ch] = segmentSpectrumCache.computeSpectrum(
+                            state.originalVersion, ch, state.originalSignal[ch], sampleRate, startSample, endSample);
+                    if (filtered) {
+                        processedSpectra[ch] = segmentSpectrumCache.computeSpectrum(
+                                state.processedVersion, ch, state.processedSignal[ch], sampleRate, startSample, endSample);
+                    }
+                });
+                Map<TraceAverager.Mode, SpectrumCalculator.Spectrum> traces =
+                        updateTraces(averagers, filtered ? processedSpectra[primary] : originalSpectra[primary]);
+                // Shares the segment powers the spectra above just cached
+                BandPowerMeter meter = filtered
+                        ? segmentSpectrumCache.computeBandPower(state.processedVersion, primary,
+                                state.processedSignal[primary], sampleRate, startSample, endSample)
+                        : segmentSpectrumCache.computeBandPower(state.originalVersion, primary,
+                                state.originalSignal[primary], sampleRate, startSample, endSample);
+
+                Platform.runLater(() -> {
+                    // setAll keeps the series nodes, so the trace colours stay as they are
+                    for (int ch : visible) {
+                        XYChart.Series<Number, Number> originalTarget = data.originalFreqSeries.get(ch);
+                        originalTarget.getData().setAll(toSeries(originalSpectra[ch], originalTarget.getName()).getData());
+                        if (filtered) {
+                            XYChart.Series<Number, Number> currentTarget = data.currentFreqSeries.get(ch);
+                            currentTarget.getData().setAll(toSeries(processedSpectra[ch], currentTarget.getName()).getData());
+                        }
+                    }
+                    showTraces(traces);
+                    bandPowerMeter = meter;
+                    updateBandReadings();
+                    frequencyChart.setTitle(String.format("Frequency Domain (%.2f s - %.2f s)",
+                            (double) startSample / sampleRate, (double) endSample / sampleRate));
+                    finishVisibleSpectrumUpdate();
+                });
+            } catch (Exception e) {
+                e.printStackTrace();
+                Platform.runLater(this::finishVisibleSpectrumUpdate);
             }
         });
+    }
+
+    private void runVisibleIqSpectrumUpdate(IqRecording recording, double lowerBound, double upperBound) {
+        XYChart.Series<Number, Number> target = plotData.originalFreqSeries.get(0);
+        long startSample = (long) Math.max(0, Math.min(recording.getSampleCount(), lowerBound * recording.sampleRate));
+        long endSample = (long) Math.max(startSample + 1, Math.min(recording.getSampleCount(), upperBound * recording.sampleRate));
+
+        List<TraceAverager> averagers = new ArrayList<>(traceAveragers.values());
+
+        spectrumExecutor.submit(() -> {
+            try {
+                SpectrumCalculator.Spectrum spectrum = segmentSpectrumCache.computeComplexSpectrum(recording, startSample, endSample);
+                Map<TraceAverager.Mode, SpectrumCalculator.Spectrum> traces = updateTraces(averagers, spectrum);
+                BandPowerMeter meter = segmentSpectrumCache.computeComplexBandPower(recording, startSample, endSample);
+                Platform.runLater(() -> {
+                    target.getData().setAll(toSeries(spectrum, target.getName()).getData());
+                    showTraces(traces);
+                    bandPowerMeter = meter;
+                    updateBandReadings();
+                    frequencyChart.setTitle(String.format("Frequency Domain (%.2f s - %.2f s)",
+                            startSample / recording.sampleRate, endSample / recording.sampleRate));
+                    finishVisibleSpectrumUpdate();
+                });
+            } catch (Exception e) {
+                e.printStackTrace();
+                Platform.runLater(this::finishVisibleSpectrumUpdate);
+            }
+        });
+    }
+
+    // Runs on the spectrum thread, so frames reach the accumulators in order
+    private static Map<TraceAverager.Mode, SpectrumCalculator.Spectrum> updateTraces(List<TraceAverager> averagers,
+                                                                                     SpectrumCalculator.Spectrum frame) {
+        Map<TraceAverager.Mode, SpectrumCalculator.Spectrum> traces = new EnumMap<>(TraceAverager.Mode.class);
+        for (TraceAverager averager : averagers) {
+            traces.put(averager.mode, averager.update(frame));
+        }
+        return traces;
+    }
+
+    private void showTraces(Map<TraceAverager.Mode, SpectrumCalculator.Spectrum> traces) {
+        traces.forEach((mode, trace) -> {
+            XYChart.Series<Number, Number> series = traceSeries.get(mode);
+            if (series != null) series.getData().setAll(toSeries(trace, series.getName()).getData());
+        });
+    }
+
+    public void setTraceMode(TraceAverager.Mode mode, boolean enabled) {
+        if (enabled == traceAveragers.containsKey(mode)) return;
+        if (enabled) {
+            traceAveragers.put(mode, new TraceAverager(mode, traceAverageCount));
+            XYChart.Series<Number, Number> series = new XYChart.Series<>();
+            series.setName(mode.label);
+            traceSeries.put(mode, series);
+            frequencyChart.getData().add(series);
+            requestVisibleSpectrumUpdate();
+        } else {
+            traceAveragers.remove(mode);
+            frequencyChart.getData().remove(traceSeries.remove(mode));
+        }
+    }
+
+    public void setTraceAverageCount(int averageCount) {
+        traceAverageCount = averageCount;
+        traceAveragers.values().forEach(averager -> averager.setAverageCount(averageCount));
+    }
+
+    // Starts every trace over from the next frame
+    public void clearTraces() {
+        traceAveragers.values().forEach(TraceAverager::reset);
+        traceSeries.values().forEach(series -> series.getData().clear());
+    }
+
+    private void finishVisibleSpectrumUpdate() {
+        visibleSpectrumRunning = false;
+        if (visibleSpectrumDirty) {
+            requestVisibleSpectrumUpdate();
+        }
+    }
+
+    public void addComparisonTrace(String name, SpectrumCalculator.Spectrum spectrum) {
+        XYChart.Series<Number, Number> series = toSeries(spectrum, name);
+        comparisonSeries.add(series);
+        frequencyChart.getData().add(series);
+    }
+
+    public void clearComparisonTraces() {
+        frequencyChart.getData().removeAll(comparisonSeries);
+        comparisonSeries.clear();
+    }
+
+    // One series per tone and channel, thinned out like the time trace
+    public void showToneTracks(ToneTracker.Result result) {
+        toneChart.getData().clear();
+        int step = Math.max(1, result.times.length / MAX_TIME_POINTS);
+        boolean multiChannel = result.tracks.stream().anyMatch(track -> track.channel > 0);
+        for (ToneTracker.Track track : result.tracks) {
+            XYChart.Series<Number, Number> series = new XYChart.Series<>();
+            series.setName(String.format("%.6g Hz", track.frequency) + (multiChannel ? " ch" + (track.channel + 1) : ""));
+            for (int b = 0; b < result.times.length; b += step) {
+                series.getData().add(new XYChart.Data<>(result.times[b], track.amplitudesDb[b]));
+            }
+            toneChart.getData().add(series);
+        }
+        showChartMode(showTimeChart, showFrequencyChart);
+    }
+
+    public void clearToneTracks() {
+        if (toneChart.getData().isEmpty()) return;
+        toneChart.getData().clear();
+        showChartMode(showTimeChart, showFrequencyChart);
+    }
 
+    // Shows the design's response and, from the original spectra already computed, the spectrum it
+    // should produce; both come from the filter coefficients, so they appear before the filter has run
+    public void showFilterPreview(String filterType, double cutoff, double lowCutoff, double highCutoff, int order, double ripple) {
+        AnalysisState state = analyzer.getState();
+        if (!state.hasSignal() || plotData == null) return;
+
+        try (PerformanceMonitor.Timer timer = analyzer.performanceMonitor.time("Filter preview")) {
+            FilterResponse response = FilterResponse.overRange(filterType, state.sampleRate, cutoff, lowCutoff, highCutoff,
+                    order, ripple, RESPONSE_POINTS);
+            if (response == null) return;
+            showFilterResponse(response, filterType);
+            responseVersion = RESPONSE_PENDING;
+
+            predictedSeries.clear();
+            SpectrumCalculator.Spectrum[] predicted = FilterResponse.predict(state, analyzer.originalDataCache, filterType,
+                    cutoff, lowCutoff, highCutoff, order, ripple);
+            for (int ch = 0; ch < predicted.length; ch++) {
+                if (predicted[ch] == null) continue;
+                predictedSeries.put(ch, toSeries(predicted[ch],
+                        "Predicted Spectrum" + (state.channels > 1 ? " Ch " + (ch + 1) : "")));
+            }
+            showPlotSeries();
+        } catch (IllegalArgumentException e) {
+            // Invalid band edges; the filter run itself reports them
+        }
+    }
+
+    private void showFilterResponse(FilterResponse response, String filterType) {
+        XYChart.Series<Number, Number> magnitude = new XYChart.Series<>();
+        magnitude.setName("Magnitude (dB)");
+        XYChart.Series<Number, Number> phase = new XYChart.Series<>();
+        phase.setName("Phase (°)");
+        for (int i = 0; i < response.frequencies.length; i++) {
+            magnitude.getData().add(new XYChart.Data<>(response.frequencies[i], Math.max(RESPONSE_FLOOR_DB, response.magnitudesDb[i])));
+            phase.getData().add(new XYChart.Data<>(response.frequencies[i], response.phaseDegrees[i]));
+        }
+        responseChart.getData().setAll(List.of(magnitude, phase));
+        responseChart.setTitle("Filter Response: " + filterType);
+        showChartMode(showTimeChart, showFrequencyChart);
+    }
+
+    // Takes back the preview of a filter run that failed or was dropped
+    public void cancelFilterPreview() {
+        if (responseVersion != RESPONSE_PENDING) return;
+        predictedSeries.clear();
+        clearFilterResponse();
+        showPlotSeries();
+    }
+
+    public void clearFilterResponse() {
+        responseVersion = -1;
+        if (responseChart.getData().isEmpty()) return;
+        responseChart.getData().clear();
+        showChartMode(showTimeChart, showFrequencyChart);
+    }
+
+    // Accumulates every FFT frame of the displayed signal into a level / frequency histogram
+    public void requestPersistence(double retention) {
+        AnalysisState state = analyzer.getState();
+        if (!state.hasSignal()) {
+            analyzer.showAlert("Persistence needs a loaded audio file");
+            return;
+        }
+        int channel = Math.min(getPrimaryChannel(), state.channels - 1);
+        double[] signal = state.isFiltered() ? state.processedSignal[channel] : state.originalSignal[channel];
+
+        progressBar.setVisible(true);
+        progressBar.setProgress(ProgressBar.INDETERMINATE_PROGRESS);
+        statusLabel.setText("Accumulating persistence...");
+        executorService.submit(() -> {
+            try (PerformanceMonitor.Timer timer = analyzer.performanceMonitor.time("Persistence")) {
+                // 120 dB of range below the peak, rounded to 10 dB
+                double maxLevel = Math.ceil((SignalStatistics.toDb(SignalStatistics.calculatePeak(signal)) + 6) / 10) * 10;
+                PersistenceHistogram histogram = new PersistenceHistogram(PersistenceHistogram.DEFAULT_FFT_SIZE,
+                        PersistenceHistogram.DEFAULT_LEVEL_ROWS, state.sampleRate, maxLevel - 120, maxLevel, retention);
+                histogram.accumulate(signal, 0, signal.length);
+
+                int[] pixels = new int[histogram.columns * histogram.rows];
+                histogram.render(pixels);
+                Platform.runLater(() -> {
+                    WritableImage image = new WritableImage(histogram.columns, histogram.rows);
+                    image.getPixelWriter().setPixels(0, 0, histogram.columns, histogram.rows,
+                            PixelFormat.getIntArgbInstance(), pixels, 0, histogram.columns);
+                    showPersistence(image, histogram, channel, state.processedVersion);
+                    progressBar.setVisible(false);
+                    statusLabel.setText("Ready");
+                });
+            } catch (Exception e) {
+                e.printStackTrace();
+                Platform.runLater(() -> {
+                    progressBar.setVisible(false);
+                    statusLabel.setText("Error occurred");
+                    analyzer.showAlert("Persistence failed: " + e.getMessage());
+                });
+            }
+        });
+    }
+
+    private void showPersistence(WritableImage image, PersistenceHistogram histogram, int channel, long version) {
+        persistenceView.setImage(image);
+        persistenceVersion = version;
+        persistenceTitle.setText(String.format("Persistence (Ch %d): 0 - %.0f Hz, %.0f - %.0f dB, %d frames",
+                channel + 1, histogram.maxFrequency, histogram.minLevelDb, histogram.maxLevelDb, histogram.getFrameCount()));
+        showChartMode(showTimeChart, showFrequencyChart);
+    }
+
+    public void hidePersistence() {
+        if (persistenceView.getImage() == null) return;
+        persistenceView.setImage(null);
+        persistenceVersion = -1;
+        showChartMode(showTimeChart, showFrequencyChart);
     }
 
     public void showChartMode(boolean showTime, boolean showFrequency) {
+        showTimeChart = showTime;
+        showFrequencyChart = showFrequency;
         getChildren().clear();
         if (showTime) {
             VBox.setVgrow(timeChart, Priority.ALWAYS);
@@ -511,6 +1402,18 @@ public class DashboardPanel extends VBox {
             frequencyChart.setMaxSize(Double.MAX_VALUE, Double.MAX_VALUE);
             getChildren().add(frequencyChart);
         }
+
+        if (!responseChart.getData().isEmpty()) {
+            getChildren().add(responseChart);
+        }
+
+        if (!toneChart.getData().isEmpty()) {
+            getChildren().add(toneChart);
+        }
+
+        if (persistenceView.getImage() != null) {
+            getChildren().add(persistencePane);
+        }
     }
 
 }
\ No newline at end of file
@@ -2,7 +2,9 @@ package com.spectrumanalyzer.panels;
 
 import com.github.psambit9791.jdsp.io.WAV;
 import com.github.psambit9791.wavfile.WavFileException;
+import com.spectrumanalyzer.IqRecording;
 import com.spectrumanalyzer.SpectrumAnalyzer;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.*;
@@ -12,11 +14,18 @@ import javafx.stage.FileChooser;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
 public class HomePanel extends VBox {
     private SpectrumAnalyzer analyzer;
     private Label fileLabel;
     private Button openButton;
+    private Button openIqButton;
+    private Button compareButton;
+    private Button clearCompareButton;
+    private Label compareLabel;
+    private int compareTotal;
+    private int compareDone;
 
     public HomePanel(SpectrumAnalyzer analyzer) {
         this.analyzer = analyzer;
@@ -53,7 +62,22 @@ public class HomePanel extends VBox {
         openButton.setStyle("-fx-background-color: #38ab03; -fx-text-fill: white; -fx-font-size: 14px; -fx-padding: 8px 16px;");
         openButton.setOnAction(e -> openFile());
 
-        VBox buttonBox = new VBox(12, openButton);
+        openIqButton = new Button("Open I/Q Recording");
+        openIqButton.setStyle("-fx-background-color: #38ab03; -fx-text-fill: white; -fx-font-size: 14px; -fx-padding: 8px 16px;");
+        openIqButton.setOnAction(e -> openIqFile());
+
+        compareButton = new Button("Compare WAV Files");
+        compareButton.setStyle("-fx-background-color: #0373ab; -fx-text-fill: white; -fx-font-size: 14px; -fx-padding: 8px 16px;");
+        compareButton.setOnAction(e -> compareFiles());
+
+        clearCompareButton = new Button("Clear Comparison");
+        clearCompareButton.setStyle("-fx-background-color: #e37a09; -fx-text-fill: white; -fx-font-size: 14px; -fx-padding: 8px 16px;");
+        clearCompareButton.setOnAction(e -> clearComparison());
+
+        compareLabel = new Label();
+        compareLabel.setStyle("-fx-font-size: 13px; -fx-text-fill: #bbbbbb;");
+
+        VBox buttonBox = new VBox(12, openButton, openIqButton, compareButton, clearCompareButton, compareLabel);
         buttonBox.setAlignment(Pos.CENTER);
 
         // Spacer below content
@@ -71,7 +95,7 @@ public class HomePanel extends VBox {
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Select WAV File");
         fileChooser.getExtensionFilters().add(
-                new FileChooser.ExtensionFilter("WAV Files", "*.wav")
+                new FileChooser.ExtensionFilter("WAV Files", "*.wav", "*.rf64", "*.bw64", "*.w64")
         );
 
         File selectedFile = fileChooser.showOpenDialog(getScene().getWindow());
@@ -81,4 +105,94 @@ public class HomePanel extends VBox {
         }
     }
 
+    private void openIqFile() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Select I/Q Recording");
+        fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("Raw I/Q Files", "*.iq", "*.raw", "*.bin", "*.cs8", "*.cs16", "*.cf32"),
+                new FileChooser.ExtensionFilter("All Files", "*.*")
+        );
+
+        File selectedFile = fileChooser.showOpenDialog(getScene().getWindow());
+        if (selectedFile == null) return;
+
+        // Raw captures carry no header, so the format comes from the user
+        ComboBox<IqRecording.SampleFormat> formatBox = new ComboBox<>();
+        formatBox.getItems().addAll(IqRecording.SampleFormat.values());
+        formatBox.setValue(guessIqFormat(selectedFile.getName()));
+        TextField sampleRateField = new TextField("2400000");
+        TextField centerFrequencyField = new TextField("100000000");
+
+        GridPane grid = new GridPane();
+        grid.setHgap(10);
+        grid.setVgap(10);
+        grid.addRow(0, new Label("Sample format:"), formatBox);
+        grid.addRow(1, new Label("Sample rate (Hz):"), sampleRateField);
+        grid.addRow(2, new Label("Center frequency (Hz):"), centerFrequencyField);
+
+        Dialog<ButtonType> dialog = new Dialog<>();
+        dialog.setTitle("I/Q Recording");
+        dialog.setHeaderText(selectedFile.getName());
+        dialog.getDialogPane().setContent(grid);
+        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+        if (dialog.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK) return;
+
+        try {
+            double sampleRate = Double.parseDouble(sampleRateField.getText().trim());
+            double centerFrequency = Double.parseDouble(centerFrequencyField.getText().trim());
+            fileLabel.setText("Selected: " + selectedFile.getName() + " (I/Q)");
+            analyzer.loadIqRecording(selectedFile.toPath(), formatBox.getValue(), sampleRate, centerFrequency);
+        } catch (NumberFormatException e) {
+            analyzer.showAlert("Invalid sample rate or center frequency");
+        }
+    }
+
+    private static IqRecording.SampleFormat guessIqFormat(String name) {
+        String lower = name.toLowerCase();
+        if (lower.endsWith(".cs8")) return IqRecording.SampleFormat.INT8;
+        if (lower.endsWith(".cf32")) return IqRecording.SampleFormat.FLOAT32;
+        return IqRecording.SampleFormat.INT16;
+    }
+
+    private void compareFiles() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Select WAV Files to Compare");
+        fileChooser.getExtensionFilters().add(
+                new FileChooser.ExtensionFilter("WAV Files", "*.wav", "*.rf64", "*.bw64", "*.w64")
+        );
+
+        List<File> selectedFiles = fileChooser.showOpenMultipleDialog(getScene().getWindow());
+        if (selectedFiles == null || selectedFiles.isEmpty()) return;
+
+        compareTotal += selectedFiles.size();
+        updateCompareLabel();
+
+        // Each file decodes on its own virtual thread; traces show up as they finish
+        analyzer.comparisonLoader.load(selectedFiles,
+                result -> Platform.runLater(() -> {
+                    analyzer.dashboardPanel.addComparisonTrace(result.name, result.spectrum);
+                    analyzer.statisticPanel.addComparisonResult(result);
+                    compareDone++;
+                    updateCompareLabel();
+                }),
+                (file, error) -> Platform.runLater(() -> {
+                    System.err.println("Failed to analyze " + file + ": " + error.getMessage());
+                    compareDone++;
+                    updateCompareLabel();
+                }));
+    }
+
+    private void clearComparison() {
+        analyzer.comparisonLoader.cancelPending();
+        analyzer.dashboardPanel.clearComparisonTraces();
+        analyzer.statisticPanel.clearComparisonResults();
+        compareTotal = 0;
+        compareDone = 0;
+        compareLabel.setText("");
+    }
+
+    private void updateCompareLabel() {
+        compareLabel.setText("Compared: " + compareDone + "/" + compareTotal);
+    }
+
 }
@@ -0,0 +1,75 @@
+package com.spectrumanalyzer.panels;
+
+import com.spectrumanalyzer.LatencyHistogram;
+import com.spectrumanalyzer.PerformanceMonitor;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.layout.StackPane;
+import javafx.scene.layout.VBox;
+import javafx.util.Duration;
+
+import java.util.Map;
+
+public final class PerformanceOverlay extends VBox {
+    private final PerformanceMonitor monitor;
+    private final Label textLabel;
+    private final Timeline refreshTimeline;
+
+    public PerformanceOverlay(PerformanceMonitor monitor) {
+        this.monitor = monitor;
+
+        textLabel = new Label();
+        textLabel.setStyle("-fx-font-family: monospace; -fx-font-size: 12px; -fx-text-fill: #00FF7F;");
+
+        getChildren().add(textLabel);
+        setPadding(new Insets(8));
+        setMaxSize(USE_PREF_SIZE, USE_PREF_SIZE);
+        setStyle("-fx-background-color: rgba(0, 0, 0, 0.7); -fx-background-radius: 5px;");
+        setMouseTransparent(true);
+        StackPane.setAlignment(this, Pos.TOP_RIGHT);
+        StackPane.setMargin(this, new Insets(10));
+
+        refreshTimeline = new Timeline(new KeyFrame(Duration.millis(500), e -> refresh()));
+        refreshTimeline.setCycleCount(Timeline.INDEFINITE);
+
+        setVisible(false);
+        visibleProperty().addListener((obs, wasVisible, isVisible) -> {
+            if (isVisible) {
+                refresh();
+                refreshTimeline.play();
+            } else {
+                refreshTimeline.stop();
+            }
+        });
+    }
+
+    public void toggle() {
+        setVisible(!isVisible());
+    }
+
+    private void refresh() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%-16s %8s %8s %8s%n", "Stage", "last ms", "p50 ms", "p99 ms"));
+
+        for (Map.Entry<String, LatencyHistogram> entry : monitor.getStages().entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            text.append(String.format("%-16s %8.1f %8.1f %8.1f%n", entry.getKey(),
+                    histogram.getLastMillis(),
+                    histogram.getPercentileMillis(50),
+                    histogram.getPercentileMillis(99)));
+        }
+
+        text.append(String.format("%nAllocation      %8.1f MB/s%n", monitor.getAllocationRateMBPerSecond()));
+        text.append(String.format("FX pulse        %8.1f ms (p99 %.1f)%n",
+                monitor.getPulseIntervals().getMeanMillis(),
+                monitor.getPulseIntervals().getPercentileMillis(99)));
+        text.append(String.format("FX layout       %8.1f ms (p99 %.1f)",
+                monitor.getLayoutPasses().getMeanMillis(),
+                monitor.getLayoutPasses().getPercentileMillis(99)));
+
+        textLabel.setText(text.toString());
+    }
+}
@@ -1,17 +1,30 @@
 package com.spectrumanalyzer.panels;
 
+import com.spectrumanalyzer.AnalysisState;
+import com.spectrumanalyzer.BandPowerMeter;
+import com.spectrumanalyzer.ComparisonLoader.ComparisonResult;
+import com.spectrumanalyzer.DerivedDataCache;
+import com.spectrumanalyzer.DistortionAnalyzer;
+import com.spectrumanalyzer.PerformanceMonitor;
+import com.spectrumanalyzer.RangeStatistics;
+import com.spectrumanalyzer.SignalStatistics;
 import com.spectrumanalyzer.SpectrumAnalyzer;
+import com.spectrumanalyzer.SpectrumCalculator;
+import com.spectrumanalyzer.SpectrumCalculator.FrequencyPeak;
+import com.spectrumanalyzer.TaskGraph;
+import javafx.application.Platform;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.scene.chart.*;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
+import javafx.stage.FileChooser;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.util.*;
-import org.apache.commons.math3.complex.Complex;
-import org.apache.commons.math3.transform.FastFourierTransformer;
-import org.apache.commons.math3.transform.DftNormalization;
-import org.apache.commons.math3.transform.TransformType;
+import java.util.concurrent.ForkJoinPool;
 
 public class StatisticPanel extends VBox {
     private SpectrumAnalyzer spectrumAnalyzer;
@@ -40,6 +53,26 @@ public class StatisticPanel extends VBox {
     private Label frequenciesTitleLabel;
     private VBox frequenciesContainer;
 
+    // Distortion figures over time
+    private Label distortionTitleLabel;
+    private Label distortionSummaryLabel;
+    private LineChart<Number, Number> distortionChart;
+    private Button measureDistortionButton;
+    private Button exportDistortionButton;
+    private DistortionAnalyzer.Result distortionResult;
+
+    // Band markers on the frequency chart
+    private Label bandTitleLabel;
+    private VBox bandContainer;
+
+    // Visible time range of the time chart
+    private Label rangeTitleLabel;
+    private VBox rangeContainer;
+
+    // Compared files
+    private Label comparisonTitleLabel;
+    private VBox comparisonContainer;
+
     public StatisticPanel(SpectrumAnalyzer spectrumAnalyzer) {
         this.spectrumAnalyzer = spectrumAnalyzer;
 
@@ -93,6 +126,51 @@ public class StatisticPanel extends VBox {
 
         frequenciesContainer = new VBox();
         frequenciesContainer.setSpacing(3);
+
+        // Distortion Section
+        distortionTitleLabel = new Label("Distortion");
+        distortionTitleLabel.setStyle("-fx-font-size: 18px; -fx-font-weight: bold; -fx-text-fill: #7FFFD4;");
+        distortionSummaryLabel = new Label("Not measured");
+        distortionSummaryLabel.setStyle("-fx-text-fill: #E0E0E0; -fx-font-size: 12px;");
+        distortionSummaryLabel.setWrapText(true);
+
+        NumberAxis distortionXAxis = new NumberAxis();
+        NumberAxis distortionYAxis = new NumberAxis();
+        distortionXAxis.setLabel("Time (s)");
+        distortionYAxis.setLabel("dB");
+        distortionChart = new LineChart<>(distortionXAxis, distortionYAxis);
+        distortionChart.setCreateSymbols(false);
+        distortionChart.setAnimated(false);
+        distortionChart.setPrefHeight(250);
+        distortionChart.setVisible(false);
+        distortionChart.setManaged(false);
+
+        measureDistortionButton = new Button("Measure Distortion");
+        measureDistortionButton.setOnAction(e -> measureDistortion());
+        exportDistortionButton = new Button("Export Distortion CSV");
+        exportDistortionButton.setDisable(true);
+        exportDistortionButton.setOnAction(e -> exportDistortion());
+
+        // Band Power Section
+        bandTitleLabel = new Label("Band Power");
+        bandTitleLabel.setStyle("-fx-font-size: 18px; -fx-font-weight: bold; -fx-text-fill: #e37a09;");
+
+        bandContainer = new VBox();
+        bandContainer.setSpacing(3);
+
+        // Visible Range Section
+        rangeTitleLabel = new Label("Visible Range");
+        rangeTitleLabel.setStyle("-fx-font-size: 18px; -fx-font-weight: bold; -fx-text-fill: #DA70D6;");
+
+        rangeContainer = new VBox();
+        rangeContainer.setSpacing(3);
+
+        // Compared Files Section
+        comparisonTitleLabel = new Label("Compared Files");
+        comparisonTitleLabel.setStyle("-fx-font-size: 18px; -fx-font-weight: bold; -fx-text-fill: #FFD700;");
+
+        comparisonContainer = new VBox();
+        comparisonContainer.setSpacing(3);
     }
 
 
@@ -128,6 +206,20 @@ public class StatisticPanel extends VBox {
                 frequenciesTitleLabel,
                 frequenciesContainer,
                 makeSeparator(),
+                rangeTitleLabel,
+                rangeContainer,
+                makeSeparator(),
+                bandTitleLabel,
+                bandContainer,
+                makeSeparator(),
+                distortionTitleLabel,
+                distortionSummaryLabel,
+                distortionChart,
+                new HBox(10, measureDistortionButton, exportDistortionButton),
+                makeSeparator(),
+                comparisonTitleLabel,
+                comparisonContainer,
+                makeSeparator(),
                 updateStatisticsButton
         );
     }
@@ -150,81 +242,130 @@ public class StatisticPanel extends VBox {
         return separator;
     }
 
-    public void refreshData() {
-        updateOriginalSignalStats();
-        updateFilteredSignalStats();
-        updateTopFrequencies();
+    // Computed off the FX thread and handed to showStatistics
+    public static class StatisticsResult {
+        public final SignalStatistics.Summary original;
+        public final SignalStatistics.Summary filtered;
+        public final List<FrequencyPeak> topFrequencies;
+
+        public StatisticsResult(SignalStatistics.Summary original, SignalStatistics.Summary filtered,
+                                List<FrequencyPeak> topFrequencies) {
+            this.original = original;
+            this.filtered = filtered;
+            this.topFrequencies = topFrequencies;
+        }
     }
 
-    private void updateOriginalSignalStats() {
-        if (spectrumAnalyzer.originalSignal == null || spectrumAnalyzer.originalSignal.length == 0) {
-            clearOriginalStats();
-            return;
+    public static class BandReading {
+        public final String name;
+        public final double lowFrequency;
+        public final double highFrequency;
+        public final double powerDb;
+        public final double percentOfTotal;
+        public final double lowerAdjacentDb; // Adjacent channel power ratios
+        public final double upperAdjacentDb;
+
+        public BandReading(String name, double lowFrequency, double highFrequency, double powerDb, double percentOfTotal,
+                           double lowerAdjacentDb, double upperAdjacentDb) {
+            this.name = name;
+            this.lowFrequency = lowFrequency;
+            this.highFrequency = highFrequency;
+            this.powerDb = powerDb;
+            this.percentOfTotal = percentOfTotal;
+            this.lowerAdjacentDb = lowerAdjacentDb;
+            this.upperAdjacentDb = upperAdjacentDb;
         }
+    }
 
-        // Basic info
-        originalChannelsLabel.setText("Channels: " + spectrumAnalyzer.channels);
-        originalSampleRateLabel.setText("Sample Rate: " + spectrumAnalyzer.sampleRate + " Hz");
-
-        int samples = spectrumAnalyzer.originalSignal[0].length;
-        double duration = (double) samples / spectrumAnalyzer.sampleRate;
-        originalDurationLabel.setText(String.format("Duration: %.2f seconds", duration));
+    // Original statistics are cached for the lifetime of the loaded file. The processed mixdown is a
+    // separate node so the level and top-frequency nodes share it.
+    public static TaskGraph.Node<StatisticsResult> addStatisticsNodes(TaskGraph graph, AnalysisState state,
+                                                                      DerivedDataCache originalCache) {
+        double[][] original = state.originalSignal;
+        double[][] processed = state.processedSignal;
+        int sampleRate = state.sampleRate;
+
+        TaskGraph.Node<StatisticsResult> originalStatistics = graph.add("Statistics",
+                () -> originalCache.getOrCompute(state.originalVersion, "statistics", () -> {
+                    double[] mixedSignal = SignalStatistics.getMixedDownSignal(original);
+                    SignalStatistics.Summary summary = SignalStatistics.summarize(original, mixedSignal, sampleRate);
+                    return new StatisticsResult(summary, summary,
+                            SpectrumCalculator.findTopFrequencies(mixedSignal, sampleRate, 5));
+                }));
+
+        // Nothing filtered yet, the processed side is the original
+        if (!state.isFiltered()) return originalStatistics;
+
+        TaskGraph.Node<double[]> processedMix = graph.add("Mixdown", () -> SignalStatistics.getMixedDownSignal(processed));
+        TaskGraph.Node<SignalStatistics.Summary> filteredSummary = graph.add("Statistics",
+                () -> SignalStatistics.summarize(processed, processedMix.get(), sampleRate), processedMix);
+        TaskGraph.Node<List<FrequencyPeak>> topFrequencies = graph.add("Top frequencies",
+                () -> SpectrumCalculator.findTopFrequencies(processedMix.get(), sampleRate, 5), processedMix);
+
+        return graph.add("Statistics result",
+                () -> new StatisticsResult(originalStatistics.get().original, filteredSummary.get(), topFrequencies.get()),
+                originalStatistics, filteredSummary, topFrequencies);
+    }
 
-        // Audio statistics
-        double[] mixedSignal = getMixedDownSignal(spectrumAnalyzer.originalSignal);
-        double rms = calculateRMS(mixedSignal);
-        double peak = Arrays.stream(mixedSignal).map(Math::abs).max().orElse(0.0);
+    public void refreshData() {
+        AnalysisState state = spectrumAnalyzer.getState();
+        if (!state.hasSignal()) {
+            showStatistics(null);
+            return;
+        }
 
-        double rmsDb = 20 * Math.log10(Math.abs(rms) + 1e-10);
-        double peakDb = 20 * Math.log10(peak + 1e-10);
+        TaskGraph graph = new TaskGraph(ForkJoinPool.commonPool(), spectrumAnalyzer.performanceMonitor);
+        TaskGraph.Node<StatisticsResult> result = addStatisticsNodes(graph, state, spectrumAnalyzer.originalDataCache);
 
-        originalRMSLabel.setText(String.format("RMS Level: %.2f dB", rmsDb));
-        originalPeakLabel.setText(String.format("Peak Level: %.2f dB", peakDb));
+        updateStatisticsButton.setDisable(true);
+        graph.completion().whenComplete((ignored, error) -> Platform.runLater(() -> {
+            updateStatisticsButton.setDisable(false);
+            if (error != null) {
+                error.printStackTrace();
+                return;
+            }
+            showStatistics(result.get());
+        }));
     }
 
-    private void updateFilteredSignalStats() {
-        if (spectrumAnalyzer.processedSignal == null || spectrumAnalyzer.processedSignal.length == 0) {
+    public void showStatistics(StatisticsResult result) {
+        // Distortion figures only describe the signal they were measured on
+        if (distortionResult != null && distortionResult.signalVersion != spectrumAnalyzer.getState().processedVersion) {
+            showDistortion(null);
+        }
+        if (result == null) {
+            clearOriginalStats();
             clearFilteredStats();
+            showTopFrequencies(null);
             return;
         }
 
-        // Basic info (same as original for channels and sample rate)
-        filteredChannelsLabel.setText("Channels: " + spectrumAnalyzer.channels);
-        filteredSampleRateLabel.setText("Sample Rate: " + spectrumAnalyzer.sampleRate + " Hz");
-
-        int samples = spectrumAnalyzer.processedSignal[0].length;
-        double duration = (double) samples / spectrumAnalyzer.sampleRate;
-        filteredDurationLabel.setText(String.format("Duration: %.2f seconds", duration));
-
-        // Audio statistics
-        double[] mixedSignal = getMixedDownSignal(spectrumAnalyzer.processedSignal);
-        double rms = calculateRMS(mixedSignal);
-        double peak = Arrays.stream(mixedSignal).map(Math::abs).max().orElse(0.0);
-
-        double rmsDb = 20 * Math.log10(Math.abs(rms) + 1e-10);
-        double peakDb = 20 * Math.log10(peak + 1e-10);
+        showSummary(result.original, originalChannelsLabel, originalSampleRateLabel, originalDurationLabel,
+                originalRMSLabel, originalPeakLabel);
+        showSummary(result.filtered, filteredChannelsLabel, filteredSampleRateLabel, filteredDurationLabel,
+                filteredRMSLabel, filteredPeakLabel);
+        showTopFrequencies(result.topFrequencies);
+    }
 
-        filteredRMSLabel.setText(String.format("RMS Level: %.2f dB", rmsDb));
-        filteredPeakLabel.setText(String.format("Peak Level: %.2f dB", peakDb));
+    private void showSummary(SignalStatistics.Summary summary, Label channelsLabel, Label sampleRateLabel,
+                             Label durationLabel, Label rmsLabel, Label peakLabel) {
+        channelsLabel.setText("Channels: " + summary.channels);
+        sampleRateLabel.setText("Sample Rate: " + summary.sampleRate + " Hz");
+        durationLabel.setText(String.format("Duration: %.2f seconds", summary.duration));
+        rmsLabel.setText(String.format("RMS Level: %.2f dB", summary.rmsDb));
+        peakLabel.setText(String.format("Peak Level: %.2f dB", summary.peakDb));
     }
 
-    private void updateTopFrequencies() {
+    private void showTopFrequencies(List<FrequencyPeak> topFrequencies) {
         frequenciesContainer.getChildren().clear();
 
-        // Use processed signal if available, otherwise original
-        double[][] signalToAnalyze = (spectrumAnalyzer.processedSignal != null && spectrumAnalyzer.processedSignal.length > 0)
-                ? spectrumAnalyzer.processedSignal
-                : spectrumAnalyzer.originalSignal;
-
-        if (signalToAnalyze == null || signalToAnalyze.length == 0) {
+        if (topFrequencies == null) {
             Label noDataLabel = new Label("No signal data available");
             noDataLabel.setStyle("-fx-text-fill: #888888; -fx-font-size: 12px;");
             frequenciesContainer.getChildren().add(noDataLabel);
             return;
         }
 
-        List<FrequencyPeak> topFrequencies = findTopFrequencies(signalToAnalyze);
-
         for (int i = 0; i < topFrequencies.size(); i++) {
             FrequencyPeak peak = topFrequencies.get(i);
             Label freqLabel = new Label(String.format("%d. %.1f Hz (%.2f dB)",
@@ -234,107 +375,178 @@ public class StatisticPanel extends VBox {
         }
     }
 
-    private void clearOriginalStats() {
-        originalChannelsLabel.setText("Channels: N/A");
-        originalSampleRateLabel.setText("Sample Rate: N/A");
-        originalDurationLabel.setText("Duration: N/A");
-        originalRMSLabel.setText("RMS Level: N/A");
-        originalPeakLabel.setText("Peak Level: N/A");
-    }
+    // THD, SNR and the rest for every frame of the processed signal's primary channel
+    private void measureDistortion() {
+        AnalysisState state = spectrumAnalyzer.getState();
+        if (!state.hasSignal()) {
+            spectrumAnalyzer.showAlert("Please load an audio file first");
+            return;
+        }
+        int channel = Math.min(spectrumAnalyzer.dashboardPanel.getPrimaryChannel(), state.channels - 1);
+        if (state.processedSignal[channel].length < DistortionAnalyzer.DEFAULT_FRAME_SIZE) {
+            spectrumAnalyzer.showAlert("Signal is shorter than one analysis frame");
+            return;
+        }
 
-    private void clearFilteredStats() {
-        filteredChannelsLabel.setText("Channels: N/A");
-        filteredSampleRateLabel.setText("Sample Rate: N/A");
-        filteredDurationLabel.setText("Duration: N/A");
-        filteredRMSLabel.setText("RMS Level: N/A");
-        filteredPeakLabel.setText("Peak Level: N/A");
+        measureDistortionButton.setDisable(true);
+        distortionSummaryLabel.setText("Measuring...");
+        Thread.ofPlatform().name("Distortion").daemon().start(() -> {
+            try (PerformanceMonitor.Timer timer = spectrumAnalyzer.performanceMonitor.time("Distortion")) {
+                DistortionAnalyzer.Result result = new DistortionAnalyzer(DistortionAnalyzer.DEFAULT_FRAME_SIZE, state.sampleRate)
+                        .analyze(state.processedSignal[channel], state.processedVersion);
+                Platform.runLater(() -> {
+                    measureDistortionButton.setDisable(false);
+                    if (spectrumAnalyzer.getState().processedVersion == state.processedVersion) showDistortion(result);
+                });
+            } catch (Exception e) {
+                e.printStackTrace();
+                Platform.runLater(() -> {
+                    measureDistortionButton.setDisable(false);
+                    distortionSummaryLabel.setText("Measurement failed: " + e.getMessage());
+                });
+            }
+        });
     }
 
-    private double[] getMixedDownSignal(double[][] signal) {
-        int sampleCount = signal[0].length;
-        double[] monoSignal = new double[sampleCount];
-
-        for (int i = 0; i < sampleCount; i++) {
-            double sum = 0;
-            for (int ch = 0; ch < signal.length; ch++) {
-                sum += signal[ch][i];
-            }
-            monoSignal[i] = sum / signal.length;
+    private void showDistortion(DistortionAnalyzer.Result result) {
+        distortionResult = result;
+        distortionChart.getData().clear();
+        distortionChart.setVisible(result != null);
+        distortionChart.setManaged(result != null);
+        exportDistortionButton.setDisable(result == null);
+        if (result == null) {
+            distortionSummaryLabel.setText("Not measured");
+            return;
         }
 
-        return monoSignal;
+        distortionSummaryLabel.setText(String.format(
+                "Mean over %d frames: fundamental %.1f Hz at %.2f dB, THD %.2f dB, THD+N %.2f dB, SNR %.2f dB, SINAD %.2f dB, SFDR %.2f dB",
+                result.times.length, DistortionAnalyzer.Result.mean(result.fundamentalHz),
+                DistortionAnalyzer.Result.mean(result.fundamentalDb), DistortionAnalyzer.Result.mean(result.thdDb),
+                DistortionAnalyzer.Result.mean(result.thdPlusNoiseDb), DistortionAnalyzer.Result.mean(result.snrDb),
+                DistortionAnalyzer.Result.mean(result.sinadDb), DistortionAnalyzer.Result.mean(result.sfdrDb)));
+
+        distortionChart.getData().add(toDistortionSeries("THD", result.times, result.thdDb));
+        distortionChart.getData().add(toDistortionSeries("THD+N", result.times, result.thdPlusNoiseDb));
+        distortionChart.getData().add(toDistortionSeries("SNR", result.times, result.snrDb));
+        distortionChart.getData().add(toDistortionSeries("SINAD", result.times, result.sinadDb));
+        distortionChart.getData().add(toDistortionSeries("SFDR", result.times, result.sfdrDb));
     }
 
-    private double calculateRMS(double[] samples) {
-        double sum = 0;
-        for (double sample : samples) {
-            sum += sample * sample;
+    // Silent frames have no fundamental and are left out
+    private static XYChart.Series<Number, Number> toDistortionSeries(String name, double[] times, double[] values) {
+        XYChart.Series<Number, Number> series = new XYChart.Series<>();
+        series.setName(name);
+        int step = Math.max(1, times.length / 1000);
+        for (int i = 0; i < times.length; i += step) {
+            if (!Double.isNaN(values[i])) series.getData().add(new XYChart.Data<>(times[i], values[i]));
         }
-        return Math.sqrt(sum / samples.length);
+        return series;
     }
 
-    private void applyHanningWindow(double[] data) {
-        int N = data.length;
-        for (int i = 0; i < N; i++) {
-            double window = 0.5 * (1 - Math.cos(2 * Math.PI * i / (N - 1)));
-            data[i] *= window;
+    private void exportDistortion() {
+        if (distortionResult == null) return;
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Export Distortion Measurements");
+        fileChooser.setInitialFileName("distortion.csv");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV Files (*.csv)", "*.csv"));
+        File file = fileChooser.showSaveDialog(getScene().getWindow());
+        if (file == null) return;
+
+        DistortionAnalyzer.Result result = distortionResult;
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write("Time_s,Fundamental_Hz,Fundamental_dB,THD_dB,THD_N_dB,SNR_dB,SINAD_dB,SFDR_dB\n");
+            for (int i = 0; i < result.times.length; i++) {
+                writer.write(String.format("%.4f", result.times[i]));
+                for (double[] series : new double[][]{result.fundamentalHz, result.fundamentalDb, result.thdDb,
+                        result.thdPlusNoiseDb, result.snrDb, result.sinadDb, result.sfdrDb}) {
+                    // Silent frames are left empty
+                    writer.write("," + (Double.isNaN(series[i]) ? "" : String.format("%.3f", series[i])));
+                }
+                writer.write("\n");
+            }
+        } catch (IOException e) {
+            spectrumAnalyzer.showAlert("Failed to export distortion measurements: " + e.getMessage());
         }
     }
 
-    private List<FrequencyPeak> findTopFrequencies(double[][] signal) {
-        double[] monoSignal = getMixedDownSignal(signal);
-
-        // Use power-of-2 frame size for FFT
-        int frameSize = 4096;
-        double overlapRatio = 0.5;
-        int hopSize = (int) (frameSize * (1 - overlapRatio));
+    // Called while band markers are dragged, so it only formats numbers already computed
+    public void showBandPower(BandPowerMeter meter, List<BandReading> readings) {
+        bandContainer.getChildren().clear();
+        if (meter == null) return;
 
-        FastFourierTransformer fft = new FastFourierTransformer(DftNormalization.STANDARD);
-
-        // Accumulate magnitudes across all frames
-        double[] totalMagnitudes = new double[frameSize / 2];
-        int numFrames = 0;
-
-        for (int start = 0; start + frameSize <= monoSignal.length; start += hopSize) {
-            double[] frame = Arrays.copyOfRange(monoSignal, start, start + frameSize);
-            applyHanningWindow(frame);
-
-            Complex[] fftResult = fft.transform(frame, TransformType.FORWARD);
-
-            for (int i = 1; i < frameSize / 2; i++) { // Skip DC component
-                totalMagnitudes[i] += fftResult[i].abs();
-            }
-            numFrames++;
+        double[] occupied = meter.occupiedBandwidth(0.99);
+        addBandLabel(String.format("Total %.2f dB, 99%% occupied bandwidth %.1f Hz (%.1f - %.1f Hz)",
+                BandPowerMeter.toDb(meter.totalPower()), occupied[1] - occupied[0], occupied[0], occupied[1]));
+        if (readings.isEmpty()) {
+            addBandLabel("Shift+drag on the spectrum to add a band");
         }
+        for (BandReading reading : readings) {
+            addBandLabel(String.format("%s %.1f - %.1f Hz: %.2f dB (%.1f%%), ACPR %.1f / %.1f dB",
+                    reading.name, reading.lowFrequency, reading.highFrequency, reading.powerDb, reading.percentOfTotal,
+                    reading.lowerAdjacentDb, reading.upperAdjacentDb));
+        }
+    }
 
-        // Average and find peaks
-        List<FrequencyPeak> peaks = new ArrayList<>();
-        double freqPerBin = (double) spectrumAnalyzer.sampleRate / frameSize;
+    private void addBandLabel(String text) {
+        Label label = new Label(text);
+        label.setStyle("-fx-text-fill: #E0E0E0; -fx-font-size: 12px;");
+        label.setWrapText(true);
+        bandContainer.getChildren().add(label);
+    }
 
-        for (int i = 1; i < totalMagnitudes.length; i++) {
-            if (numFrames > 0) {
-                totalMagnitudes[i] /= numFrames;
-            }
+    // Called on every pan and zoom of the time chart, so the labels are reused where possible
+    public void showRangeStatistics(double startTime, double endTime, RangeStatistics.Range[] ranges) {
+        if (ranges == null) {
+            rangeTitleLabel.setText("Visible Range");
+            rangeContainer.getChildren().clear();
+            return;
+        }
 
-            double frequency = i * freqPerBin;
-            double magnitudeDb = 20 * Math.log10(totalMagnitudes[i] + 1e-10);
+        rangeTitleLabel.setText(String.format("Visible Range (%.3f s - %.3f s)", startTime, endTime));
+        while (rangeContainer.getChildren().size() > ranges.length) {
+            rangeContainer.getChildren().remove(rangeContainer.getChildren().size() - 1);
+        }
+        while (rangeContainer.getChildren().size() < ranges.length) {
+            Label label = new Label();
+            label.setStyle("-fx-text-fill: #E0E0E0; -fx-font-size: 12px;");
+            rangeContainer.getChildren().add(label);
+        }
 
-            peaks.add(new FrequencyPeak(frequency, magnitudeDb));
+        for (int ch = 0; ch < ranges.length; ch++) {
+            RangeStatistics.Range range = ranges[ch];
+            ((Label) rangeContainer.getChildren().get(ch)).setText(String.format(
+                    "Ch %d: RMS %.2f dB, Peak %.2f dB, DC %.4g, Min %.4g, Max %.4g",
+                    ch + 1, SignalStatistics.toDb(range.rms), SignalStatistics.toDb(range.peak()),
+                    range.mean, range.min, range.max));
         }
+    }
 
-        // Sort by magnitude and return top 5
-        peaks.sort((a, b) -> Double.compare(b.magnitude, a.magnitude));
-        return peaks.subList(0, Math.min(5, peaks.size()));
+    public void addComparisonResult(ComparisonResult result) {
+        Label resultLabel = new Label(String.format("%s: %d ch, %d Hz, %.2f s, RMS %.2f dB, Peak %.2f dB",
+                result.name, result.channels, result.sampleRate, result.duration, result.rmsDb, result.peakDb));
+        resultLabel.setStyle("-fx-text-fill: #E0E0E0; -fx-font-size: 12px;");
+        resultLabel.setWrapText(true);
+        comparisonContainer.getChildren().add(resultLabel);
     }
 
-    // Helper class for frequency peaks
-    private static class FrequencyPeak {
-        public final double frequency;
-        public final double magnitude;
+    public void clearComparisonResults() {
+        comparisonContainer.getChildren().clear();
+    }
 
-        public FrequencyPeak(double frequency, double magnitude) {
-            this.frequency = frequency;
-            this.magnitude = magnitude;
-        }
+    private void clearOriginalStats() {
+        originalChannelsLabel.setText("Channels: N/A");
+        originalSampleRateLabel.setText("Sample Rate: N/A");
+        originalDurationLabel.setText("Duration: N/A");
+        originalRMSLabel.setText("RMS Level: N/A");
+        originalPeakLabel.setText("Peak Level: N/A");
+    }
+
+    private void clearFilteredStats() {
+        filteredChannelsLabel.setText("Channels: N/A");
+        filteredSampleRateLabel.setText("Sample Rate: N/A");
+        filteredDurationLabel.setText("Duration: N/A");
+        filteredRMSLabel.setText("RMS Level: N/A");
+        filteredPeakLabel.setText("Peak Level: N/A");
     }
-}
\ No newline at end of file
+}
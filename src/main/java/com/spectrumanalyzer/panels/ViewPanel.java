@@ -1,6 +1,9 @@
 package com.spectrumanalyzer.panels;
 
+import com.spectrumanalyzer.AnalysisState;
 import com.spectrumanalyzer.SpectrumAnalyzer;
+import com.spectrumanalyzer.ToneTracker;
+import com.spectrumanalyzer.TraceAverager;
 import javafx.application.Application;
 import javafx.geometry.Insets;
 import javafx.scene.control.*;
@@ -21,6 +24,9 @@ public class ViewPanel extends VBox {
     private Button exportButton;
     private Slider zoomSlider;
     private RadioButton viewTimeDomainButton, viewFrequencyDomainButton, viewBothDomainButton;
+    private CheckBox performanceOverlayBox;
+    private TextField traceAverageCountField;
+    private TextField persistenceRetentionField;
 
     public ViewPanel(SpectrumAnalyzer analyzer) {
         this.analyzer = analyzer;
@@ -74,22 +80,101 @@ public class ViewPanel extends VBox {
         viewFrequencyDomainButton.setOnMouseClicked(e -> analyzer.dashboardPanel.showChartMode(false, true));
         viewBothDomainButton.setOnMouseClicked(e -> analyzer.dashboardPanel.showChartMode(true, true));
 
+        performanceOverlayBox = new CheckBox("Show performance overlay (F3)");
+        performanceOverlayBox.selectedProperty().bindBidirectional(analyzer.performanceOverlay.visibleProperty());
+
+        VBox traceBox = createTraceBox();
+        VBox persistenceBox = createPersistenceBox();
+
+        // Markers are added with shift+drag on the frequency chart
+        Button clearBandsButton = new Button("Clear Band Markers");
+        clearBandsButton.setMaxWidth(Double.MAX_VALUE);
+        clearBandsButton.setTooltip(new Tooltip("Shift+drag on the spectrum adds a band, right click removes one"));
+        clearBandsButton.setOnAction(e -> analyzer.dashboardPanel.clearBandMarkers());
+
         getChildren().addAll(
                 titleLabel,
                 new Label("Horizontal Zoom"),
                 analyzer.dashboardPanel.horizontalZoomSlider,
                 new Label("Horizontal Movement"),
                 analyzer.dashboardPanel.horizontalMoveSlider,
+                new Label("Channels"),
+                analyzer.dashboardPanel.channelSelector,
                 resetViewsButton,
                 viewBothDomainButton,
                 viewTimeDomainButton,
                 viewFrequencyDomainButton,
-                exportButton // Added export button here
+                traceBox,
+                persistenceBox,
+                clearBandsButton,
+                exportButton, // Added export button here
+                performanceOverlayBox
         );
     }
 
+    // Averaged and held traces overlaid on the frequency chart, any number at once
+    private VBox createTraceBox() {
+        VBox traceBox = new VBox(5);
+        traceBox.getChildren().add(new Label("Trace Modes"));
+        for (TraceAverager.Mode mode : TraceAverager.Mode.values()) {
+            CheckBox modeBox = new CheckBox(mode.label);
+            modeBox.selectedProperty().addListener((obs, wasSelected, isSelected) ->
+                    analyzer.dashboardPanel.setTraceMode(mode, isSelected));
+            traceBox.getChildren().add(modeBox);
+        }
+
+        traceAverageCountField = new TextField("10");
+        traceAverageCountField.setPrefWidth(85);
+        traceAverageCountField.setOnAction(e -> applyTraceAverageCount());
+        traceAverageCountField.focusedProperty().addListener((obs, wasFocused, isFocused) -> {
+            if (!isFocused) applyTraceAverageCount();
+        });
+
+        Button clearTracesButton = new Button("Clear Traces");
+        clearTracesButton.setMaxWidth(Double.MAX_VALUE);
+        clearTracesButton.setOnAction(e -> analyzer.dashboardPanel.clearTraces());
+
+        traceBox.getChildren().addAll(new Label("Exponential average count"), traceAverageCountField, clearTracesButton);
+        return traceBox;
+    }
+
+    private VBox createPersistenceBox() {
+        persistenceRetentionField = new TextField("1.0");
+        persistenceRetentionField.setPrefWidth(85);
+        persistenceRetentionField.setTooltip(new Tooltip("Weight kept per newer frame; 1 keeps every frame, 0.999 fades old ones"));
+
+        Button showButton = new Button("Show Persistence");
+        showButton.setMaxWidth(Double.MAX_VALUE);
+        showButton.setOnAction(e -> {
+            try {
+                double retention = Double.parseDouble(persistenceRetentionField.getText().trim());
+                if (retention <= 0 || retention > 1) throw new NumberFormatException();
+                analyzer.dashboardPanel.requestPersistence(retention);
+            } catch (NumberFormatException ex) {
+                analyzer.showAlert("Persistence decay must be in (0, 1]");
+            }
+        });
+
+        Button hideButton = new Button("Hide Persistence");
+        hideButton.setMaxWidth(Double.MAX_VALUE);
+        hideButton.setOnAction(e -> analyzer.dashboardPanel.hidePersistence());
+
+        return new VBox(5, new Label("Persistence decay per frame"), persistenceRetentionField, showButton, hideButton);
+    }
+
+    private void applyTraceAverageCount() {
+        try {
+            int count = Integer.parseInt(traceAverageCountField.getText().trim());
+            if (count < 1) throw new NumberFormatException();
+            analyzer.dashboardPanel.setTraceAverageCount(count);
+        } catch (NumberFormatException e) {
+            traceAverageCountField.setText("10");
+            analyzer.dashboardPanel.setTraceAverageCount(10);
+        }
+    }
+
     private void exportSignalData() {
-        if (analyzer.processedSignal == null) {
+        if (!analyzer.getState().hasSignal()) {
             showAlert("No Data", "No processed signal data available to export.");
             return;
         }
@@ -123,41 +208,48 @@ public class ViewPanel extends VBox {
 
     private void exportToFile(File file) throws IOException {
         String separator = file.getName().toLowerCase().endsWith(".csv") ? "," : "\t";
+        AnalysisState state = analyzer.getState();
 
         try (FileWriter writer = new FileWriter(file)) {
             // Write header with metadata
             writer.write("# Spectrum Analyzer Signal Export\n");
             writer.write("# Export Date: " + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()) + "\n");
-            writer.write("# Sample Rate: " + analyzer.sampleRate + " Hz\n");
-            writer.write("# Channels: " + analyzer.channels + "\n");
+            writer.write("# Sample Rate: " + state.sampleRate + " Hz\n");
+            writer.write("# Channels: " + state.channels + "\n");
 
-            if (analyzer.audioProperties != null && !analyzer.audioProperties.isEmpty()) {
+            if (state.audioProperties != null && !state.audioProperties.isEmpty()) {
                 writer.write("# Audio Properties:\n");
-                for (String key : analyzer.audioProperties.keySet()) {
-                    writer.write("# " + key + ": " + analyzer.audioProperties.get(key) + "\n");
+                for (String key : state.audioProperties.keySet()) {
+                    writer.write("# " + key + ": " + state.audioProperties.get(key) + "\n");
                 }
             }
+
+            // Tone tracks go in the header too, so the sample table below stays a plain table
+            ToneTracker.Result toneTracks = analyzer.toneTracks;
+            if (toneTracks != null && toneTracks.signalVersion == state.processedVersion) {
+                writeToneTracks(writer, toneTracks, separator);
+            }
             writer.write("#\n");
 
             // Write column headers
-            if (analyzer.channels == 1) {
+            if (state.channels == 1) {
                 writer.write("Sample_Index" + separator + "Amplitude\n");
             } else {
                 writer.write("Sample_Index");
-                for (int ch = 0; ch < analyzer.channels; ch++) {
+                for (int ch = 0; ch < state.channels; ch++) {
                     writer.write(separator + "Channel_" + (ch + 1));
                 }
                 writer.write("\n");
             }
 
             // Write data
-            double[][] data = analyzer.processedSignal;
+            double[][] data = state.processedSignal;
             int samples = data[0].length;
 
             for (int i = 0; i < samples; i++) {
                 writer.write(String.valueOf(i)); // Sample index
 
-                for (int ch = 0; ch < analyzer.channels && ch < data.length; ch++) {
+                for (int ch = 0; ch < state.channels && ch < data.length; ch++) {
                     writer.write(separator + String.format("%.6f", data[ch][i]));
                 }
                 writer.write("\n");
@@ -170,6 +262,25 @@ public class ViewPanel extends VBox {
         }
     }
 
+    private void writeToneTracks(FileWriter writer, ToneTracker.Result result, String separator) throws IOException {
+        writer.write(String.format("# Tone Tracks (%.0f ms blocks):%n", result.blockSeconds * 1000));
+        writer.write("# Time_s");
+        for (ToneTracker.Track track : result.tracks) {
+            String name = String.format("%.6gHz_Ch%d", track.frequency, track.channel + 1);
+            writer.write(separator + name + "_dB" + separator + name + "_Phase_deg");
+        }
+        writer.write("\n");
+
+        for (int b = 0; b < result.times.length; b++) {
+            writer.write(String.format("# %.4f", result.times[b]));
+            for (ToneTracker.Track track : result.tracks) {
+                writer.write(separator + String.format("%.2f", track.amplitudesDb[b])
+                        + separator + String.format("%.1f", track.phasesDeg[b]));
+            }
+            writer.write("\n");
+        }
+    }
+
     private void showAlert(String title, String message) {
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
         alert.setTitle(title);
@@ -2,9 +2,14 @@ module com.spectrumanalyzer {
     requires javafx.controls;
     requires javafx.fxml;
     requires com.github.psambit9791.jdsp;
+    requires iirj;
     requires atlantafx.base;
     requires wavfile;
     requires commons.math3;
+    requires java.management;
+    requires jdk.management;
+    requires jdk.jfr;
+    requires jdk.httpserver;
 
 
     opens com.spectrumanalyzer to javafx.fxml;
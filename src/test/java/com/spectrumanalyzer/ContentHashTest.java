@@ -0,0 +1,38 @@
+package com.spectrumanalyzer;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class ContentHashTest {
+    // Reference XXH64 values, seed 0; the last input is long enough for the 32 byte stripes
+    @Test
+    void matchesReferenceValues() {
+        assertEquals(0xef46db3751d8e999L, ContentHash.xxHash64(""));
+        assertEquals(0x44bc2cf5ad770999L, ContentHash.xxHash64("abc"));
+        assertEquals(0xfbcea83c8a378bf1L, ContentHash.xxHash64("Nobody inspects the spammish repetition"));
+    }
+
+    @Test
+    void hashesTheRemainingBytesInPlace() {
+        byte[] text = "Nobody inspects the spammish repetition".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(text.length + 7).position(7).put(text).position(7);
+
+        assertEquals(ContentHash.xxHash64("Nobody inspects the spammish repetition"), ContentHash.xxHash64(buffer, 0));
+        assertEquals(7, buffer.position());
+        // The byte order of the caller's buffer does not matter
+        assertEquals(ContentHash.xxHash64(buffer, 0), ContentHash.xxHash64(buffer.order(ByteOrder.BIG_ENDIAN), 0));
+    }
+
+    @Test
+    void seedAndOrderChangeTheHash() {
+        long[] values = {1, 2, 3, 4, 5};
+        assertNotEquals(ContentHash.xxHash64(values, 0), ContentHash.xxHash64(values, 1));
+        assertNotEquals(ContentHash.xxHash64(values, 0), ContentHash.xxHash64(new long[]{2, 1, 3, 4, 5}, 0));
+    }
+}
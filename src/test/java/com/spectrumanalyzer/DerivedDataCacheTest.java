@@ -0,0 +1,82 @@
+package com.spectrumanalyzer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DerivedDataCacheTest {
+    // Derived values are built from other derived values, as the statistics are from the mixdown. The
+    // inner key lands in the outer key's bin of a fresh ConcurrentHashMap, where a computation running
+    // under the map's lock could not add it.
+    @Test
+    void suppliersMayReadTheCache() {
+        DerivedDataCache cache = new DerivedDataCache();
+        for (int version = 0; version < 8; version++) {
+            String outer = "spectrum" + version;
+            String inner = sameBin(outer);
+            int expected = version;
+            int value = cache.getOrCompute(version, outer, () -> cache.getOrCompute(expected, inner, () -> expected) + 1);
+            assertEquals(expected + 1, value);
+            assertEquals(Integer.valueOf(expected), cache.get(version, inner));
+        }
+    }
+
+    // Another key in the same of 16 bins, the size a new ConcurrentHashMap starts with
+    private static String sameBin(String key) {
+        for (int i = 0; ; i++) {
+            String candidate = "mixdown" + i;
+            if (bin(candidate) == bin(key)) return candidate;
+        }
+    }
+
+    private static int bin(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & 15;
+    }
+
+    @Test
+    void concurrentCallersComputeOnce() throws Exception {
+        DerivedDataCache cache = new DerivedDataCache();
+        AtomicInteger computed = new AtomicInteger();
+        CountDownLatch waiting = new CountDownLatch(1);
+        try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+            Future<Integer> first = executor.submit(() -> cache.getOrCompute(1, "spectrum0", () -> {
+                computed.incrementAndGet();
+                try {
+                    waiting.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return 42;
+            }));
+            while (computed.get() == 0) Thread.onSpinWait();
+            assertNull(cache.get(1, "spectrum0"));
+
+            Future<Integer> second = executor.submit(() -> cache.getOrCompute(1, "spectrum0", computed::incrementAndGet));
+            waiting.countDown();
+            assertEquals(42, first.get());
+            assertEquals(42, second.get());
+        }
+        assertEquals(1, computed.get());
+    }
+
+    @Test
+    void failuresAreNotKept() {
+        DerivedDataCache cache = new DerivedDataCache();
+        assertThrows(IllegalStateException.class, () -> cache.getOrCompute(1, "statistics", () -> {
+            throw new IllegalStateException("failed");
+        }));
+        assertNull(cache.get(1, "statistics"));
+        assertEquals("computed", cache.getOrCompute(1, "statistics", () -> "computed"));
+        // Another version starts empty
+        assertNull(cache.get(2, "statistics"));
+    }
+}
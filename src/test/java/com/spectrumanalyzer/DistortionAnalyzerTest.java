@@ -0,0 +1,88 @@
+package com.spectrumanalyzer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Distortion figures of a tone with harmonics and spurs at known levels
+class DistortionAnalyzerTest {
+    private static final int SAMPLE_RATE = 48000;
+    private static final int FRAME = DistortionAnalyzer.DEFAULT_FRAME_SIZE;
+    private static final double BIN = (double) SAMPLE_RATE / FRAME;
+    private static final double FUNDAMENTAL = 1000; // Between bins, as real tones are
+
+    // Lobe sums against the exact component powers; the noise floor sits far below every figure
+    private static final double FIGURE_TOLERANCE_DB = 0.05;
+
+    private static double amplitude(double dbc) {
+        return Math.pow(10, dbc / 20);
+    }
+
+    private static double powerRatio(double dbc) {
+        return Math.pow(10, dbc / 10);
+    }
+
+    private static DistortionAnalyzer.Result analyze(double[] signal) {
+        return new DistortionAnalyzer(FRAME, SAMPLE_RATE).analyze(signal, 1);
+    }
+
+    @Test
+    void harmonicsAndSpurAtKnownLevels() {
+        double[] signal = SignalGenerator.tone(4 * FRAME, SAMPLE_RATE, FUNDAMENTAL, 1);
+        SignalGenerator.addTone(signal, 0, SAMPLE_RATE, 2 * FUNDAMENTAL, amplitude(-60), 0.3);
+        SignalGenerator.addTone(signal, 0, SAMPLE_RATE, 3 * FUNDAMENTAL, amplitude(-70), 1.1);
+        SignalGenerator.addTone(signal, 0, SAMPLE_RATE, 7300, amplitude(-50), 2.0); // Not a harmonic
+        SignalGenerator.addNoise(signal, 0, 1e-6, 9);
+
+        DistortionAnalyzer.Result result = analyze(signal);
+        double harmonics = powerRatio(-60) + powerRatio(-70);
+        double distortion = harmonics + powerRatio(-50);
+
+        assertEquals(4, result.times.length);
+        assertEquals(FUNDAMENTAL, DistortionAnalyzer.Result.mean(result.fundamentalHz), BIN / 20);
+        assertEquals(SignalStatistics.toDb(Math.sqrt(0.5)), DistortionAnalyzer.Result.mean(result.fundamentalDb),
+                FIGURE_TOLERANCE_DB);
+        assertEquals(10 * Math.log10(harmonics), DistortionAnalyzer.Result.mean(result.thdDb), FIGURE_TOLERANCE_DB);
+        assertEquals(10 * Math.log10(distortion), DistortionAnalyzer.Result.mean(result.thdPlusNoiseDb),
+                FIGURE_TOLERANCE_DB);
+        assertEquals(-10 * Math.log10(distortion), DistortionAnalyzer.Result.mean(result.sinadDb), FIGURE_TOLERANCE_DB);
+        // The spur is not a harmonic, so it counts as noise
+        assertEquals(50, DistortionAnalyzer.Result.mean(result.snrDb), FIGURE_TOLERANCE_DB);
+        assertEquals(50, DistortionAnalyzer.Result.mean(result.sfdrDb), FIGURE_TOLERANCE_DB);
+    }
+
+    @Test
+    void sfdrTakesTheStrongestSpur() {
+        double[] signal = SignalGenerator.tone(2 * FRAME, SAMPLE_RATE, FUNDAMENTAL, 0.5);
+        SignalGenerator.addTone(signal, 0, SAMPLE_RATE, 2 * FUNDAMENTAL, 0.5 * amplitude(-80), 0);
+        SignalGenerator.addTone(signal, 0, SAMPLE_RATE, 3 * FUNDAMENTAL, 0.5 * amplitude(-65), 0);
+        SignalGenerator.addTone(signal, 0, SAMPLE_RATE, 11000, 0.5 * amplitude(-72), 0);
+
+        DistortionAnalyzer.Result result = analyze(signal);
+        assertEquals(65, DistortionAnalyzer.Result.mean(result.sfdrDb), FIGURE_TOLERANCE_DB);
+        assertEquals(10 * Math.log10(powerRatio(-80) + powerRatio(-65)), DistortionAnalyzer.Result.mean(result.thdDb),
+                FIGURE_TOLERANCE_DB);
+    }
+
+    // A spur whose lobe overlaps the fundamental's must not pick up the fundamental's power
+    @Test
+    void spurNextToTheFundamental() {
+        for (int offset : new int[]{10, 12, 16}) {
+            double[] signal = SignalGenerator.tone(2 * FRAME, SAMPLE_RATE, FUNDAMENTAL, 1);
+            SignalGenerator.addTone(signal, 0, SAMPLE_RATE, FUNDAMENTAL + offset * BIN, amplitude(-40), 0.7);
+
+            DistortionAnalyzer.Result result = analyze(signal);
+            // The part of the spur's lobe inside the fundamental's is not counted, which can only raise SFDR
+            double sfdr = DistortionAnalyzer.Result.mean(result.sfdrDb);
+            assertEquals(40, sfdr, 1.0, "spur " + offset + " bins above");
+        }
+    }
+
+    @Test
+    void silentFramesHaveNoFigures() {
+        DistortionAnalyzer.Result result = analyze(new double[FRAME]);
+        assertEquals(1, result.times.length);
+        assertEquals(Double.NaN, result.thdDb[0]);
+        assertEquals(Double.NaN, result.sfdrDb[0]);
+    }
+}
@@ -0,0 +1,112 @@
+package com.spectrumanalyzer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import uk.me.berndporr.iirj.Cascade;
+
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class FilterOperatorTest {
+    private static final int SAMPLE_RATE = 48000;
+    private static final double CUTOFF = 2000;
+    private static final double LOW_CUTOFF = 500;
+    private static final double HIGH_CUTOFF = 4000;
+    private static final int ORDER = 4;
+    private static final double RIPPLE = 1.0;
+
+    // Same arithmetic in a different order may move the last few bits of a sample near full scale
+    private static final double SAMPLE_TOLERANCE = 1e-9;
+    // Steady-state tone gain against the evaluated response, away from the transition band edges
+    private static final double GAIN_TOLERANCE_DB = 0.05;
+
+    static Stream<String> filterTypes() {
+        return Stream.of("Butterworth Low Pass", "Butterworth High Pass", "Butterworth Band Pass", "Band Stop",
+                "Chebyshev Low Pass", "Chebyshev High Pass", "Chebyshev Band Pass",
+                "Bessel Low Pass", "Bessel High Pass", "Bessel Band Pass");
+    }
+
+    private static double[] input(long seed) {
+        double[] signal = new double[8192];
+        SignalGenerator.addTone(signal, 0, SAMPLE_RATE, 250, 0.4, 0);
+        SignalGenerator.addTone(signal, 0, SAMPLE_RATE, 6000, 0.3, 0);
+        SignalGenerator.addChirp(signal, 0, SAMPLE_RATE, 20, 20000, signal.length / (double) SAMPLE_RATE, 0.1);
+        SignalGenerator.addNoise(signal, 0, 0.02, seed);
+        SignalGenerator.addImpulses(signal, 0, 2048, 100, 0.5);
+        return signal;
+    }
+
+    private static double[] filter(String filterType, double[] signal) {
+        return FilterOperator.filter(new double[][]{signal}, SAMPLE_RATE, filterType, CUTOFF, LOW_CUTOFF, HIGH_CUTOFF,
+                ORDER, RIPPLE)[0];
+    }
+
+    private static Cascade cascade(String filterType) {
+        return FilterOperator.createFilter(filterType, SAMPLE_RATE, CUTOFF, LOW_CUTOFF, HIGH_CUTOFF, ORDER, RIPPLE);
+    }
+
+    @ParameterizedTest
+    @MethodSource("filterTypes")
+    void matchesGolden(String filterType) {
+        double[] output = filter(filterType, input(1));
+        Golden.assertMatches("filter-" + filterType.toLowerCase().replace(' ', '-'), Golden.decimate(output, 8),
+                SAMPLE_TOLERANCE);
+    }
+
+    // The block filter of the GUI and the per-sample filter of the streaming transcoder share one design
+    @ParameterizedTest
+    @MethodSource("filterTypes")
+    void blockFilterMatchesPerSampleFilter(String filterType) {
+        double[] signal = input(2);
+        Cascade cascade = cascade(filterType);
+        double[] expected = new double[signal.length];
+        for (int i = 0; i < signal.length; i++) expected[i] = cascade.filter(signal[i]);
+
+        assertArrayEquals(expected, filter(filterType, signal), SAMPLE_TOLERANCE);
+    }
+
+    @ParameterizedTest
+    @MethodSource("filterTypes")
+    void toneGainMatchesResponse(String filterType) {
+        double[] frequencies = {100, 300, 1000, 2500, 8000};
+        FilterResponse response = FilterResponse.of(filterType, SAMPLE_RATE, CUTOFF, LOW_CUTOFF, HIGH_CUTOFF, ORDER,
+                RIPPLE, frequencies);
+        for (int i = 0; i < frequencies.length; i++) {
+            // Skip what the response already places deep in the stop band, where the tone drowns in rounding
+            if (response.magnitudesDb[i] < -60) continue;
+
+            double[] tone = SignalGenerator.tone(SAMPLE_RATE, SAMPLE_RATE, frequencies[i], 1);
+            double[] output = filter(filterType, tone);
+            // Second half only, once the filter has settled
+            double inputRms = SignalStatistics.calculateRMS(Arrays.copyOfRange(tone, SAMPLE_RATE / 2, SAMPLE_RATE));
+            double outputRms = SignalStatistics.calculateRMS(Arrays.copyOfRange(output, SAMPLE_RATE / 2, SAMPLE_RATE));
+            assertEquals(response.magnitudesDb[i], 20 * Math.log10(outputRms / inputRms), GAIN_TOLERANCE_DB,
+                    filterType + " at " + frequencies[i] + " Hz");
+        }
+    }
+
+    // Channels are filtered in parallel but must come out as if each were filtered alone
+    @Test
+    void channelsAreIndependent() {
+        double[][] signal = {input(3), input(4), input(5)};
+        double[][] output = FilterOperator.filter(signal, SAMPLE_RATE, "Chebyshev Band Pass", CUTOFF, LOW_CUTOFF,
+                HIGH_CUTOFF, ORDER, RIPPLE);
+        for (int ch = 0; ch < signal.length; ch++) {
+            assertArrayEquals(filter("Chebyshev Band Pass", signal[ch]), output[ch], 0, "channel " + ch);
+        }
+    }
+
+    @Test
+    void unknownTypeGivesNull() {
+        assertNull(FilterOperator.filter(new double[][]{input(1)}, SAMPLE_RATE, "Elliptic", CUTOFF, LOW_CUTOFF,
+                HIGH_CUTOFF, ORDER, RIPPLE));
+        assertNull(cascade("Elliptic"));
+        assertNull(FilterResponse.of("Elliptic", SAMPLE_RATE, CUTOFF, LOW_CUTOFF, HIGH_CUTOFF, ORDER, RIPPLE,
+                new double[]{1000}));
+    }
+}
@@ -0,0 +1,76 @@
+package com.spectrumanalyzer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+// Reference outputs kept under src/test/resources/golden, one value per line. They were recorded from
+// the straightforward implementations; a faster path has to reproduce them within the tolerance each
+// test states. Run with -Dgolden.update=true to record them again after an intended change.
+public final class Golden {
+    private static final Path DIRECTORY = Path.of(System.getProperty("golden.dir", "src/test/resources/golden"));
+    private static final boolean UPDATE = Boolean.getBoolean("golden.update");
+
+    private Golden() {
+    }
+
+    // Every value within tolerance of the recorded one
+    public static void assertMatches(String name, double[] actual, double tolerance) {
+        double[] expected = load(name, actual);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i], tolerance, name + " differs at index " + i);
+        }
+    }
+
+    // Levels in dB compared within tolerance wherever either is less than range dB below the recorded
+    // peak; further down only rounding noise is left and both just have to stay there
+    public static void assertMatchesDb(String name, double[] actualDb, double toleranceDb, double rangeDb) {
+        double[] expected = load(name, actualDb);
+        double peak = Double.NEGATIVE_INFINITY;
+        for (double value : expected) peak = Math.max(peak, value);
+        double floor = peak - rangeDb;
+        for (int i = 0; i < expected.length; i++) {
+            if (expected[i] < floor && actualDb[i] < floor) continue;
+            assertEquals(expected[i], actualDb[i], toleranceDb, name + " differs at index " + i);
+        }
+    }
+
+    // Every n-th value, to keep long outputs readable in the recorded file
+    public static double[] decimate(double[] values, int n) {
+        double[] kept = new double[(values.length + n - 1) / n];
+        for (int i = 0; i < kept.length; i++) kept[i] = values[i * n];
+        return kept;
+    }
+
+    private static double[] load(String name, double[] actual) {
+        Path file = DIRECTORY.resolve(name + ".txt");
+        try {
+            if (UPDATE) {
+                List<String> lines = new ArrayList<>(actual.length);
+                for (double value : actual) lines.add(Double.toString(value));
+                Files.createDirectories(DIRECTORY);
+                Files.write(file, lines, StandardCharsets.UTF_8);
+                return actual;
+            }
+            if (!Files.exists(file)) fail("No golden output " + file + ", record it with -Dgolden.update=true");
+
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            // Before the length check, so a truncated reference can't pass against empty output
+            assertTrue(!lines.isEmpty(), name + " is empty");
+            assertEquals(lines.size(), actual.length, name + " length");
+            double[] expected = new double[lines.size()];
+            for (int i = 0; i < expected.length; i++) expected[i] = Double.parseDouble(lines.get(i));
+            return expected;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
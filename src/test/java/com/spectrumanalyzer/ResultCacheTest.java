@@ -0,0 +1,110 @@
+package com.spectrumanalyzer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResultCacheTest {
+    private static final int SAMPLE_RATE = 48000;
+    private static final long MAX_BYTES = 64L << 20;
+    private static final AnalysisPipeline PIPELINE = AnalysisPipeline.fromParameters(
+            Map.of("filter", "Butterworth Low Pass", "cutoff", "3000", "window", "Hanning"));
+
+    @TempDir
+    Path directory;
+
+    private Path writeInput(String name, double level) throws Exception {
+        double[][] samples = new double[2][];
+        samples[0] = SignalGenerator.tone(SAMPLE_RATE / 2, SAMPLE_RATE, 1000, level);
+        samples[1] = SignalGenerator.tone(SAMPLE_RATE / 2, SAMPLE_RATE, 5000, level / 2);
+        Path file = directory.resolve(name);
+        AudioFile.write(file.toFile(), samples, SAMPLE_RATE, Map.of("ValidBits", 16L));
+        return file;
+    }
+
+    private static AnalysisPipeline.Result run(Path input) throws Exception {
+        return PIPELINE.run(AudioFile.read(input.toString()), new PerformanceMonitor());
+    }
+
+    @Test
+    void roundTrip() throws Exception {
+        Path input = writeInput("input.wav", 8000);
+        ResultCache cache = new ResultCache(directory.resolve("cache"), MAX_BYTES);
+        ResultCache.Key key = cache.key(input, PIPELINE.describe());
+        assertNotNull(key);
+        assertNull(cache.get(key, true));
+
+        AnalysisPipeline.Result computed = run(input);
+        assertFalse(computed.cached);
+        cache.put(key, computed, true);
+
+        // A second instance finds the entry through the directory index
+        for (ResultCache reader : new ResultCache[]{cache, new ResultCache(directory.resolve("cache"), MAX_BYTES)}) {
+            AnalysisPipeline.Result stored = reader.get(key, true);
+            assertNotNull(stored);
+            assertTrue(stored.cached);
+            assertEquals(computed.toJson(true), stored.toJson(true));
+            assertEquals(computed.properties, stored.properties);
+            for (int ch = 0; ch < computed.processed.length; ch++) {
+                assertArrayEquals(computed.processed[ch], stored.processed[ch], 0);
+            }
+            assertNull(reader.get(key, false).processed);
+        }
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void audioOnlyEntriesHaveNoStatistics() throws Exception {
+        Path input = writeInput("input.wav", 8000);
+        ResultCache cache = new ResultCache(directory.resolve("cache"), MAX_BYTES);
+        ResultCache.Key key = cache.key(input, PIPELINE.describe());
+        double[][] processed = run(input).processed;
+        cache.put(key, AnalysisPipeline.Result.audioOnly(SAMPLE_RATE, processed, Map.of()), true);
+
+        AnalysisPipeline.Result stored = cache.get(key, true);
+        assertFalse(stored.hasStatistics());
+        assertArrayEquals(processed[1], stored.processed[1], 0);
+    }
+
+    // The key follows the samples, not the file: edited samples miss, a copy elsewhere hits
+    @Test
+    void changedSamplesMissTheCache() throws Exception {
+        Path input = writeInput("input.wav", 8000);
+        ResultCache cache = new ResultCache(directory.resolve("cache"), MAX_BYTES);
+        ResultCache.Key key = cache.key(input, PIPELINE.describe());
+        cache.put(key, run(input), true);
+
+        ResultCache.Key copy = cache.key(writeInput("copy.wav", 8000), PIPELINE.describe());
+        assertEquals(key.fingerprint, copy.fingerprint);
+        assertNotNull(cache.get(copy, false));
+
+        writeInput("input.wav", 8001);
+        ResultCache.Key edited = cache.key(input, PIPELINE.describe());
+        assertNotEquals(key.fingerprint, edited.fingerprint);
+        assertNull(cache.get(edited, false));
+
+        // Another pipeline on the same samples is another entry
+        assertNull(cache.get(new ResultCache.Key(key.fingerprint, AnalysisPipeline.NONE.describe()), false));
+    }
+
+    @Test
+    void disabledCacheStoresNothing() throws Exception {
+        Path input = writeInput("input.wav", 8000);
+        ResultCache cache = new ResultCache(directory.resolve("cache"), 0);
+        assertFalse(cache.isEnabled());
+        assertNull(cache.key(input, PIPELINE.describe()));
+        cache.put(new ResultCache.Key(1, PIPELINE.describe()), run(input), true);
+        assertNull(cache.get(new ResultCache.Key(1, PIPELINE.describe()), true));
+    }
+}
@@ -0,0 +1,125 @@
+package com.spectrumanalyzer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// The dashboard spectrum: averaged, cached segment spectra against a direct transform of each segment
+class SegmentSpectrumCacheTest {
+    private static final double SAMPLE_RATE = 48000;
+    private static final int SEGMENT = SegmentSpectrumCache.SEGMENT_SIZE;
+
+    // Two FFT implementations agree to rounding; compared only within DYNAMIC_RANGE_DB of the peak
+    private static final double LEVEL_TOLERANCE_DB = 1e-6;
+    private static final double DYNAMIC_RANGE_DB = 200;
+    // Band power of noise against its mean square, a statistical estimate over 32 segments
+    private static final double POWER_TOLERANCE_DB = 0.25;
+
+    private static double[] input(int length) {
+        double[] signal = new double[length];
+        SignalGenerator.addTone(signal, 0, SAMPLE_RATE, 1000, 0.5, 0);
+        SignalGenerator.addTone(signal, 0, SAMPLE_RATE, 7500, 0.05, 1);
+        SignalGenerator.addChirp(signal, 0, SAMPLE_RATE, 2000, 20000, length / SAMPLE_RATE, 0.01);
+        SignalGenerator.addNoise(signal, 0, 0.001, 11);
+        SignalGenerator.addImpulses(signal, 0, 5000, 1234, 0.3);
+        return signal;
+    }
+
+    @Test
+    void matchesGolden() {
+        double[] signal = input(16 * SEGMENT);
+        SpectrumCalculator.Spectrum spectrum = new SegmentSpectrumCache(64).computeSpectrum(1, 0, signal, SAMPLE_RATE,
+                0, signal.length);
+        Golden.assertMatches("spectrum-frequencies", spectrum.frequencies, 1e-9);
+        Golden.assertMatchesDb("spectrum-levels", spectrum.magnitudesDb, LEVEL_TOLERANCE_DB, DYNAMIC_RANGE_DB);
+    }
+
+    @Test
+    void singleSegmentMatchesDirectSpectrum() {
+        double[] signal = input(SEGMENT);
+        SpectrumCalculator.Spectrum direct = SpectrumCalculator.computeSpectrum(signal, SAMPLE_RATE);
+        SpectrumCalculator.Spectrum cached = new SegmentSpectrumCache(4).computeSpectrum(1, 0, signal, SAMPLE_RATE,
+                0, signal.length);
+
+        assertArrayEquals(direct.frequencies, cached.frequencies, 1e-9);
+        assertLevelsMatch(direct.magnitudesDb, cached.magnitudesDb);
+    }
+
+    // Averaging in power over the cached segments equals averaging the direct spectra of each segment
+    @Test
+    void averageMatchesPerSegmentSpectra() {
+        int segments = 8;
+        double[] signal = input(segments * SEGMENT);
+        double[] meanPower = null;
+        for (int s = 0; s < segments; s++) {
+            double[] levels = SpectrumCalculator.computeSpectrum(Arrays.copyOfRange(signal, s * SEGMENT, (s + 1) * SEGMENT),
+                    SAMPLE_RATE).magnitudesDb;
+            if (meanPower == null) meanPower = new double[levels.length];
+            for (int i = 0; i < levels.length; i++) meanPower[i] += Math.pow(10, levels[i] / 10) / segments;
+        }
+        double[] expected = new double[meanPower.length];
+        for (int i = 0; i < expected.length; i++) expected[i] = 10 * Math.log10(meanPower[i]);
+
+        SpectrumCalculator.Spectrum averaged = new SegmentSpectrumCache(64).computeSpectrum(1, 0, signal, SAMPLE_RATE,
+                0, signal.length);
+        assertLevelsMatch(expected, averaged.magnitudesDb);
+    }
+
+    @Test
+    void cachedSegmentsGiveTheSameSpectrum() {
+        double[] signal = input(12 * SEGMENT);
+        SegmentSpectrumCache cache = new SegmentSpectrumCache(64);
+        SpectrumCalculator.Spectrum cold = cache.computeSpectrum(1, 0, signal, SAMPLE_RATE, 0, signal.length);
+        assertEquals(12, cache.size());
+        SpectrumCalculator.Spectrum warm = cache.computeSpectrum(1, 0, signal, SAMPLE_RATE, 0, signal.length);
+        assertEquals(12, cache.size());
+        assertArrayEquals(cold.magnitudesDb, warm.magnitudesDb, 0);
+
+        // A zoomed view reuses its segments and matches a fresh cache
+        SpectrumCalculator.Spectrum zoomed = cache.computeSpectrum(1, 0, signal, SAMPLE_RATE, 3 * SEGMENT, 7 * SEGMENT);
+        SpectrumCalculator.Spectrum fresh = new SegmentSpectrumCache(64).computeSpectrum(1, 0, signal, SAMPLE_RATE,
+                3 * SEGMENT, 7 * SEGMENT);
+        assertEquals(12, cache.size());
+        assertArrayEquals(fresh.magnitudesDb, zoomed.magnitudesDb, 0);
+    }
+
+    @Test
+    void unitToneReadsZeroDb() {
+        // Exactly on bin 101, one of the plotted bins, so no scalloping loss
+        double frequency = 101 * SAMPLE_RATE / SEGMENT;
+        double[] tone = SignalGenerator.tone(4 * SEGMENT, SAMPLE_RATE, frequency, 1);
+        SpectrumCalculator.Spectrum spectrum = new SegmentSpectrumCache(8).computeSpectrum(1, 0, tone, SAMPLE_RATE,
+                0, tone.length);
+
+        int peak = 0;
+        for (int i = 1; i < spectrum.magnitudesDb.length; i++) {
+            if (spectrum.magnitudesDb[i] > spectrum.magnitudesDb[peak]) peak = i;
+        }
+        assertEquals(frequency, spectrum.frequencies[peak], 1e-9);
+        assertEquals(0, spectrum.magnitudesDb[peak], 0.01);
+    }
+
+    @Test
+    void noiseBandPowerMatchesMeanSquare() {
+        double[] noise = SignalGenerator.noise(32 * SEGMENT, 0.1, 5);
+        BandPowerMeter meter = new SegmentSpectrumCache(64).computeBandPower(1, 0, noise, SAMPLE_RATE, 0, noise.length);
+        double meanSquare = Math.pow(SignalStatistics.calculateRMS(noise), 2);
+
+        assertEquals(10 * Math.log10(meanSquare), BandPowerMeter.toDb(meter.totalPower()), POWER_TOLERANCE_DB);
+        // White noise spreads evenly, so half the band holds half the power
+        assertEquals(10 * Math.log10(meanSquare / 2), BandPowerMeter.toDb(meter.bandPower(0, SAMPLE_RATE / 4)),
+                POWER_TOLERANCE_DB);
+    }
+
+    private static void assertLevelsMatch(double[] expected, double[] actual) {
+        assertEquals(expected.length, actual.length);
+        double peak = Arrays.stream(expected).max().orElseThrow();
+        for (int i = 0; i < expected.length; i++) {
+            if (expected[i] < peak - DYNAMIC_RANGE_DB && actual[i] < peak - DYNAMIC_RANGE_DB) continue;
+            assertEquals(expected[i], actual[i], LEVEL_TOLERANCE_DB, "bin " + i);
+        }
+    }
+}
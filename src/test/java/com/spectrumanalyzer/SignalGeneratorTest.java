@@ -0,0 +1,90 @@
+package com.spectrumanalyzer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SignalGeneratorTest {
+    private static final double SAMPLE_RATE = 48000;
+
+    // The goldens of every other test start from these signals, so they must not drift at all
+    private static final double EXACT = 1e-15;
+
+    private static double[] mixture(long firstSample, int length) {
+        double[] signal = new double[length];
+        SignalGenerator.addTone(signal, firstSample, SAMPLE_RATE, 997, 0.5, 0.25);
+        SignalGenerator.addChirp(signal, firstSample, SAMPLE_RATE, 100, 12000, 0.05, 0.25);
+        SignalGenerator.addNoise(signal, firstSample, 0.05, 42);
+        SignalGenerator.addImpulses(signal, firstSample, 1000, 37, 0.75);
+        return signal;
+    }
+
+    @Test
+    void blocksMatchWholeSignal() {
+        double[] whole = mixture(0, 10000);
+        double[] pieced = new double[whole.length];
+        int[] blockLengths = {1, 999, 4096, 37, 4867};
+        int position = 0;
+        for (int length : blockLengths) {
+            System.arraycopy(mixture(position, length), 0, pieced, position, length);
+            position += length;
+        }
+        assertArrayEquals(whole, pieced, 0);
+    }
+
+    @Test
+    void matchesGolden() {
+        Golden.assertMatches("generator-mixture", Golden.decimate(mixture(0, 8192), 8), EXACT);
+    }
+
+    @Test
+    void toneHasRequestedLevel() {
+        double[] tone = SignalGenerator.tone(48000, SAMPLE_RATE, 1000, 0.8);
+        assertEquals(0.8 / Math.sqrt(2), SignalStatistics.calculateRMS(tone), 1e-9);
+        assertEquals(0.8, SignalStatistics.calculatePeak(tone), 1e-6);
+    }
+
+    @Test
+    void noiseHasRequestedLevel() {
+        double[] noise = SignalGenerator.noise(1 << 18, 0.1, 7);
+        double mean = 0;
+        for (double sample : noise) mean += sample / noise.length;
+        assertEquals(0, mean, 0.001);
+        assertEquals(0.1, SignalStatistics.calculateRMS(noise), 0.001);
+        // A different seed gives a different signal
+        assertEquals(0.1 * Math.sqrt(2), SignalStatistics.calculateRMS(subtract(noise, SignalGenerator.noise(noise.length, 0.1, 8))), 0.002);
+    }
+
+    @Test
+    void chirpSweepsItsBand() {
+        // 1 s sweep from 1 to 2 kHz crosses 1500 Hz half way; 1200 Hz at a fifth of the way
+        double[] chirp = SignalGenerator.chirp(48000, SAMPLE_RATE, 1000, 2000, 1);
+        assertEquals(1200, zeroCrossingFrequency(chirp, 9600 - 480, 9600 + 480), 5);
+        assertEquals(1500, zeroCrossingFrequency(chirp, 24000 - 480, 24000 + 480), 5);
+    }
+
+    @Test
+    void impulsesLandOnThePeriod() {
+        double[] impulses = new double[100];
+        SignalGenerator.addImpulses(impulses, 250, 30, 10, 1);
+        for (int i = 0; i < impulses.length; i++) {
+            assertEquals((250 + i - 10) % 30 == 0 ? 1 : 0, impulses[i], 0, "sample " + (250 + i));
+        }
+        assertArrayEquals(new double[]{0, 0, -2, 0}, SignalGenerator.impulse(4, 2, -2), 0);
+    }
+
+    private static double[] subtract(double[] a, double[] b) {
+        double[] difference = new double[a.length];
+        for (int i = 0; i < a.length; i++) difference[i] = a[i] - b[i];
+        return difference;
+    }
+
+    private static double zeroCrossingFrequency(double[] signal, int start, int end) {
+        int crossings = 0;
+        for (int i = start + 1; i < end; i++) {
+            if ((signal[i - 1] < 0) != (signal[i] < 0)) crossings++;
+        }
+        return crossings / 2.0 / ((end - start) / SAMPLE_RATE);
+    }
+}
@@ -0,0 +1,98 @@
+package com.spectrumanalyzer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WavDecoderTest {
+    private static final int SAMPLE_RATE = 44100;
+
+    @TempDir
+    Path directory;
+
+    private static short[][] samples() {
+        short[][] samples = new short[2][4096];
+        double[] left = SignalGenerator.tone(4096, SAMPLE_RATE, 440, 12000);
+        double[] right = SignalGenerator.noise(4096, 3000, 4);
+        for (int i = 0; i < 4096; i++) {
+            samples[0][i] = (short) Math.round(left[i]);
+            samples[1][i] = (short) Math.round(right[i]);
+        }
+        return samples;
+    }
+
+    // 16-bit PCM RIFF, with a LIST chunk ahead of the data if tagged
+    private Path write(String name, short[][] samples, boolean tagged) throws IOException {
+        int channels = samples.length;
+        int frames = samples[0].length;
+        byte[] list = tagged ? "INFOINAM\u0004\u0000\u0000\u0000test".getBytes(StandardCharsets.US_ASCII) : new byte[0];
+        int dataBytes = frames * channels * 2;
+        ByteBuffer wav = ByteBuffer.allocate(12 + 24 + (tagged ? 8 + list.length : 0) + 8 + dataBytes)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        wav.put("RIFF".getBytes()).putInt(wav.capacity() - 8).put("WAVE".getBytes());
+        wav.put("fmt ".getBytes()).putInt(16).putShort((short) 1).putShort((short) channels).putInt(SAMPLE_RATE)
+                .putInt(SAMPLE_RATE * channels * 2).putShort((short) (channels * 2)).putShort((short) 16);
+        if (tagged) wav.put("LIST".getBytes()).putInt(list.length).put(list);
+        wav.put("data".getBytes()).putInt(dataBytes);
+        for (int f = 0; f < frames; f++) {
+            for (short[] channel : samples) wav.putShort(channel[f]);
+        }
+        Path file = directory.resolve(name);
+        Files.write(file, wav.array());
+        return file;
+    }
+
+    @Test
+    void decodesPcmSamples() throws IOException {
+        short[][] samples = samples();
+        AudioFile audio = WavDecoder.decode(write("plain.wav", samples, true));
+
+        assertEquals(SAMPLE_RATE, audio.sampleRate);
+        assertEquals(2, audio.channels);
+        assertEquals(16L, audio.properties.get("ValidBits"));
+        for (int ch = 0; ch < 2; ch++) {
+            double[] expected = new double[samples[ch].length];
+            for (int i = 0; i < expected.length; i++) expected[i] = samples[ch][i];
+            assertArrayEquals(expected, audio.samples[ch], 0);
+        }
+    }
+
+    // Only the format and the samples count; metadata chunks do not
+    @Test
+    void fingerprintFollowsTheSamples() throws IOException {
+        short[][] samples = samples();
+        long plain = WavDecoder.fingerprint(write("plain.wav", samples, false));
+        assertEquals(plain, WavDecoder.fingerprint(write("copy.wav", samples, false)));
+        assertEquals(plain, WavDecoder.fingerprint(write("tagged.wav", samples, true)));
+
+        samples[1][2000]++;
+        assertNotEquals(plain, WavDecoder.fingerprint(write("changed.wav", samples, false)));
+    }
+
+    // A header without frames is an error, not an empty signal the dashboard would index into
+    @Test
+    void rejectsFilesWithoutFrames() throws IOException {
+        Path file = write("empty.wav", new short[2][0], true);
+        IOException e = assertThrows(IOException.class, () -> WavDecoder.decode(file));
+        assertEquals("No audio data found in file", e.getMessage());
+        assertThrows(IOException.class, () -> AudioFile.read(file.toString()));
+    }
+
+    @Test
+    void rejectsFilesThatAreNotWav() throws IOException {
+        Path file = directory.resolve("text.wav");
+        Files.writeString(file, "not a wave file, just some text");
+        assertThrows(IOException.class, () -> WavDecoder.fingerprint(file));
+    }
+}
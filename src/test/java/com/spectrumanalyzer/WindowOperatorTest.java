@@ -0,0 +1,59 @@
+package com.spectrumanalyzer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class WindowOperatorTest {
+    private static final double KAISER_BETA = 8.6;
+
+    // Closed forms against the library arrays; both are a few cosines or a Bessel series per sample
+    private static final double WINDOW_TOLERANCE = 1e-12;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"Rectangular", "Hanning", "Hamming", "Blackman", "Kaiser"})
+    void matchesGolden(String windowType) {
+        double[] chirp = SignalGenerator.chirp(4096, 48000, 50, 15000, 0.9);
+        double[] windowed = WindowOperator.applyWindowFunction(new double[][]{chirp}, windowType, KAISER_BETA)[0];
+        Golden.assertMatches("window-" + windowType.toLowerCase(), Golden.decimate(windowed, 4), WINDOW_TOLERANCE);
+    }
+
+    // The streaming transcoder windows piece by piece with windowValue instead of whole arrays
+    @ParameterizedTest
+    @ValueSource(strings = {"Rectangular", "Hanning", "Hamming", "Blackman", "Kaiser"})
+    void windowValueMatchesArrays(String windowType) {
+        for (int length : new int[]{2, 3, 1000, 1001}) {
+            double[] ones = new double[length];
+            Arrays.fill(ones, 1.0);
+            double[] window = WindowOperator.applyWindowFunction(new double[][]{ones}, windowType, KAISER_BETA)[0];
+            for (int n = 0; n < length; n++) {
+                assertEquals(window[n], WindowOperator.windowValue(windowType, n, length, KAISER_BETA), WINDOW_TOLERANCE,
+                        windowType + " sample " + n + " of " + length);
+            }
+        }
+    }
+
+    @Test
+    void everyChannelGetsTheSameWindow() {
+        double[][] signal = {SignalGenerator.noise(512, 1, 1), SignalGenerator.noise(512, 1, 2)};
+        double[][] windowed = WindowOperator.applyWindowFunction(signal, "Blackman", KAISER_BETA);
+        for (int ch = 0; ch < signal.length; ch++) {
+            double[] expected = new double[signal[ch].length];
+            for (int n = 0; n < expected.length; n++) {
+                expected[n] = signal[ch][n] * WindowOperator.windowValue("Blackman", n, expected.length, KAISER_BETA);
+            }
+            assertArrayEquals(expected, windowed[ch], WINDOW_TOLERANCE);
+        }
+    }
+
+    @Test
+    void unknownTypeGivesNull() {
+        assertNull(WindowOperator.applyWindowFunction(new double[][]{new double[16]}, "Tukey", KAISER_BETA));
+    }
+}
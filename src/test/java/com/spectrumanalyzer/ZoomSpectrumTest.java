@@ -0,0 +1,123 @@
+package com.spectrumanalyzer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Zoom spectra of a file-backed I/Q recording, right up to both ends of the file
+class ZoomSpectrumTest {
+    private static final int SAMPLES = 1 << 20;
+    private static final double SAMPLE_RATE = 1e6;
+    private static final double LOW = 0;
+    private static final double HIGH = 1953.125; // Decimation 256, a 3906.25 Hz decimated rate
+    // On a bin of both the 4096 and the 256 point FFT below, 96 fine bins above the mixing frequency
+    private static final double TONE = (LOW + HIGH) / 2 + 96 * (SAMPLE_RATE / 256 / 4096);
+    private static final double AMPLITUDE = 0.5;
+
+    // On-bin tone through the decimation filter's pass band; the filter start-up sits under the window edge
+    private static final double LEVEL_TOLERANCE_DB = 0.1;
+
+    @TempDir
+    Path directory;
+
+    private static float[][] toneSamples() {
+        float[][] iq = new float[2][SAMPLES];
+        for (int n = 0; n < SAMPLES; n++) {
+            double phase = 2 * Math.PI * TONE * n / SAMPLE_RATE;
+            iq[0][n] = (float) (AMPLITUDE * Math.cos(phase));
+            iq[1][n] = (float) (AMPLITUDE * Math.sin(phase));
+        }
+        return iq;
+    }
+
+    private IqRecording write(float[][] iq) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(iq[0].length * 8).order(ByteOrder.LITTLE_ENDIAN);
+        for (int n = 0; n < iq[0].length; n++) {
+            bytes.putFloat(iq[0][n]);
+            bytes.putFloat(iq[1][n]);
+        }
+        Path file = directory.resolve("tone.cf32");
+        Files.write(file, bytes.array());
+        return IqRecording.open(file, IqRecording.SampleFormat.FLOAT32, SAMPLE_RATE, 0);
+    }
+
+    // The same samples from memory, zero outside the recording
+    private static ZoomSpectrum.SampleReader memoryReader(float[][] iq) {
+        return (start, re, im, count) -> {
+            for (int i = 0; i < count; i++) {
+                long index = start + i;
+                boolean inside = index >= 0 && index < iq[0].length;
+                re[i] = inside ? iq[0][(int) index] : 0;
+                im[i] = inside ? iq[1][(int) index] : 0;
+            }
+        };
+    }
+
+    @Test
+    void readsOutsideTheRecordingAsZero() throws IOException {
+        float[][] iq = toneSamples();
+        try (IqRecording recording = write(iq)) {
+            ZoomSpectrum.SampleReader expected = memoryReader(iq);
+            long[] starts = {-100, -5, 0, SAMPLES - 3, SAMPLES, SAMPLES + 50};
+            for (long start : starts) {
+                double[] re = new double[10], im = new double[10];
+                double[] expectedRe = new double[10], expectedIm = new double[10];
+                recording.read(start, re, im, 10);
+                expected.read(start, expectedRe, expectedIm, 10);
+                assertArrayEquals(expectedRe, re, 0, "I from " + start);
+                assertArrayEquals(expectedIm, im, 0, "Q from " + start);
+            }
+        }
+    }
+
+    @Test
+    void zoomsOverTheWholeRecording() throws IOException {
+        float[][] iq = toneSamples();
+        try (IqRecording recording = write(iq)) {
+            // The filter history of the first outputs reaches before sample 0
+            ZoomSpectrum.Result result = ZoomSpectrum.compute(recording::read, 0, SAMPLES, SAMPLE_RATE, 0, 1.0, LOW, HIGH);
+            assertTonePeak(result);
+            assertSameSpectrum(ZoomSpectrum.compute(memoryReader(iq), 0, SAMPLES, SAMPLE_RATE, 0, 1.0, LOW, HIGH), result);
+        }
+    }
+
+    @Test
+    void zoomsNearTheStartAndEnd() throws IOException {
+        float[][] iq = toneSamples();
+        try (IqRecording recording = write(iq)) {
+            long[][] ranges = {{0, 1 << 16}, {SAMPLES - (1 << 16), SAMPLES}};
+            for (long[] range : ranges) {
+                ZoomSpectrum.Result result = ZoomSpectrum.compute(recording::read, range[0], range[1], SAMPLE_RATE, 0,
+                        1.0, LOW, HIGH);
+                assertTonePeak(result);
+                assertSameSpectrum(ZoomSpectrum.compute(memoryReader(iq), range[0], range[1], SAMPLE_RATE, 0, 1.0,
+                        LOW, HIGH), result);
+            }
+        }
+    }
+
+    private static void assertTonePeak(ZoomSpectrum.Result result) {
+        SpectrumCalculator.Spectrum spectrum = result.spectrum;
+        int peak = 0;
+        for (int i = 1; i < spectrum.magnitudesDb.length; i++) {
+            if (spectrum.magnitudesDb[i] > spectrum.magnitudesDb[peak]) peak = i;
+        }
+        assertEquals(TONE, spectrum.frequencies[peak], 1e-6);
+        assertEquals(20 * Math.log10(AMPLITUDE), spectrum.magnitudesDb[peak], LEVEL_TOLERANCE_DB);
+    }
+
+    private static void assertSameSpectrum(ZoomSpectrum.Result expected, ZoomSpectrum.Result actual) {
+        assertEquals(expected.decimation, actual.decimation);
+        assertEquals(expected.binWidth, actual.binWidth, 0);
+        assertArrayEquals(expected.spectrum.frequencies, actual.spectrum.frequencies, 0);
+        assertArrayEquals(expected.spectrum.magnitudesDb, actual.spectrum.magnitudesDb, 0);
+    }
+}
@@ -0,0 +1,139 @@
+package com.spectrumanalyzer.panels;
+
+import com.spectrumanalyzer.AnalysisState;
+import com.spectrumanalyzer.DerivedDataCache;
+import com.spectrumanalyzer.FilterOperator;
+import com.spectrumanalyzer.Golden;
+import com.spectrumanalyzer.RangeStatistics;
+import com.spectrumanalyzer.SignalGenerator;
+import com.spectrumanalyzer.SignalStatistics;
+import com.spectrumanalyzer.SpectrumCalculator;
+import com.spectrumanalyzer.SpectrumCalculator.FrequencyPeak;
+import com.spectrumanalyzer.TaskGraph;
+import org.junit.jupiter.api.Test;
+
+import java.util.Hashtable;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+// The numbers the statistics panel shows, computed through the task graph as the dashboard does
+class StatisticPanelTest {
+    private static final int SAMPLE_RATE = 44100;
+
+    // Levels in dB and frequencies read straight from FFT bins
+    private static final double LEVEL_TOLERANCE_DB = 1e-9;
+    // Range sums come from differences of compensated prefix sums
+    private static final double RANGE_TOLERANCE = 1e-12;
+
+    private static double[][] input() {
+        double[][] signal = new double[2][SAMPLE_RATE];
+        SignalGenerator.addTone(signal[0], 0, SAMPLE_RATE, 440, 0.6, 0);
+        SignalGenerator.addTone(signal[1], 0, SAMPLE_RATE, 3300, 0.3, 0);
+        for (int ch = 0; ch < signal.length; ch++) {
+            SignalGenerator.addChirp(signal[ch], 0, SAMPLE_RATE, 200, 18000, 0.25, 0.05);
+            SignalGenerator.addNoise(signal[ch], 0, 0.01, 100 + ch);
+            SignalGenerator.addImpulses(signal[ch], 0, 10000, 5000 + ch, 0.4);
+        }
+        return signal;
+    }
+
+    private static StatisticPanel.StatisticsResult compute(AnalysisState state, DerivedDataCache cache) {
+        TaskGraph graph = new TaskGraph();
+        TaskGraph.Node<StatisticPanel.StatisticsResult> result = StatisticPanel.addStatisticsNodes(graph, state, cache);
+        graph.await();
+        return result.get();
+    }
+
+    private static AnalysisState filteredState() {
+        AnalysisState loaded = AnalysisState.loaded(input(), SAMPLE_RATE, new Hashtable<>());
+        return loaded.withProcessed(FilterOperator.filter(loaded.originalSignal, SAMPLE_RATE, "Butterworth Low Pass",
+                1000, 500, 2000, 4, 1.0));
+    }
+
+    @Test
+    void matchesGolden() {
+        StatisticPanel.StatisticsResult result = compute(filteredState(), new DerivedDataCache());
+        double[] values = new double[6 + 2 * result.topFrequencies.size()];
+        values[0] = result.original.rmsDb;
+        values[1] = result.original.peakDb;
+        values[2] = result.original.duration;
+        values[3] = result.filtered.rmsDb;
+        values[4] = result.filtered.peakDb;
+        values[5] = result.filtered.duration;
+        for (int i = 0; i < result.topFrequencies.size(); i++) {
+            values[6 + 2 * i] = result.topFrequencies.get(i).frequency;
+            values[7 + 2 * i] = result.topFrequencies.get(i).magnitude;
+        }
+        Golden.assertMatches("statistics-filtered", values, LEVEL_TOLERANCE_DB);
+    }
+
+    @Test
+    void taskGraphMatchesDirectComputation() {
+        AnalysisState state = filteredState();
+        StatisticPanel.StatisticsResult result = compute(state, new DerivedDataCache());
+
+        double[] originalMix = SignalStatistics.getMixedDownSignal(state.originalSignal);
+        double[] processedMix = SignalStatistics.getMixedDownSignal(state.processedSignal);
+        assertSummaryEquals(SignalStatistics.summarize(state.originalSignal, originalMix, SAMPLE_RATE), result.original);
+        assertSummaryEquals(SignalStatistics.summarize(state.processedSignal, processedMix, SAMPLE_RATE), result.filtered);
+
+        List<FrequencyPeak> expected = SpectrumCalculator.findTopFrequencies(processedMix, SAMPLE_RATE, 5);
+        assertEquals(expected.size(), result.topFrequencies.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).frequency, result.topFrequencies.get(i).frequency, LEVEL_TOLERANCE_DB);
+            assertEquals(expected.get(i).magnitude, result.topFrequencies.get(i).magnitude, LEVEL_TOLERANCE_DB);
+        }
+    }
+
+    @Test
+    void originalStatisticsAreCachedPerVersion() {
+        AnalysisState loaded = AnalysisState.loaded(input(), SAMPLE_RATE, new Hashtable<>());
+        DerivedDataCache cache = new DerivedDataCache();
+        StatisticPanel.StatisticsResult first = compute(loaded, cache);
+        assertSame(first.original, first.filtered);
+
+        // Filtering reuses the original side instead of computing it again
+        AnalysisState filtered = loaded.withProcessed(FilterOperator.filter(loaded.originalSignal, SAMPLE_RATE,
+                "Bessel High Pass", 1000, 500, 2000, 4, 1.0));
+        assertSame(first.original, compute(filtered, cache).original);
+    }
+
+    @Test
+    void rangeStatisticsMatchScan() {
+        double[][] signal = input();
+        RangeStatistics index = RangeStatistics.build(signal);
+        SplittableRandom random = new SplittableRandom(3);
+        for (int query = 0; query < 500; query++) {
+            int channel = random.nextInt(signal.length);
+            int start = random.nextInt(signal[0].length);
+            int end = start + 1 + random.nextInt(query % 2 == 0 ? 200 : signal[0].length - start);
+            RangeStatistics.Range range = index.query(channel, start, end);
+
+            double sum = 0, squares = 0, min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+            for (int i = start; i < end; i++) {
+                double sample = signal[channel][i];
+                sum += sample;
+                squares += sample * sample;
+                min = Math.min(min, sample);
+                max = Math.max(max, sample);
+            }
+            String where = "channel " + channel + " [" + start + ", " + end + ")";
+            assertEquals(end - start, range.samples, where);
+            assertEquals(sum / (end - start), range.mean, RANGE_TOLERANCE, where);
+            assertEquals(Math.sqrt(squares / (end - start)), range.rms, RANGE_TOLERANCE, where);
+            assertEquals(min, range.min, 0, where);
+            assertEquals(max, range.max, 0, where);
+        }
+    }
+
+    private static void assertSummaryEquals(SignalStatistics.Summary expected, SignalStatistics.Summary actual) {
+        assertEquals(expected.channels, actual.channels);
+        assertEquals(expected.sampleRate, actual.sampleRate);
+        assertEquals(expected.duration, actual.duration, 0);
+        assertEquals(expected.rmsDb, actual.rmsDb, LEVEL_TOLERANCE_DB);
+        assertEquals(expected.peakDb, actual.peakDb, LEVEL_TOLERANCE_DB);
+    }
+}